@@ -17,6 +17,7 @@
  *
  */
 
+import java.io.File;
 import java.io.IOException;
 
 import com.rl.NameProvider;
@@ -39,9 +40,12 @@ public class RetroGuard {
 	 * <p>
 	 * Usage: java RetroGuard [INPUT-FILE [OUTPUT-FILE [SCRIPT-FILE
 	 * [LOG-FILE]]]]<br>
-	 * where INPUT-FILE is the name of the JAR to be obfuscated (defaults to
-	 * 'in.jar'),<br>
-	 * OUTPUT-FILE is the name for the obfuscated JAR (defaults to 'out.jar'),<br>
+	 * where INPUT-FILE is the name of the JAR, or exploded directory, to be
+	 * obfuscated, or a path-separated list of them to obfuscate together (defaults
+	 * to 'in.jar'),<br>
+	 * OUTPUT-FILE is the name for the obfuscated JAR, or for an exploded directory
+	 * if it ends with a separator, or a list with one for each input (defaults to
+	 * 'out.jar'),<br>
 	 * SCRIPT-FILE is the file name of a valid RetroGuard script (*.rgs) file
 	 * (defaults to 'script.rgs'),<br>
 	 * LOG-FILE is the file name of the output log file in which name mappings are
@@ -104,10 +108,12 @@ public class RetroGuard {
 	private static void showUsage() {
 		System.err.println(Version.getVersionComment());
 		System.err.println("Usage: java RetroGuard [INPUT-FILE [OUTPUT-FILE [SCRIPT-FILE [LOG-FILE]]]]");
-		System.err.println("  where INPUT-FILE is the JAR to be obfuscated (default: '"
+		System.err.println("  where INPUT-FILE is the JAR, or directory, to be obfuscated (default: '"
 				+ RetroGuardImpl.DEFAULT_IN_FILE_NAME + "')");
-		System.err.println("        OUTPUT-FILE is name for the obfuscated JAR (default: '"
+		System.err.println("        OUTPUT-FILE is name for the obfuscated JAR, or directory if it ends in '/' (default: '"
 				+ RetroGuardImpl.DEFAULT_OUT_FILE_NAME + "')");
+		System.err.println("  several INPUT-FILEs, with an OUTPUT-FILE for each, may be given separated by '"
+				+ File.pathSeparator + "'");
 		System.err.println("        SCRIPT-FILE is a valid RetroGuard script (default: '"
 				+ RetroGuardImpl.DEFAULT_RGS_FILE_NAME + "').");
 		System.err.println("        LOG-FILE is the name for the log file (default: '"
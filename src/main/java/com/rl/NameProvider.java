@@ -13,6 +13,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.zip.Deflater;
 
 import com.rl.obf.Cl;
 import com.rl.obf.ClassTree;
@@ -42,6 +43,16 @@ public class NameProvider {
 	public static boolean multipass = true;
 	public static boolean verbose = false;
 	public static boolean fullMap = false;
+	public static boolean retainClasses = false;
+	// Uncompressed class file bytes, not heap, of the classes kept parsed
+	public static long retainLimit = 0;
+	public static int threads = 1;
+	public static int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+	public static boolean storeEntries = false;
+	public static File remapCache = null;
+	public static boolean bufferClassReader = true;
+	public static boolean compactConstantPool = false;
+	public static int mapCacheSize = 65536;
 
 	private static Set<File> obfFiles = new HashSet<>();
 	private static Set<File> reobFiles = new HashSet<>();
@@ -239,6 +250,68 @@ public class NameProvider {
 						if (value.equalsIgnoreCase("1") || value.equalsIgnoreCase("t") || value.equalsIgnoreCase("y")) {
 							NameProvider.fullMap = true;
 						}
+					} else if (defines[0].equalsIgnoreCase("retainclasses")) {
+						final String value = defines[1].substring(0, 1);
+						if (value.equalsIgnoreCase("1") || value.equalsIgnoreCase("t") || value.equalsIgnoreCase("y")) {
+							NameProvider.retainClasses = true;
+						}
+					} else if (defines[0].equalsIgnoreCase("retainlimit")) {
+						try {
+							final long limit = Long.parseLong(defines[1]);
+							NameProvider.retainLimit = limit * 1024 * 1024;
+						} catch (final NumberFormatException e) {
+							throw new NumberFormatException("Invalid retain limit: " + defines[1]);
+						}
+					} else if (defines[0].equalsIgnoreCase("threads")) {
+						try {
+							final int count = Integer.parseInt(defines[1]);
+							if (count < 0) {
+								throw new NumberFormatException();
+							}
+							NameProvider.threads = count > 0 ? count : Runtime.getRuntime().availableProcessors();
+						} catch (final NumberFormatException e) {
+							throw new NumberFormatException("Invalid thread count: " + defines[1]);
+						}
+					} else if (defines[0].equalsIgnoreCase("compression")) {
+						if (defines[1].equalsIgnoreCase("stored")) {
+							NameProvider.storeEntries = true;
+						} else {
+							try {
+								final int level = Integer.parseInt(defines[1]);
+								if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+									throw new NumberFormatException();
+								}
+								NameProvider.compressionLevel = level;
+								NameProvider.storeEntries = false;
+							} catch (final NumberFormatException e) {
+								throw new NumberFormatException("Invalid compression level: " + defines[1]);
+							}
+						}
+					} else if (defines[0].equalsIgnoreCase("remapcache")) {
+						NameProvider.remapCache = new File(defines[1]);
+					} else if (defines[0].equalsIgnoreCase("compactpool")) {
+						final String value = defines[1].substring(0, 1);
+						if (value.equalsIgnoreCase("1") || value.equalsIgnoreCase("t") || value.equalsIgnoreCase("y")) {
+							NameProvider.compactConstantPool = true;
+						}
+					} else if (defines[0].equalsIgnoreCase("mapcache")) {
+						try {
+							final int size = Integer.parseInt(defines[1]);
+							if (size < 0) {
+								throw new NumberFormatException();
+							}
+							NameProvider.mapCacheSize = size;
+						} catch (final NumberFormatException e) {
+							throw new NumberFormatException("Invalid map cache size: " + defines[1]);
+						}
+					} else if (defines[0].equalsIgnoreCase("classreader")) {
+						if (defines[1].equalsIgnoreCase("buffer")) {
+							NameProvider.bufferClassReader = true;
+						} else if (defines[1].equalsIgnoreCase("stream")) {
+							NameProvider.bufferClassReader = false;
+						} else {
+							throw new IllegalArgumentException("Invalid class reader: " + defines[1]);
+						}
 					}
 					// Used to change the class identifier, useful when obfuscating to srg names.
 					else if (defines[0].equalsIgnoreCase("identifier")) {
@@ -0,0 +1,31 @@
+/* ===========================================================================
+ * $RCSfile: CachedClass.java,v $
+ * ===========================================================================
+ *
+ * RetroGuard -- an obfuscation package for Java classfiles.
+ *
+ * Copyright (c) 1998-2006 Mark Welsh (markw@retrologic.com)
+ *
+ * This program can be redistributed and/or modified under the terms of the
+ * Version 2 of the GNU General Public License as published by the Free
+ * Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+
+package com.rl.obf;
+
+/**
+ * A remapped class found in the cache.
+ *
+ * @author Mark Welsh
+ */
+class CachedClass {
+	public String outName;
+	public String logText;
+	public byte[] data;
+}
@@ -107,6 +107,12 @@ public class Cl extends PkCl implements NameListUp, NameListDown {
 	 */
 	private List<String> warningList = new ArrayList<>();
 
+	/**
+	 * Output names of the methods and fields found from this class, in the order
+	 * searched up its hierarchy, built when first needed once names are final
+	 */
+	private volatile ResolvedMembers resolvedMembers = null;
+
 	public static int nameSpace = 0;
 
 	// Class Methods ---------------------------------------------------------
@@ -260,6 +266,88 @@ public class Cl extends PkCl implements NameListUp, NameListDown {
 		return list;
 	}
 
+	/**
+	 * Return the output name of the method found first searching up from this
+	 * class through its super-classes and super-interfaces, or null if none is.
+	 * 
+	 * @param name
+	 * @param descriptor
+	 * @throws ClassFileException
+	 */
+	public String getResolvedMethodOutName(final String name, final String descriptor) throws ClassFileException {
+		return this.getResolvedMembers().methods.get(name + descriptor);
+	}
+
+	/**
+	 * Return the output name of the field found first searching up from this class
+	 * through its super-classes and super-interfaces, or null if none is.
+	 * 
+	 * @param name
+	 * @throws ClassFileException
+	 */
+	public String getResolvedFieldOutName(final String name) throws ClassFileException {
+		return this.getResolvedMembers().fields.get(name);
+	}
+
+	/**
+	 * Return the member tables of this class, building them again if any name in
+	 * the tree has changed since they were built.
+	 * 
+	 * @throws ClassFileException
+	 */
+	private ResolvedMembers getResolvedMembers() throws ClassFileException {
+		final int generation = this.classTree.getNameGeneration();
+		ResolvedMembers members = this.resolvedMembers;
+		if (members == null || members.generation != generation) {
+			members = new ResolvedMembers(generation);
+
+			// Search depth first, last super-interface before the super-class, keeping the
+			// first of each name; a class met again adds nothing not already kept
+			final List<Cl> visited = new ArrayList<>();
+			final List<Cl> stack = new ArrayList<>();
+			stack.add(this);
+			while (!stack.isEmpty()) {
+				final Cl cl = stack.remove(stack.size() - 1);
+				if (Cl.containsCl(visited, cl)) {
+					continue;
+				}
+				visited.add(cl);
+				for (final Map.Entry<String, Md> entry : cl.mds.entrySet()) {
+					if (!members.methods.containsKey(entry.getKey())) {
+						members.methods.put(entry.getKey(), entry.getValue().getOutName());
+					}
+				}
+				for (final Map.Entry<String, Fd> entry : cl.fds.entrySet()) {
+					if (!members.fields.containsKey(entry.getKey())) {
+						members.fields.put(entry.getKey(), entry.getValue().getOutName());
+					}
+				}
+				final Cl superCl = cl.getSuperCl();
+				if (superCl != null) {
+					stack.add(superCl);
+				}
+				stack.addAll(cl.getSuperInterfaces());
+			}
+			this.resolvedMembers = members;
+		}
+		return members;
+	}
+
+	/**
+	 * Is the class in the list, by identity?
+	 * 
+	 * @param list
+	 * @param cl
+	 */
+	private static boolean containsCl(final List<Cl> list, final Cl cl) {
+		for (final Cl item : list) {
+			if (item == cl) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Does this internal class have the specified class or interface in its super
 	 * or interface chain?
@@ -1419,14 +1507,14 @@ public class Cl extends PkCl implements NameListUp, NameListDown {
 	 * Construct and return the full obfuscated name of the entry.
 	 */
 	@Override
-	public String getFullOutName() {
+	protected String buildFullOutName() {
 		final String repackageName = this.getRepackageName();
 
 		if (repackageName != null) {
 			return repackageName;
 		}
 
-		return super.getFullOutName();
+		return super.buildFullOutName();
 	}
 
 	public Iterator<Cl> getDownClasses() {
@@ -1438,3 +1526,23 @@ public class Cl extends PkCl implements NameListUp, NameListDown {
 		return clsList.iterator();
 	}
 }
+
+/**
+ * Output names of the methods, by name and descriptor, and fields, by name,
+ * resolved through the hierarchy of a class
+ */
+class ResolvedMembers {
+	public final Map<String, String> methods = new HashMap<>();
+	public final Map<String, String> fields = new HashMap<>();
+	public final int generation;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param generation
+	 *            the generation of the class tree names the tables are built from
+	 */
+	public ResolvedMembers(final int generation) {
+		this.generation = generation;
+	}
+}
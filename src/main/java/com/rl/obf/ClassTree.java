@@ -22,6 +22,8 @@ package com.rl.obf;
 import java.io.*;
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import com.rl.MapSignatureAdapter;
 import com.rl.NameProvider;
@@ -57,6 +59,32 @@ public class ClassTree implements NameMapper, ClassConstants {
 	 */
 	private Pk root = null;
 
+	/**
+	 * Classes (including placeholders) and packages in the tree, by fully qualified
+	 * name
+	 */
+	private Map<String, Cl> clIndex = new HashMap<String, Cl>();
+	private Map<String, Pk> pkIndex = new HashMap<String, Pk>();
+
+	/**
+	 * Counts of the changes to the structure of the tree, and to it or any output
+	 * name, by which the full names cached in tree items are checked
+	 */
+	private int treeGeneration = 0;
+	private int nameGeneration = 0;
+
+	/**
+	 * Have all names been generated and resolved?
+	 */
+	private boolean namesFinal = false;
+
+	/**
+	 * Memos of class, descriptor and signature mappings, once the names are final
+	 */
+	private MapMemo classMemo = null;
+	private MapMemo descriptorMemo = null;
+	private Map<AttrSource, MapMemo> signatureMemos = null;
+
 	// Class methods ---------------------------------------------------------
 	/**
 	 * Return a fully qualified name broken into package/class segments.
@@ -106,6 +134,38 @@ public class ClassTree implements NameMapper, ClassConstants {
 	 */
 	public ClassTree() {
 		this.root = Pk.createRoot(this);
+		this.pkIndex.put("", this.root);
+	}
+
+	/**
+	 * Return the count of changes to the structure of the tree.
+	 */
+	public int getTreeGeneration() {
+		return this.treeGeneration;
+	}
+
+	/**
+	 * Return the count of changes to the structure of the tree or any output name.
+	 */
+	public int getNameGeneration() {
+		return this.nameGeneration;
+	}
+
+	/**
+	 * Signal a change to the structure of the tree, so cached full names are
+	 * constructed again.
+	 */
+	public void treeChanged() {
+		this.treeGeneration++;
+		this.nameGeneration++;
+	}
+
+	/**
+	 * Signal a change to an output name, so cached full output names are
+	 * constructed again.
+	 */
+	public void namesChanged() {
+		this.nameGeneration++;
 	}
 
 	/**
@@ -162,12 +222,18 @@ public class ClassTree implements NameMapper, ClassConstants {
 		// Add the fully qualified class name
 		TreeItem ti = this.root;
 		String className = cf.getName();
+		int end = 0;
 		for (Iterator<SimpleName> nameIter = ClassTree.getNameList(className).iterator(); nameIter.hasNext();) {
 			SimpleName simpleName = nameIter.next();
 			String name = simpleName.getName();
+			// Each level is indexed by its fully qualified name, the name so far
+			end += name.length();
+			String fullName = className.substring(0, end);
+			end++;
 			if (simpleName.isAsPackage()) {
 				Pk pk = (Pk) ti;
 				ti = pk.addPackage(name);
+				this.pkIndex.put(fullName, (Pk) ti);
 			} else if (simpleName.isAsClass()) {
 				PkCl pkCl = (PkCl) ti;
 				// If this is an inner class, just add placeholder classes up the tree
@@ -176,6 +242,7 @@ public class ClassTree implements NameMapper, ClassConstants {
 				} else {
 					ti = pkCl.addClass(name, cf.getSuper(), cf.getInterfaces(), cf.getModifiers());
 				}
+				this.clIndex.put(fullName, (Cl) ti);
 			} else {
 				throw new ClassFileException("Internal error: illegal package/class name tag");
 			}
@@ -525,12 +592,89 @@ public class ClassTree implements NameMapper, ClassConstants {
 		return item;
 	}
 
+	/**
+	 * Memoise the class, descriptor and signature mappings, which is only valid
+	 * once no more names will change, so each distinct string is mapped only once.
+	 * 
+	 * @param size
+	 *            maximum number of mappings kept of each kind, or 0 for no memo
+	 */
+	public void enableMapMemo(int size) {
+		if (size <= 0) {
+			this.disableMapMemo();
+			return;
+		}
+		Map<AttrSource, MapMemo> memos = new EnumMap<AttrSource, MapMemo>(AttrSource.class);
+		for (AttrSource source : AttrSource.values()) {
+			memos.put(source, new MapMemo(size));
+		}
+		this.classMemo = new MapMemo(size);
+		this.descriptorMemo = new MapMemo(size);
+		this.signatureMemos = memos;
+	}
+
+	/**
+	 * Stop memoising mappings, discarding those already kept.
+	 */
+	public void disableMapMemo() {
+		this.classMemo = null;
+		this.descriptorMemo = null;
+		this.signatureMemos = null;
+	}
+
+	/**
+	 * Return the memos of the mappings, or an empty list if there are none.
+	 */
+	private List<MapMemo> getMapMemos() {
+		List<MapMemo> memos = new ArrayList<MapMemo>();
+		if (this.classMemo != null) {
+			memos.add(this.classMemo);
+			memos.add(this.descriptorMemo);
+			memos.addAll(this.signatureMemos.values());
+		}
+		return memos;
+	}
+
+	/**
+	 * Return the number of mappings answered from the memos.
+	 */
+	public long getMapMemoHits() {
+		long hits = 0;
+		for (MapMemo memo : this.getMapMemos()) {
+			hits += memo.getHits();
+		}
+		return hits;
+	}
+
+	/**
+	 * Return the number of mappings not found in the memos, and so computed.
+	 */
+	public long getMapMemoMisses() {
+		long misses = 0;
+		for (MapMemo memo : this.getMapMemos()) {
+			misses += memo.getMisses();
+		}
+		return misses;
+	}
+
+	/**
+	 * Signal that all names have been generated and resolved, so each class can
+	 * resolve member references from a table flattened across its hierarchy.
+	 */
+	public void setNamesFinal() {
+		this.namesFinal = true;
+	}
+
 	/**
 	 * Traverse the class tree, generating obfuscated names within each namespace.
 	 * 
 	 * @throws ClassFileException
 	 */
 	public void generateNames() throws ClassFileException {
+		// Names are about to change
+		this.namesFinal = false;
+		this.disableMapMemo();
+
 		// Rename default package
 		Map<String, Pk> rootMap = new HashMap<String, Pk>();
 		rootMap.put("", this.root);
@@ -598,27 +742,27 @@ public class ClassTree implements NameMapper, ClassConstants {
 			// Old !a/b/* wildcard syntax, for backward compatibility
 			// (acts as if every * becomes a ** in new-style match)
 			if (fullName.indexOf('!') == 0) {
-				final String fName = fullName.substring(1);
+				final WildcardMatcher fName = WildcardMatcher.compile(fullName.substring(1));
 				this.walkTree(new TreeAction() {
 					@Override
 					public void classAction(Cl cl) {
-						if (cl.isOldStyleMatch(fName)) {
+						if (cl.isMatch(fName)) {
 							list.add(cl);
 						}
 					}
-				});
+				}, this.getPatternRoot(fullName.substring(1), false));
 			}
 			// New a/b/** wildcard syntax
 			else {
-				final String fName = fullName;
+				final WildcardMatcher fName = WildcardMatcher.compileGeneral(fullName);
 				this.walkTree(new TreeAction() {
 					@Override
 					public void classAction(Cl cl) {
-						if (cl.isWildcardMatch(fName)) {
+						if (cl.isMatch(fName)) {
 							list.add(cl);
 						}
 					}
-				});
+				}, this.getPatternRoot(fullName, false));
 			}
 		} else {
 			// Single class
@@ -639,33 +783,33 @@ public class ClassTree implements NameMapper, ClassConstants {
 	 */
 	public List<Md> getMdList(String fullName, String descriptor) throws ClassFileException {
 		final List<Md> list = new ArrayList<Md>();
-		final String fDesc = descriptor;
 		// Wildcard? then return list of all matching methods
 		if ((fullName.indexOf('*') != -1) || (descriptor.indexOf('*') != -1)) {
+			final WildcardMatcher fDesc = WildcardMatcher.compile(descriptor);
 			// Old !a/b/* wildcard syntax, for backward compatibility
 			// (acts as if every * becomes a ** in new-style match)
 			if (fullName.indexOf('!') == 0) {
-				final String fName = fullName.substring(1);
+				final WildcardMatcher fName = WildcardMatcher.compile(fullName.substring(1));
 				this.walkTree(new TreeAction() {
 					@Override
 					public void methodAction(Md md) {
-						if (md.isOldStyleMatch(fName, fDesc)) {
+						if (md.isMatch(fName, fDesc)) {
 							list.add(md);
 						}
 					}
-				});
+				}, this.getPatternRoot(fullName.substring(1), true));
 			}
 			// New a/b/** wildcard syntax
 			else {
-				final String fName = fullName;
+				final WildcardMatcher fName = WildcardMatcher.compileGeneral(fullName);
 				this.walkTree(new TreeAction() {
 					@Override
 					public void methodAction(Md md) {
-						if (md.isWildcardMatch(fName, fDesc)) {
+						if (md.isMatch(fName, fDesc)) {
 							list.add(md);
 						}
 					}
-				});
+				}, this.getPatternRoot(fullName, true));
 			}
 		} else {
 			Md md = this.getMd(fullName, descriptor);
@@ -690,28 +834,28 @@ public class ClassTree implements NameMapper, ClassConstants {
 			// Old !a/b/* wildcard syntax, for backward compatibility
 			// (acts as if every * becomes a ** in new-style match)
 			if (fullName.indexOf('!') == 0) {
-				final String fName = fullName.substring(1);
+				final WildcardMatcher fName = WildcardMatcher.compile(fullName.substring(1));
 				this.walkTree(new TreeAction() {
 					@Override
 					public void fieldAction(Fd fd) {
-						if (fd.isOldStyleMatch(fName)) {
+						if (fd.isMatch(fName)) {
 							list.add(fd);
 						}
 					}
-				});
+				}, this.getPatternRoot(fullName.substring(1), true));
 			}
 			// New a/b/** wildcard syntax
 			else {
-				final String fName = fullName;
-				final String fDesc = descriptor;
+				final WildcardMatcher fName = WildcardMatcher.compileGeneral(fullName);
+				final WildcardMatcher fDesc = WildcardMatcher.compile(descriptor);
 				this.walkTree(new TreeAction() {
 					@Override
 					public void fieldAction(Fd fd) {
-						if (fd.isWildcardMatch(fName, fDesc)) {
+						if (fd.isMatch(fName, fDesc)) {
 							list.add(fd);
 						}
 					}
-				});
+				}, this.getPatternRoot(fullName, true));
 			}
 		} else {
 			Fd fd = this.getFd(fullName);
@@ -722,6 +866,43 @@ public class ClassTree implements NameMapper, ClassConstants {
 		return list;
 	}
 
+	/**
+	 * Return the deepest package level that begins the literal part of a wildcard
+	 * pattern, up to its first '*', so only the items under it need be tested.
+	 * 
+	 * @param pattern
+	 * @param isMember
+	 *            is this a method or field pattern, whose last level names the
+	 *            member and the one before it the class, not a package?
+	 */
+	private Pk getPatternRoot(String pattern, boolean isMember) {
+		int end = pattern.indexOf('*');
+		if (end == -1) {
+			end = pattern.length();
+		}
+		// A class may share its name with a package, so never descend into the class level
+		if (isMember) {
+			end = Math.min(end, pattern.lastIndexOf(ClassTree.METHOD_FIELD_LEVEL));
+		}
+		Pk pk = this.root;
+		int start = 0;
+		int pos;
+		while ((pos = pattern.indexOf(ClassTree.PACKAGE_LEVEL, start)) != -1 && pos < end) {
+			String name = pattern.substring(start, pos);
+			// Inner class names may hold package separators, so stop at any class level
+			if (name.indexOf('$') != -1) {
+				break;
+			}
+			Pk pkNext = pk.getPackage(name);
+			if (pkNext == null) {
+				break;
+			}
+			pk = pkNext;
+			start = pos + 1;
+		}
+		return pk;
+	}
+
 	/**
 	 * Get class in tree from the fully qualified name, returning null if name not
 	 * found.
@@ -730,6 +911,36 @@ public class ClassTree implements NameMapper, ClassConstants {
 	 * @throws ClassFileException
 	 */
 	public Cl getCl(String fullName) throws ClassFileException {
+		if (fullName == null) {
+			return null;
+		}
+		Cl cl = this.clIndex.get(fullName);
+		if (cl == null && ClassTree.hasPackageInClass(fullName)) {
+			// Not a valid name, so walk the tree for it to be reported
+			return this.findCl(fullName);
+		}
+		return cl;
+	}
+
+	/**
+	 * Does the name have a package level following a class level, which makes it
+	 * an invalid fully qualified name?
+	 * 
+	 * @param fullName
+	 */
+	private static boolean hasPackageInClass(String fullName) {
+		int pos = fullName.indexOf(ClassTree.CLASS_LEVEL);
+		return pos != -1 && fullName.indexOf(ClassTree.PACKAGE_LEVEL, pos) != -1;
+	}
+
+	/**
+	 * Walk the tree for the class of a fully qualified name, returning null if
+	 * name not found.
+	 * 
+	 * @param fullName
+	 * @throws ClassFileException
+	 */
+	private Cl findCl(String fullName) throws ClassFileException {
 		TreeItem ti = this.root;
 		for (SimpleName simpleName : ClassTree.getNameList(fullName)) {
 			String name = simpleName.getName();
@@ -769,6 +980,23 @@ public class ClassTree implements NameMapper, ClassConstants {
 	 * @throws ClassFileException
 	 */
 	public Pk getPk(String fullName) throws ClassFileException {
+		// Class levels and a trailing package level are taken as package levels, so
+		// only other names are in the index
+		if (fullName != null && fullName.indexOf(ClassTree.CLASS_LEVEL) == -1
+				&& !fullName.endsWith(String.valueOf(ClassTree.PACKAGE_LEVEL))) {
+			return this.pkIndex.get(fullName);
+		}
+		return this.findPk(fullName);
+	}
+
+	/**
+	 * Walk the tree for the package of a fully qualified name, returning null if
+	 * name not found.
+	 * 
+	 * @param fullName
+	 * @throws ClassFileException
+	 */
+	private Pk findPk(String fullName) throws ClassFileException {
 		TreeItem ti = this.root;
 		for (SimpleName simpleName : ClassTree.getNameList(fullName)) {
 			String name = simpleName.getName();
@@ -832,6 +1060,25 @@ public class ClassTree implements NameMapper, ClassConstants {
 	 */
 	@Override
 	public String mapClass(String className) throws ClassFileException {
+		MapMemo memo = this.classMemo;
+		if (memo == null) {
+			return this.mapClassName(className);
+		}
+		String outName = memo.get(className);
+		if (outName == null) {
+			outName = this.mapClassName(className);
+			memo.put(className, outName);
+		}
+		return outName;
+	}
+
+	/**
+	 * Mapping for fully qualified class name, without the memo.
+	 * 
+	 * @param className
+	 * @throws ClassFileException
+	 */
+	private String mapClassName(String className) throws ClassFileException {
 		// Check for array -- requires special handling
 		if ((className.length() > 0) && (className.charAt(0) == '[')) {
 			StringBuilder newName = new StringBuilder();
@@ -878,7 +1125,13 @@ public class ClassTree implements NameMapper, ClassConstants {
 	@Override
 	public String mapMethod(String className, String methodName, String descriptor) throws ClassFileException {
 		String outName = methodName;
-		if (!methodName.equals("<init>")) {
+		if (!methodName.equals("<init>") && this.namesFinal) {
+			Cl cl = this.getCl(className);
+			String resolvedName = cl != null ? cl.getResolvedMethodOutName(methodName, descriptor) : null;
+			if (resolvedName != null) {
+				outName = resolvedName;
+			}
+		} else if (!methodName.equals("<init>")) {
 			Stack<Cl> s = new Stack<Cl>();
 			Cl nextCl = this.getCl(className);
 			if (nextCl != null) {
@@ -915,7 +1168,13 @@ public class ClassTree implements NameMapper, ClassConstants {
 	@Override
 	public String mapField(String className, String fieldName) throws ClassFileException {
 		String outName = fieldName;
-		if (!fieldName.equals("<init>")) {
+		if (!fieldName.equals("<init>") && this.namesFinal) {
+			Cl cl = this.getCl(className);
+			String resolvedName = cl != null ? cl.getResolvedFieldOutName(fieldName) : null;
+			if (resolvedName != null) {
+				outName = resolvedName;
+			}
+		} else if (!fieldName.equals("<init>")) {
 			Stack<Cl> s = new Stack<Cl>();
 			Cl nextCl = this.getCl(className);
 			if (nextCl != null) {
@@ -944,6 +1203,27 @@ public class ClassTree implements NameMapper, ClassConstants {
 	}
 
 	private String mapSignature(String signature, AttrSource source) throws ClassFileException {
+		Map<AttrSource, MapMemo> memos = this.signatureMemos;
+		if (memos == null) {
+			return this.mapSignatureType(signature, source);
+		}
+		MapMemo memo = memos.get(source);
+		String newSig = memo.get(signature);
+		if (newSig == null) {
+			newSig = this.mapSignatureType(signature, source);
+			memo.put(signature, newSig);
+		}
+		return newSig;
+	}
+
+	/**
+	 * Mapping for generic type signature, without the memo.
+	 * 
+	 * @param signature
+	 * @param source
+	 * @throws ClassFileException
+	 */
+	private String mapSignatureType(String signature, AttrSource source) throws ClassFileException {
 		SignatureWriter sw = new SignatureWriter();
 		SignatureVisitor sa = new MapSignatureAdapter(sw, this);
 		SignatureReader sr = new SignatureReader(signature);
@@ -1022,6 +1302,25 @@ public class ClassTree implements NameMapper, ClassConstants {
 	 */
 	@Override
 	public String mapDescriptor(String descriptor) throws ClassFileException {
+		MapMemo memo = this.descriptorMemo;
+		if (memo == null) {
+			return this.mapDescriptorString(descriptor);
+		}
+		String newDesc = memo.get(descriptor);
+		if (newDesc == null) {
+			newDesc = this.mapDescriptorString(descriptor);
+			memo.put(descriptor, newDesc);
+		}
+		return newDesc;
+	}
+
+	/**
+	 * Mapping for descriptor of field or method, without the memo.
+	 * 
+	 * @param descriptor
+	 * @throws ClassFileException
+	 */
+	private String mapDescriptorString(String descriptor) throws ClassFileException {
 		// Pass everything through unchanged, except for the String between 'L' and ';'
 		// -- this is passed through mapClass(String)
 		StringBuilder newDesc = new StringBuilder();
@@ -1251,3 +1550,66 @@ public class ClassTree implements NameMapper, ClassConstants {
 		}
 	}
 }
+
+/**
+ * Bounded, thread-safe memo of name mappings; once full, further mappings are
+ * computed each time rather than evicting those kept, which are the most common
+ * as they are met first.
+ */
+class MapMemo {
+	private final ConcurrentHashMap<String, String> map = new ConcurrentHashMap<String, String>();
+	private final int size;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param size
+	 *            maximum number of mappings kept
+	 */
+	public MapMemo(int size) {
+		this.size = size;
+	}
+
+	/**
+	 * Return the kept mapping of a name, or null if there is none.
+	 * 
+	 * @param name
+	 */
+	public String get(String name) {
+		String mapped = this.map.get(name);
+		if (mapped != null) {
+			this.hits.increment();
+		} else {
+			this.misses.increment();
+		}
+		return mapped;
+	}
+
+	/**
+	 * Keep the mapping of a name, unless the memo is full.
+	 * 
+	 * @param name
+	 * @param mapped
+	 */
+	public void put(String name, String mapped) {
+		if (this.map.size() < this.size) {
+			this.map.putIfAbsent(name, mapped);
+		}
+	}
+
+	/**
+	 * Return the number of mappings found.
+	 */
+	public long getHits() {
+		return this.hits.sum();
+	}
+
+	/**
+	 * Return the number of mappings not found.
+	 */
+	public long getMisses() {
+		return this.misses.sum();
+	}
+}
@@ -20,31 +20,59 @@
 package com.rl.obf;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.security.DigestOutputStream;
+import java.io.SequenceInputStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 
 import com.rl.NameProvider;
+import com.rl.obf.classfile.ByteBufferInput;
 import com.rl.obf.classfile.ClassConstants;
 import com.rl.obf.classfile.ClassFile;
 import com.rl.obf.classfile.ClassFileException;
+import com.rl.obf.classfile.NameMapper;
 import com.rl.util.Tools;
+import com.rl.util.zip.ArchiveReader;
+import com.rl.util.zip.ArchiveWriter;
+import com.rl.util.zip.Compressor;
+import com.rl.util.zip.DirectoryArchiveReader;
+import com.rl.util.zip.DirectoryArchiveWriter;
+import com.rl.util.zip.JarArchiveReader;
+import com.rl.util.zip.ZipWriter;
 import com.rl.util.rfc822.Header;
 import com.rl.util.rfc822.Section;
 import com.rl.util.rfc822.SectionList;
@@ -71,22 +99,34 @@ public class GuardDB implements ClassConstants {
 	private static final String ERROR_CORRUPT_CLASS = "# ERROR - corrupt class file: ";
 	private static final String WARNING_INCOMPATIBLE_VERSION_1 = "# WARNING - class file format has incompatible major-version number: v";
 	private static final String WARNING_INCOMPATIBLE_VERSION_2 = "# WARNING - this version of RetroGuard supports up to class format:  v";
-
-	// Fields ----------------------------------------------------------------
-	/**
-	 * JAR file for obfuscation
-	 */
-	private ZipFile inJar;
+	private static final String LOG_CACHE_HITS = "# Classes reused from remap cache: ";
+	private static final String LOG_CACHE_MISSES = "# Classes remapped                : ";
+	private static final String LOG_MEMO_HITS = "# Mappings reused from memo cache: ";
+	private static final String LOG_MEMO_MISSES = "# Mappings computed              : ";
+	private static final String LOG_PIPELINE_QUEUE = "# Entries queued for writing, on average      : ";
+	private static final String LOG_PIPELINE_READY = "#   of which transformed and ready to write : ";
+	private static final String LOG_PIPELINE_READER_WAIT = "# Reader waiting on a full queue            : ";
+	private static final String LOG_PIPELINE_WRITER_WAIT = "# Writer waiting on reader or transformation: ";
+	private static final String LOG_PIPELINE_MS = " ms";
+	private static final int READ_AHEAD_PER_THREAD = 16;
+	private static final int COPY_BUFFER_SIZE = 8192;
+	private static final long STREAM_THRESHOLD = 1024 * 1024;
 
 	/**
-	 * MANIFEST.MF RFC822-style data from old Jar
+	 * Marks the end of the entries queued by the reading stage
 	 */
-	private SectionList oldManifest;
+	private static final Future<OutputEntry> END_OF_ENTRIES = new FutureTask<>(new Callable<OutputEntry>() {
+		@Override
+		public OutputEntry call() {
+			return null;
+		}
+	});
 
+	// Fields ----------------------------------------------------------------
 	/**
-	 * MANIFEST.MF RFC822-style data for new Jar
+	 * JAR files, or exploded directories, for obfuscation, sharing one class tree
 	 */
-	private SectionList newManifest;
+	private List<InputJar> inJars = new ArrayList<>();
 
 	/**
 	 * Tree of packages, classes. methods, fields
@@ -113,18 +153,129 @@ public class GuardDB implements ClassConstants {
 	 */
 	private boolean enableDigestMD5 = false;
 
+	/**
+	 * Write output entries uncompressed?
+	 */
+	private boolean storeOutput = false;
+
+	/**
+	 * Cache of remapped classes from earlier runs, if enabled
+	 */
+	private RemapCache remapCache = null;
+
 	// Class Methods ---------------------------------------------------------
+	/**
+	 * Is the Jar entry a class file?
+	 * 
+	 * @param name
+	 */
+	private static boolean isClassEntry(final String name) {
+		return name.length() > GuardDB.CLASS_EXT.length()
+				&& name.substring(name.length() - GuardDB.CLASS_EXT.length(), name.length()).equals(GuardDB.CLASS_EXT);
+	}
+
+	/**
+	 * Create the worker pool for the configured number of threads, or null to do
+	 * all work on the calling thread.
+	 */
+	private static ExecutorService createExecutor() {
+		if (NameProvider.threads <= 1) {
+			return null;
+		}
+		return Executors.newFixedThreadPool(NameProvider.threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, "RetroGuard worker");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Maximum number of entries queued to the worker pool ahead of the entry being
+	 * merged.
+	 */
+	private static int getReadAhead() {
+		return Math.max(NameProvider.threads, 1) * GuardDB.READ_AHEAD_PER_THREAD;
+	}
+
+	/**
+	 * Run a task on the worker pool, or immediately if there is no pool.
+	 * 
+	 * @param executor
+	 * @param task
+	 */
+	private static <T> Future<T> submit(final ExecutorService executor, final Callable<T> task) {
+		if (executor != null) {
+			return executor.submit(task);
+		}
+		final FutureTask<T> future = new FutureTask<>(task);
+		future.run();
+		return future;
+	}
+
+	/**
+	 * Wait for the result of a task, rethrowing the exception it failed with.
+	 * 
+	 * @param future
+	 * @throws IOException
+	 * @throws ClassFileException
+	 */
+	private static <T> T getResult(final Future<T> future) throws IOException, ClassFileException {
+		try {
+			return future.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof ClassFileException) {
+				throw (ClassFileException) cause;
+			} else if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
 
 	// Instance Methods ------------------------------------------------------
 	/**
 	 * A classfile database for obfuscation.
 	 * 
 	 * @param inFile
+	 *            a JAR file, or an exploded directory
 	 * @throws IOException
 	 */
 	public GuardDB(final File inFile) throws IOException {
-		this.inJar = new ZipFile(inFile);
-		this.parseManifest();
+		this(new File[] { inFile });
+	}
+
+	/**
+	 * A classfile database for obfuscation of several JAR files together, so that
+	 * classes in one may extend, and be referenced from, classes in another.
+	 * 
+	 * @param inFiles
+	 *            JAR files, or exploded directories
+	 * @throws IOException
+	 */
+	public GuardDB(final File[] inFiles) throws IOException {
+		try {
+			for (final File inFile : inFiles) {
+				final InputJar input = new InputJar();
+				input.reader = inFile.isDirectory() ? new DirectoryArchiveReader(inFile.toPath())
+						: new JarArchiveReader(inFile);
+				this.inJars.add(input);
+				this.parseManifest(input);
+			}
+		} catch (final IOException e) {
+			this.close();
+			throw e;
+		}
 	}
 
 	/**
@@ -143,38 +294,82 @@ public class GuardDB implements ClassConstants {
 	 * @throws ClassFileException
 	 */
 	public void buildClassTree(final PrintWriter log) throws IOException, ClassFileException {
-		// Go through the input Jar, adding each class file to the database
+		// Go through the input Jars, adding each class file to the one database
 		int incompatibleVersion = 0;
 		this.classTree = new ClassTree();
-		final Enumeration<? extends ZipEntry> entries = this.inJar.entries();
-		while (entries.hasMoreElements()) {
-			// Get the next entry from the input Jar
-			final ZipEntry inEntry = entries.nextElement();
-			final String name = inEntry.getName();
-			if (name.length() > GuardDB.CLASS_EXT.length() && name
-					.substring(name.length() - GuardDB.CLASS_EXT.length(), name.length()).equals(GuardDB.CLASS_EXT)) {
-				// Create a full internal representation of the class file
-				final DataInputStream inStream = new DataInputStream(
-						new BufferedInputStream(this.inJar.getInputStream(inEntry)));
-				ClassFile cf = null;
-				try {
-					cf = ClassFile.create(inStream);
-				} catch (final ClassFileException e) {
-					log.println(GuardDB.ERROR_CORRUPT_CLASS + name + " ("
-							+ (e.getMessage() != null ? e.getMessage() : "") + ")");
-					System.err.println(GuardDB.ERROR_CORRUPT_CLASS + name + " ("
-							+ (e.getMessage() != null ? e.getMessage() : "") + ")");
-				} finally {
-					inStream.close();
-				}
+		long retainedSize = 0;
+		boolean withinLimit = true;
+
+		// Class files are inflated and parsed on the worker threads, a bounded number
+		// ahead of the merge, which stays serial and in Jar order
+		final ExecutorService executor = GuardDB.createExecutor();
+		final Deque<ZipEntry> pendingEntries = new ArrayDeque<>();
+		final Deque<Future<ClassFile>> pendingClasses = new ArrayDeque<>();
+		try {
+			for (final InputJar input : this.inJars) {
+				input.parsedClasses = NameProvider.retainClasses ? new HashMap<String, ClassFile>() : null;
+				final Enumeration<? extends ZipEntry> entries = input.reader.entries();
+				while (entries.hasMoreElements() || !pendingEntries.isEmpty()) {
+					// Queue up the next class files from the input Jar
+					while (entries.hasMoreElements() && pendingEntries.size() < GuardDB.getReadAhead()) {
+						final ZipEntry inEntry = entries.nextElement();
+						if (GuardDB.isClassEntry(inEntry.getName())) {
+							// Parse in full only the classes kept for the remap pass, while within the
+							// limit; once it is used up the rest are parsed as skeletons, and in full by
+							// the remap alone
+							boolean retain = input.parsedClasses != null && withinLimit;
+							if (retain && NameProvider.retainLimit > 0) {
+								final long size = inEntry.getSize();
+								if (size == -1) {
+									retain = false;
+								} else if (retainedSize + size > NameProvider.retainLimit) {
+									retain = false;
+									withinLimit = false;
+								} else {
+									retainedSize += size;
+								}
+							}
+							pendingEntries.add(inEntry);
+							pendingClasses.add(GuardDB.submitParse(executor, input.reader, inEntry, !retain));
+						}
+					}
+					if (pendingEntries.isEmpty()) {
+						continue;
+					}
 
-				if (cf != null) {
-					if (cf.hasIncompatibleVersion()) {
-						incompatibleVersion = cf.getMajorVersion();
+					// Merge the oldest class file into the database
+					final ZipEntry inEntry = pendingEntries.remove();
+					final String name = inEntry.getName();
+					ClassFile cf = null;
+					try {
+						cf = GuardDB.getResult(pendingClasses.remove());
+					} catch (final ClassFileException e) {
+						log.println(GuardDB.ERROR_CORRUPT_CLASS + name + " ("
+								+ (e.getMessage() != null ? e.getMessage() : "") + ")");
+						System.err.println(GuardDB.ERROR_CORRUPT_CLASS + name + " ("
+								+ (e.getMessage() != null ? e.getMessage() : "") + ")");
+					}
+
+					if (cf != null) {
+						if (cf.hasIncompatibleVersion()) {
+							incompatibleVersion = cf.getMajorVersion();
+						}
+						this.classTree.addClassFile(cf);
+
+						// Keep the parsed class for the remap pass, if it was parsed in full for it
+						if (input.parsedClasses != null && !cf.isSkeleton()) {
+							input.parsedClasses.put(name, cf);
+						}
 					}
-					this.classTree.addClassFile(cf);
 				}
 			}
+		} finally {
+			for (final Future<ClassFile> future : pendingClasses) {
+				future.cancel(true);
+			}
+			if (executor != null) {
+				executor.shutdownNow();
+			}
 		}
 		// Warn if classes are incompatible version of class file format
 		if (incompatibleVersion != 0) {
@@ -412,6 +607,11 @@ public class GuardDB implements ClassConstants {
 		// method and field names for each namespace
 		this.classTree.resolveClasses();
 
+		// Names are now final, so member references can be resolved from flattened
+		// tables, and class, descriptor and signature mappings memoised for the remap
+		this.classTree.setNamesFinal();
+		this.classTree.enableMapMemo(NameProvider.mapCacheSize);
+
 		// Signal that the namespace maps have been created
 		this.hasMap = true;
 
@@ -429,11 +629,31 @@ public class GuardDB implements ClassConstants {
 	 * Remap each class based on the remap database, and remove attributes.
 	 * 
 	 * @param out
+	 *            a JAR file, or an existing directory to write the output exploded
 	 * @param log
 	 * @throws IOException
 	 * @throws ClassFileException
 	 */
 	public void remapTo(final File out, final PrintWriter log) throws IOException, ClassFileException {
+		this.remapTo(new File[] { out }, log);
+	}
+
+	/**
+	 * Remap each class based on the remap database, and remove attributes, writing
+	 * each input JAR to its own output.
+	 * 
+	 * @param outs
+	 *            a JAR file, or an existing directory to write the output exploded,
+	 *            for each input
+	 * @param log
+	 * @throws IOException
+	 * @throws ClassFileException
+	 */
+	public void remapTo(final File[] outs, final PrintWriter log) throws IOException, ClassFileException {
+		if (outs.length != this.inJars.size()) {
+			throw new IllegalArgumentException("Number of output files does not match number of input files.");
+		}
+
 		// Generate map table if not already done
 		if (!this.hasMap) {
 			this.createMap(log);
@@ -442,218 +662,737 @@ public class GuardDB implements ClassConstants {
 		// Write the name frequency and name mapping table to the log file
 		this.classTree.dump(log);
 
+		this.remapCache = NameProvider.remapCache != null ? new RemapCache(NameProvider.remapCache) : null;
+		for (int i = 0; i < outs.length; i++) {
+			this.remapTo(this.inJars.get(i), outs[i], log);
+		}
+		if (this.remapCache != null) {
+			log.println("#");
+			log.println(GuardDB.LOG_CACHE_HITS + this.remapCache.getHits());
+			log.println(GuardDB.LOG_CACHE_MISSES + this.remapCache.getMisses());
+			log.println("#");
+		}
+		if (NameProvider.mapCacheSize > 0) {
+			log.println("#");
+			log.println(GuardDB.LOG_MEMO_HITS + this.classTree.getMapMemoHits());
+			log.println(GuardDB.LOG_MEMO_MISSES + this.classTree.getMapMemoMisses());
+			log.println("#");
+		}
+	}
+
+	/**
+	 * Remap the classes of one input JAR, and copy its other entries, to its
+	 * output.
+	 * 
+	 * @param input
+	 * @param out
+	 * @param log
+	 * @throws IOException
+	 * @throws ClassFileException
+	 */
+	private void remapTo(final InputJar input, final File out, final PrintWriter log)
+			throws IOException, ClassFileException {
 		// Go through the input Jar, removing attributes and remapping the Constant Pool
 		// for each class file. Other files are
 		// copied through unchanged, except for manifest and any signature files - these
 		// are deleted and the manifest is
 		// regenerated.
-		final Enumeration<? extends ZipEntry> entries = this.inJar.entries();
-		ZipOutputStream outJar = null;
+		final ExecutorService executor = GuardDB.createExecutor();
+		ArchiveWriter outJar = null;
 		try {
-			outJar = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(out)));
+			if (out.isDirectory()) {
+				outJar = new DirectoryArchiveWriter(out.toPath());
+			} else {
+				final ZipWriter zipWriter = new ZipWriter(new BufferedOutputStream(new FileOutputStream(out)));
+				zipWriter.setLevel(NameProvider.compressionLevel);
+				zipWriter.setStored(NameProvider.storeEntries);
+				zipWriter.setExecutor(executor, NameProvider.threads);
+				outJar = zipWriter;
+			}
+			this.storeOutput = NameProvider.storeEntries || !outJar.isCompressed();
 			// No comment in Pro, to reduce output jar size
 			if (Version.isLite) {
 				outJar.setComment(Version.getJarComment());
 			}
-			while (entries.hasMoreElements()) {
-				// Get the next entry from the input Jar
-				final ZipEntry inEntry = entries.nextElement();
+			if (executor != null) {
+				this.writePipelined(executor, input, outJar, log);
+			} else {
+				this.writeInline(input, outJar, log);
+			}
 
-				// Ignore directories
-				if (inEntry.isDirectory()) {
-					continue;
-				}
+			// Finally, write the new manifest file
+			final ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+			final PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(manifest)));
+			input.newManifest.writeString(writer);
+			writer.flush();
+			outJar.putEntry(GuardDB.STREAM_NAME_MANIFEST, manifest.toByteArray(), 0, manifest.size());
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+			if (outJar != null) {
+				outJar.close();
+			}
+		}
+	}
 
-				// Open the entry and prepare to process it
-				DataInputStream inStream = null;
+	/**
+	 * Prepare and write the entries of an input Jar one at a time, on this thread.
+	 * 
+	 * @param input
+	 * @param outJar
+	 * @param log
+	 * @throws IOException
+	 * @throws ClassFileException
+	 */
+	private void writeInline(final InputJar input, final ArchiveWriter outJar, final PrintWriter log)
+			throws IOException, ClassFileException {
+		final Enumeration<? extends ZipEntry> entries = input.reader.entries();
+		while (entries.hasMoreElements()) {
+			final Future<OutputEntry> future = this.submitEntry(null, input, entries.nextElement(), false);
+			if (future != null) {
+				this.writeEntry(input, outJar, GuardDB.getResult(future), log);
+			}
+		}
+	}
+
+	/**
+	 * Prepare and write the entries of an input Jar in a pipeline of three stages:
+	 * a reader thread reads, and inflates, the entries in Jar order and hands them
+	 * to the worker pool to be transformed and compressed, queueing them to be
+	 * written in the same order on this thread. The queue is bounded, so the reader
+	 * waits while it is full, and its occupancy is written to the log.
+	 * 
+	 * @param executor
+	 * @param input
+	 * @param outJar
+	 * @param log
+	 * @throws IOException
+	 * @throws ClassFileException
+	 */
+	private void writePipelined(final ExecutorService executor, final InputJar input, final ArchiveWriter outJar,
+			final PrintWriter log) throws IOException, ClassFileException {
+		final BlockingQueue<Future<OutputEntry>> queue = new ArrayBlockingQueue<>(GuardDB.getReadAhead());
+		final PipelineStats stats = new PipelineStats();
+		final Thread reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
 				try {
-					inStream = new DataInputStream(new BufferedInputStream(this.inJar.getInputStream(inEntry)));
-					final String inName = inEntry.getName();
-					if (inName.length() > GuardDB.CLASS_EXT.length()
-							&& inName.substring(inName.length() - GuardDB.CLASS_EXT.length(), inName.length())
-									.equals(GuardDB.CLASS_EXT)) {
-						// Write obfuscated class to the output Jar
-						ClassFile cf = null;
-						try {
-							cf = ClassFile.create(inStream);
-						} catch (final ClassFileException e) {
-							// don't copy corrupt classes
+					final Enumeration<? extends ZipEntry> entries = input.reader.entries();
+					while (entries.hasMoreElements()) {
+						final Future<OutputEntry> future = GuardDB.this.submitEntry(executor, input,
+								entries.nextElement(), true);
+						if (future != null) {
+							final long start = System.nanoTime();
+							queue.put(future);
+							stats.readerWait += System.nanoTime() - start;
 						}
-						if (cf != null) {
-							// To reduce output jar size in Pro, no class ID string
-							if (Version.isLite) {
-								cf.setIdString(Version.getClassIdString());
+					}
+					queue.put(GuardDB.END_OF_ENTRIES);
+				} catch (final InterruptedException e) {
+					// the writing thread has failed
+				} catch (final Throwable e) {
+					// Hand the failure to the writing thread
+					final FutureTask<OutputEntry> failed = new FutureTask<>(new Callable<OutputEntry>() {
+						@Override
+						public OutputEntry call() throws Exception {
+							if (e instanceof Error) {
+								throw (Error) e;
 							}
-							final Cl cl = this.classTree.getCl(cf.getName());
-							// Trim entire class if requested
-							if (cl != null) {
-								cf.trimAttrs(this.classTree);
-								cf.updateRefCount();
-								cf.remap(this.classTree, log, this.enableMapClassString);
-								final ZipEntry outEntry = new ZipEntry(cf.getName() + GuardDB.CLASS_EXT);
-								outJar.putNextEntry(outEntry);
-
-								// Create an OutputStream piped through a number of digest generators for the
-								// manifest
-								final List<MessageDigest> digests = new ArrayList<>();
-								MessageDigest shaDigest = null;
-								MessageDigest md5Digest = null;
-								OutputStream outputStream = outJar;
-								if (this.enableDigestSHA) {
-									try {
-										shaDigest = MessageDigest.getInstance("SHA-1");
-										digests.add(shaDigest);
-										outputStream = new DigestOutputStream(outputStream, shaDigest);
-									} catch (final NoSuchAlgorithmException e) {
-										this.enableDigestSHA = false;
-									}
-								}
-								if (this.enableDigestMD5) {
-									try {
-										md5Digest = MessageDigest.getInstance("MD5");
-										digests.add(md5Digest);
-										outputStream = new DigestOutputStream(outputStream, md5Digest);
-									} catch (final NoSuchAlgorithmException e) {
-										this.enableDigestMD5 = false;
-									}
-								}
-								final DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+							throw (Exception) e;
+						}
+					});
+					failed.run();
+					try {
+						queue.put(failed);
+					} catch (final InterruptedException e2) {
+						// the writing thread has failed
+					}
+				}
+			}
+		}, "RetroGuard reader");
+		reader.setDaemon(true);
+		reader.start();
 
-								// Dump the classfile, while creating the digests
-								cf.write(dataOutputStream);
-								dataOutputStream.flush();
-								outJar.closeEntry();
+		boolean completed = false;
+		try {
+			while (true) {
+				// Sample the queue occupancy before taking the next entry
+				int ready = 0;
+				for (final Future<OutputEntry> future : queue) {
+					if (future.isDone()) {
+						ready++;
+					}
+				}
+				stats.samples++;
+				stats.queued += queue.size();
+				stats.ready += ready;
 
-								// Now update the manifest entry for the class with new name and new digests
-								this.updateManifest(inName, cf.getName() + GuardDB.CLASS_EXT, digests);
-							}
+				// Write the oldest entry to the output Jar, once read and transformed
+				final long start = System.nanoTime();
+				final Future<OutputEntry> future;
+				try {
+					future = queue.take();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException();
+				}
+				if (future == GuardDB.END_OF_ENTRIES) {
+					break;
+				}
+				final OutputEntry entry = GuardDB.getResult(future);
+				stats.writerWait += System.nanoTime() - start;
+				this.writeEntry(input, outJar, entry, log);
+			}
+			completed = true;
+		} finally {
+			if (!completed) {
+				reader.interrupt();
+				for (final Future<OutputEntry> future : queue) {
+					future.cancel(true);
+				}
+			}
+		}
+		try {
+			reader.join();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+
+		// Report where the pipeline waited: a reader waiting on a full queue of entries
+		// still to be transformed points to the transformation stage, of entries ready
+		// to write to the writing stage, and a writer waiting on an emptying queue to
+		// the reading stage
+		log.println("#");
+		log.println(GuardDB.LOG_PIPELINE_QUEUE
+				+ String.format("%.1f of %d", stats.getAverageQueued(), GuardDB.getReadAhead()));
+		log.println(GuardDB.LOG_PIPELINE_READY + String.format("%.1f", stats.getAverageReady()));
+		log.println(GuardDB.LOG_PIPELINE_READER_WAIT + stats.readerWait / 1000000 + GuardDB.LOG_PIPELINE_MS);
+		log.println(GuardDB.LOG_PIPELINE_WRITER_WAIT + stats.writerWait / 1000000 + GuardDB.LOG_PIPELINE_MS);
+		log.println("#");
+	}
+
+	/**
+	 * Submit an entry of an input Jar to be prepared for writing, or return null
+	 * if it is not to be written.
+	 * 
+	 * @param executor
+	 * @param input
+	 * @param inEntry
+	 * @param readData
+	 *            read the entry data on this thread, leaving only the
+	 *            transformation to the worker pool?
+	 * @throws IOException
+	 */
+	private Future<OutputEntry> submitEntry(final ExecutorService executor, final InputJar input,
+			final ZipEntry inEntry, final boolean readData) throws IOException {
+		// Ignore directories
+		if (inEntry.isDirectory()) {
+			return null;
+		}
+
+		final String inName = inEntry.getName();
+		if (GuardDB.isClassEntry(inName)) {
+			// Obfuscate the class, reusing the instance parsed for the class tree if one was
+			// kept
+			final ClassFile cf = input.parsedClasses != null ? input.parsedClasses.remove(inName) : null;
+			final byte[] data = readData && (cf == null || this.remapCache != null)
+					? GuardDB.readEntry(input.reader, inEntry)
+					: null;
+			return this.submitRemap(executor, input.reader, inEntry, cf, data);
+		} else if (GuardDB.STREAM_NAME_MANIFEST.equals(inName.toUpperCase())
+				|| inName.length() > GuardDB.SIGNATURE_PREFIX.length() + 1 + GuardDB.SIGNATURE_EXT.length()
+						&& inName.indexOf(GuardDB.SIGNATURE_PREFIX) != -1
+						&& inName.substring(inName.length() - GuardDB.SIGNATURE_EXT.length(), inName.length())
+								.equals(GuardDB.SIGNATURE_EXT)) {
+			// Don't pass through the manifest or signature files
+			return null;
+		}
+
+		// Copy the non-class entry through unchanged
+		byte[] data = null;
+		if (readData && !GuardDB.isStreamed(inEntry)) {
+			data = this.canCopyRaw(input.reader, inEntry) ? input.reader.readRaw(inEntry)
+					: GuardDB.readEntry(input.reader, inEntry);
+		}
+		return this.submitCopy(executor, input.reader, inEntry, this.classTree.getOutName(inName), data);
+	}
+
+	/**
+	 * Read and parse a class file from an input Jar.
+	 * 
+	 * @param executor
+	 * @param jar
+	 * @param inEntry
+	 * @param skeleton
+	 *            parse only what is needed to build the class tree
+	 */
+	private static Future<ClassFile> submitParse(final ExecutorService executor, final ArchiveReader jar,
+			final ZipEntry inEntry, final boolean skeleton) {
+		return GuardDB.submit(executor, new Callable<ClassFile>() {
+			@Override
+			public ClassFile call() throws IOException, ClassFileException {
+				// Create an internal representation of the class file, in full if it is
+				// kept for the remap pass
+				return GuardDB.parseClass(jar, inEntry, null, skeleton);
+			}
+		});
+	}
+
+	/**
+	 * Obfuscate a class file from an input Jar, parsing it first if no parsed
+	 * instance is given. With the remap cache enabled, the class is taken from the
+	 * cache if its mapping is unchanged, and otherwise cached once remapped.
+	 * 
+	 * @param executor
+	 * @param jar
+	 * @param inEntry
+	 * @param parsedClass
+	 * @param data
+	 *            the class file data, if already read
+	 */
+	private Future<OutputEntry> submitRemap(final ExecutorService executor, final ArchiveReader jar,
+			final ZipEntry inEntry, final ClassFile parsedClass, final byte[] data) {
+		final ClassTree tree = this.classTree;
+		final boolean mapClassString = this.enableMapClassString;
+		final RemapCache cache = this.remapCache;
+		return GuardDB.submit(executor, new Callable<OutputEntry>() {
+			@Override
+			public OutputEntry call() throws IOException, ClassFileException {
+				final String inName = inEntry.getName();
+				ClassFile cf = parsedClass;
+				byte[] classBytes = data;
+				String cacheKey = null;
+				if (cache != null) {
+					if (classBytes == null) {
+						classBytes = GuardDB.readEntry(jar, inEntry);
+					}
+
+					// Trimmed classes are never cached, so drop them before looking
+					try {
+						if (tree.getCl(ClassFile.readName(classBytes, 0, classBytes.length)) == null) {
+							return new OutputEntry(inName, null);
 						}
-					} else if (GuardDB.STREAM_NAME_MANIFEST.equals(inName.toUpperCase())
-							|| inName.length() > GuardDB.SIGNATURE_PREFIX.length() + 1 + GuardDB.SIGNATURE_EXT.length()
-									&& inName.indexOf(GuardDB.SIGNATURE_PREFIX) != -1
-									&& inName.substring(inName.length() - GuardDB.SIGNATURE_EXT.length(),
-											inName.length()).equals(GuardDB.SIGNATURE_EXT)) {
-						// Don't pass through the manifest or signature files
-						continue;
-					} else {
-						// Copy the non-class entry through unchanged
-						final long size = inEntry.getSize();
-						if (size != -1) {
-							final byte[] bytes = new byte[(int) size];
-							inStream.readFully(bytes);
-							final String outName = this.classTree.getOutName(inName);
-							final ZipEntry outEntry = new ZipEntry(outName);
-							outJar.putNextEntry(outEntry);
-
-							// Create an OutputStream piped through a number of digest generators for the
-							// manifest
-							final List<MessageDigest> digests = new ArrayList<>();
-							MessageDigest shaDigest = null;
-							MessageDigest md5Digest = null;
-							OutputStream outputStream = outJar;
-							if (this.enableDigestSHA) {
-								try {
-									shaDigest = MessageDigest.getInstance("SHA-1");
-									digests.add(shaDigest);
-									outputStream = new DigestOutputStream(outputStream, shaDigest);
-								} catch (final NoSuchAlgorithmException e) {
-									this.enableDigestSHA = false;
-								}
-							}
-							if (this.enableDigestMD5) {
-								try {
-									md5Digest = MessageDigest.getInstance("MD5");
-									digests.add(md5Digest);
-									outputStream = new DigestOutputStream(outputStream, md5Digest);
-								} catch (final NoSuchAlgorithmException e) {
-									this.enableDigestMD5 = false;
-								}
-							}
-							final DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+					} catch (final ClassFileException e) {
+						// don't copy corrupt classes
+						return new OutputEntry(inName, null);
+					}
+
+					// Reuse the class remapped by an earlier run, without parsing it
+					cacheKey = cache.getKey(classBytes, mapClassString, NameProvider.compactConstantPool);
+					final CachedClass cached = cache.get(cacheKey, tree);
+					if (cached != null) {
+						return GuardDB.this.compressEntry(inName, cached.outName, cached.data, cached.logText);
+					}
+				}
+				if (cf == null) {
+					try {
+						cf = GuardDB.parseClass(jar, inEntry, classBytes, false);
+					} catch (final ClassFileException e) {
+						// don't copy corrupt classes
+						return new OutputEntry(inName, null);
+					}
+				}
+
+				// To reduce output jar size in Pro, no class ID string
+				if (Version.isLite) {
+					cf.setIdString(Version.getClassIdString());
+				}
+				final Cl cl = tree.getCl(cf.getName());
+				// Trim entire class if requested
+				if (cl == null) {
+					return new OutputEntry(inName, null);
+				}
 
-							// Dump the data, while creating the digests
-							dataOutputStream.write(bytes, 0, bytes.length);
-							dataOutputStream.flush();
-							outJar.closeEntry();
+				// Remap the class, collecting its log output for the writing thread, and the
+				// mapping it depends on for the cache
+				final String className = cf.getName();
+				final NameMapper nm = cache != null ? new RecordingNameMapper(tree) : tree;
+				final StringWriter logText = new StringWriter();
+				final PrintWriter classLog = new PrintWriter(logText);
+				cf.trimAttrs(nm);
+				cf.updateRefCount();
+				cf.remap(nm, classLog, mapClassString);
+				classLog.flush();
+				if (NameProvider.compactConstantPool) {
+					cf.compactConstantPool();
+				}
 
-							// Now update the manifest entry for the entry with new name and new digests
-							this.updateManifest(inName, outName, digests);
+				// Dump the classfile into a single exactly sized array, and compress it
+				final byte[] data = cf.toByteArray();
+				final String outName = cf.getName() + GuardDB.CLASS_EXT;
+				if (cache != null) {
+					cache.put(cacheKey, className, (RecordingNameMapper) nm, outName, logText.toString(), data);
+				}
+				return GuardDB.this.compressEntry(inName, outName, data, logText.toString());
+			}
+		});
+	}
+
+	/**
+	 * Read a non-class entry from an input Jar, to be copied through unchanged.
+	 * Large entries, or entries of unknown size, are left to be streamed by the
+	 * writing thread.
+	 * 
+	 * @param executor
+	 * @param jar
+	 * @param inEntry
+	 * @param outName
+	 * @param data
+	 *            the entry data if already read, compressed if it is to be copied
+	 *            as it is
+	 */
+	private Future<OutputEntry> submitCopy(final ExecutorService executor, final ArchiveReader jar,
+			final ZipEntry inEntry, final String outName, final byte[] data) {
+		return GuardDB.submit(executor, new Callable<OutputEntry>() {
+			@Override
+			public OutputEntry call() throws IOException {
+				final String inName = inEntry.getName();
+				final boolean stream = GuardDB.isStreamed(inEntry);
+
+				// Copy the compressed data as it is, only inflating it for the manifest digests,
+				// unless it is to be stored
+				if (GuardDB.this.canCopyRaw(jar, inEntry)) {
+					final List<MessageDigest> digests = GuardDB.this.createDigests();
+					if (!digests.isEmpty()) {
+						if (data != null) {
+							GuardDB.digestRaw(inEntry, data, digests);
+						} else {
+							GuardDB.readThrough(jar, inEntry, digests, null);
 						}
 					}
-				} finally {
-					if (inStream != null) {
-						inStream.close();
+					if (stream) {
+						return new OutputEntry(inName, outName, inEntry, inEntry.getMethod(), inEntry.getCrc(),
+								inEntry.getSize(), digests);
 					}
+					return new OutputEntry(inName, outName, data != null ? data : jar.readRaw(inEntry),
+							inEntry.getMethod(), inEntry.getCrc(), inEntry.getSize(), digests, null);
+				}
+
+				if (stream && NameProvider.storeEntries) {
+					// A stored entry needs its CRC before the data, so read it through twice
+					final List<MessageDigest> digests = GuardDB.this.createDigests();
+					final CRC32 crc = new CRC32();
+					final long size = GuardDB.readThrough(jar, inEntry, digests, crc);
+					return new OutputEntry(inName, outName, inEntry, ZipEntry.STORED, crc.getValue(), size, digests);
+				} else if (stream) {
+					return new OutputEntry(inName, outName, inEntry, -1, -1, -1, null);
+				}
+				if (data != null) {
+					return GuardDB.this.compressEntry(inName, outName, data, null);
+				}
+				final DataInputStream inStream = new DataInputStream(
+						new BufferedInputStream(jar.getInputStream(inEntry)));
+				try {
+					final byte[] bytes = new byte[(int) inEntry.getSize()];
+					inStream.readFully(bytes);
+					return GuardDB.this.compressEntry(inName, outName, bytes, null);
+				} finally {
+					inStream.close();
 				}
 			}
+		});
+	}
 
-			// Finally, write the new manifest file
-			final ZipEntry outEntry = new ZipEntry(GuardDB.STREAM_NAME_MANIFEST);
-			outJar.putNextEntry(outEntry);
-			final PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(outJar)));
-			this.newManifest.writeString(writer);
-			writer.flush();
-			outJar.closeEntry();
-		} finally {
-			if (outJar != null) {
-				outJar.close();
+	/**
+	 * Is a non-class entry too large, or of unknown size, to be held in memory?
+	 * 
+	 * @param inEntry
+	 */
+	private static boolean isStreamed(final ZipEntry inEntry) {
+		return inEntry.getSize() == -1 || inEntry.getSize() > GuardDB.STREAM_THRESHOLD
+				|| inEntry.getCompressedSize() > GuardDB.STREAM_THRESHOLD;
+	}
+
+	/**
+	 * Is a non-class entry to be copied with its data compressed as it is?
+	 * 
+	 * @param jar
+	 * @param inEntry
+	 */
+	private boolean canCopyRaw(final ArchiveReader jar, final ZipEntry inEntry) {
+		return jar.canCopy(inEntry) && (!this.storeOutput || inEntry.getMethod() == ZipEntry.STORED);
+	}
+
+	/**
+	 * Take the CRC and manifest digests of entry data, and compress it, or store it
+	 * if so configured.
+	 * 
+	 * @param inName
+	 * @param outName
+	 * @param bytes
+	 * @param logText
+	 */
+	private OutputEntry compressEntry(final String inName, final String outName, final byte[] bytes,
+			final String logText) {
+		final CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length);
+		final List<MessageDigest> digests = this.createDigests();
+		for (final MessageDigest digest : digests) {
+			digest.update(bytes, 0, bytes.length);
+		}
+		if (this.storeOutput) {
+			return new OutputEntry(inName, outName, bytes, ZipEntry.STORED, crc.getValue(), bytes.length, digests,
+					logText);
+		}
+		return new OutputEntry(inName, outName, Compressor.deflate(bytes, 0, bytes.length, NameProvider.compressionLevel),
+				ZipEntry.DEFLATED, crc.getValue(), bytes.length, digests, logText);
+	}
+
+	/**
+	 * Write a prepared entry to the output Jar, along with its log output, and
+	 * update its manifest entry.
+	 * 
+	 * @param input
+	 *            the input Jar of the entry
+	 * @param outJar
+	 * @param entry
+	 * @param log
+	 * @throws IOException
+	 */
+	private void writeEntry(final InputJar input, final ArchiveWriter outJar, final OutputEntry entry,
+			final PrintWriter log) throws IOException {
+		if (entry.getLogText() != null) {
+			log.print(entry.getLogText());
+		}
+		if (entry.getOutName() == null) {
+			return;
+		}
+
+		List<MessageDigest> digests = entry.getDigests();
+		if (!entry.isStreamed()) {
+			// Write the prepared data
+			outJar.putRawEntry(entry.getOutName(), entry.getMethod(), entry.getCrc(), entry.getSize(),
+					entry.getData());
+		} else if (entry.getMethod() == -1) {
+			// Stream and compress the data, while creating the digests
+			digests = this.createDigests();
+			InputStream inStream = input.reader.getInputStream(entry.getSource());
+			try {
+				for (final MessageDigest digest : digests) {
+					inStream = new DigestInputStream(inStream, digest);
+				}
+				outJar.putEntry(entry.getOutName(), inStream);
+			} finally {
+				inStream.close();
+			}
+		} else {
+			// Stream the data as it is compressed in the input Jar, or inflated to store it
+			final ZipEntry source = entry.getSource();
+			final boolean copyRaw = entry.getMethod() == source.getMethod();
+			final InputStream inStream = copyRaw ? input.reader.openRaw(source) : input.reader.getInputStream(source);
+			try {
+				outJar.putRawEntry(entry.getOutName(), entry.getMethod(), entry.getCrc(), entry.getSize(),
+						copyRaw ? source.getCompressedSize() : entry.getSize(), inStream);
+			} finally {
+				inStream.close();
 			}
 		}
+
+		// Now update the manifest entry for the entry with new name and new digests
+		this.updateManifest(input, entry.getInName(), entry.getOutName(), digests);
 	}
 
 	/**
-	 * Close input JAR file.
+	 * Create the digest generators for the manifest.
 	 */
-	public void close() {
-		if (this.inJar != null) {
+	private List<MessageDigest> createDigests() {
+		final List<MessageDigest> digests = new ArrayList<>();
+		if (this.enableDigestSHA) {
+			try {
+				digests.add(MessageDigest.getInstance("SHA-1"));
+			} catch (final NoSuchAlgorithmException e) {
+				// no SHA-1 digest
+			}
+		}
+		if (this.enableDigestMD5) {
 			try {
-				this.inJar.close();
-			} catch (final IOException e) {
-				// ignore
+				digests.add(MessageDigest.getInstance("MD5"));
+			} catch (final NoSuchAlgorithmException e) {
+				// no MD5 digest
+			}
+		}
+		return digests;
+	}
+
+	/**
+	 * Parse a class file from an input Jar, from its data if already read. The
+	 * class file is parsed in place from a buffer unless the stream class reader
+	 * is selected.
+	 * 
+	 * @param jar
+	 * @param inEntry
+	 * @param data
+	 * @param skeleton
+	 *            parse only what is needed to build the class tree
+	 * @throws IOException
+	 * @throws ClassFileException
+	 */
+	private static ClassFile parseClass(final ArchiveReader jar, final ZipEntry inEntry, final byte[] data,
+			final boolean skeleton) throws IOException, ClassFileException {
+		if (NameProvider.bufferClassReader) {
+			// Parse in place from the whole class file in memory
+			final byte[] bytes = data != null ? data : GuardDB.readEntry(jar, inEntry);
+			return skeleton ? ClassFile.createSkeleton(new ByteBufferInput(ByteBuffer.wrap(bytes)))
+					: ClassFile.create(bytes, 0, bytes.length);
+		}
+		final DataInputStream inStream = new DataInputStream(
+				data != null ? new ByteArrayInputStream(data) : new BufferedInputStream(jar.getInputStream(inEntry)));
+		try {
+			return skeleton ? ClassFile.createSkeleton(inStream) : ClassFile.create(inStream);
+		} finally {
+			inStream.close();
+		}
+	}
+
+	/**
+	 * Read the data of an entry of an input Jar.
+	 * 
+	 * @param jar
+	 * @param inEntry
+	 * @throws IOException
+	 */
+	private static byte[] readEntry(final ArchiveReader jar, final ZipEntry inEntry) throws IOException {
+		final InputStream inStream = jar.getInputStream(inEntry);
+		try {
+			if (inEntry.getSize() >= 0) {
+				// Read straight into an array of the known size
+				final byte[] bytes = new byte[(int) inEntry.getSize()];
+				new DataInputStream(inStream).readFully(bytes);
+				return bytes;
+			}
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream(GuardDB.COPY_BUFFER_SIZE);
+			final byte[] buffer = new byte[GuardDB.COPY_BUFFER_SIZE];
+			int count;
+			while ((count = inStream.read(buffer)) != -1) {
+				bytes.write(buffer, 0, count);
+			}
+			return bytes.toByteArray();
+		} finally {
+			inStream.close();
+		}
+	}
+
+	/**
+	 * Update the manifest digests from the compressed data of an entry.
+	 * 
+	 * @param inEntry
+	 * @param raw
+	 * @param digests
+	 * @throws IOException
+	 */
+	private static void digestRaw(final ZipEntry inEntry, final byte[] raw, final List<MessageDigest> digests)
+			throws IOException {
+		if (inEntry.getMethod() == ZipEntry.STORED) {
+			for (final MessageDigest digest : digests) {
+				digest.update(raw, 0, raw.length);
+			}
+			return;
+		}
+
+		// A raw inflater needs a dummy byte after the end of the data
+		final Inflater inflater = new Inflater(true);
+		final InputStream inStream = new InflaterInputStream(
+				new SequenceInputStream(new ByteArrayInputStream(raw), new ByteArrayInputStream(new byte[1])),
+				inflater);
+		try {
+			final byte[] buffer = new byte[GuardDB.COPY_BUFFER_SIZE];
+			int count;
+			while ((count = inStream.read(buffer)) != -1) {
+				for (final MessageDigest digest : digests) {
+					digest.update(buffer, 0, count);
+				}
+			}
+		} finally {
+			inStream.close();
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Read an entry of the input Jar through, updating the manifest digests and,
+	 * if given, a CRC.
+	 * 
+	 * @param jar
+	 * @param inEntry
+	 * @param digests
+	 * @param crc
+	 * @return the size of the entry data
+	 * @throws IOException
+	 */
+	private static long readThrough(final ArchiveReader jar, final ZipEntry inEntry, final List<MessageDigest> digests,
+			final CRC32 crc) throws IOException {
+		final InputStream inStream = jar.getInputStream(inEntry);
+		try {
+			final byte[] buffer = new byte[GuardDB.COPY_BUFFER_SIZE];
+			long size = 0;
+			int count;
+			while ((count = inStream.read(buffer)) != -1) {
+				for (final MessageDigest digest : digests) {
+					digest.update(buffer, 0, count);
+				}
+				if (crc != null) {
+					crc.update(buffer, 0, count);
+				}
+				size += count;
 			}
-			this.inJar = null;
+			return size;
+		} finally {
+			inStream.close();
 		}
 	}
 
 	/**
-	 * Parse the RFC822-style MANIFEST.MF file
+	 * Close input JAR files.
+	 */
+	public void close() {
+		for (final InputJar input : this.inJars) {
+			input.reader.close();
+		}
+		this.inJars.clear();
+	}
+
+	/**
+	 * Parse the RFC822-style MANIFEST.MF file of an input Jar
 	 * 
+	 * @param input
 	 * @throws IOException
 	 */
-	private void parseManifest() throws IOException {
+	private void parseManifest(final InputJar input) throws IOException {
 		// The manifest file is the first in the jar and is called (case insensitively)
 		// 'MANIFEST.MF'
-		this.oldManifest = new SectionList();
-		final Enumeration<? extends ZipEntry> entries = this.inJar.entries();
+		input.oldManifest = new SectionList();
+		final Enumeration<? extends ZipEntry> entries = input.reader.entries();
 		while (entries.hasMoreElements()) {
 			// Get the first entry only from the input Jar
 			final ZipEntry inEntry = entries.nextElement();
 			final String name = inEntry.getName();
 			if (GuardDB.STREAM_NAME_MANIFEST.equals(name.toUpperCase())) {
-				this.oldManifest.parse(this.inJar.getInputStream(inEntry));
+				input.oldManifest.parse(input.reader.getInputStream(inEntry));
 				break;
 			}
 		}
 
 		// Create a fresh manifest, with a version header
-		this.newManifest = new SectionList();
-		Section version = this.oldManifest.find(GuardDB.MANIFEST_VERSION_TAG, GuardDB.MANIFEST_VERSION_VALUE);
+		input.newManifest = new SectionList();
+		Section version = input.oldManifest.find(GuardDB.MANIFEST_VERSION_TAG, GuardDB.MANIFEST_VERSION_VALUE);
 		if (version == null) {
 			version = new Section();
 			version.add(GuardDB.MANIFEST_VERSION_TAG, GuardDB.MANIFEST_VERSION_VALUE);
 		}
-		this.newManifest.add(version);
+		input.newManifest.add(version);
 
 		// copy through all the none-filename sections, apart from the version
-		for (final Section section : this.oldManifest) {
+		for (final Section section : input.oldManifest) {
 			if (section != null && section != version) {
 				final Header name = section.findTag(GuardDB.MANIFEST_NAME_TAG);
 				if (name == null) {
-					this.newManifest.add(section);
+					input.newManifest.add(section);
 				} else {
 					final String value = name.getValue();
 					if (value.length() > 0 && value.charAt(value.length() - 1) == '/') {
-						this.newManifest.add(section);
+						input.newManifest.add(section);
 					}
 				}
 			}
@@ -661,15 +1400,17 @@ public class GuardDB implements ClassConstants {
 	}
 
 	/**
-	 * Update an entry in the manifest file
+	 * Update an entry in the manifest file of an input Jar
 	 * 
+	 * @param input
 	 * @param inName
 	 * @param outName
 	 * @param digests
 	 */
-	private void updateManifest(final String inName, final String outName, final List<MessageDigest> digests) {
+	private void updateManifest(final InputJar input, final String inName, final String outName,
+			final List<MessageDigest> digests) {
 		// Check for section in old manifest
-		final Section oldSection = this.oldManifest.find(GuardDB.MANIFEST_NAME_TAG, inName);
+		final Section oldSection = input.oldManifest.find(GuardDB.MANIFEST_NAME_TAG, inName);
 		if (oldSection != null) {
 			// Create fresh section for entry, and enter "Name" header
 			final Section newSection = new Section();
@@ -701,7 +1442,52 @@ public class GuardDB implements ClassConstants {
 			}
 
 			// Append the new section to the new manifest
-			this.newManifest.add(newSection);
+			input.newManifest.add(newSection);
 		}
 	}
 }
+
+/**
+ * Occupancy and waiting times of the remap pipeline
+ */
+class PipelineStats {
+	public long samples;
+	public long queued;
+	public long ready;
+	public long readerWait;
+	public long writerWait;
+
+	public double getAverageQueued() {
+		return this.samples > 0 ? (double) this.queued / this.samples : 0;
+	}
+
+	public double getAverageReady() {
+		return this.samples > 0 ? (double) this.ready / this.samples : 0;
+	}
+}
+
+/**
+ * An input JAR file, or exploded directory, with its manifests
+ */
+class InputJar {
+	/**
+	 * Entries of the JAR file, or directory
+	 */
+	public ArchiveReader reader;
+
+	/**
+	 * MANIFEST.MF RFC822-style data from old Jar
+	 */
+	public SectionList oldManifest;
+
+	/**
+	 * MANIFEST.MF RFC822-style data for new Jar
+	 */
+	public SectionList newManifest;
+
+	/**
+	 * Classes parsed while building the tree, kept for the remap pass (by entry
+	 * name)
+	 */
+	public Map<String, ClassFile> parsedClasses = null;
+}
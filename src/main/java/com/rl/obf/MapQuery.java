@@ -0,0 +1,93 @@
+/* ===========================================================================
+ * $RCSfile: MapQuery.java,v $
+ * ===========================================================================
+ *
+ * RetroGuard -- an obfuscation package for Java classfiles.
+ *
+ * Copyright (c) 1998-2006 Mark Welsh (markw@retrologic.com)
+ *
+ * This program can be redistributed and/or modified under the terms of the
+ * Version 2 of the GNU General Public License as published by the Free
+ * Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+
+package com.rl.obf;
+
+import java.util.Arrays;
+
+import com.rl.obf.classfile.ClassFileException;
+import com.rl.obf.classfile.NameMapper;
+
+/**
+ * A query made of a name mapping.
+ *
+ * @author Mark Welsh
+ */
+class MapQuery {
+	public static final byte ATTRS = 0;
+	public static final byte CLASS = 1;
+	public static final byte METHOD = 2;
+	public static final byte FIELD = 3;
+	public static final byte DESCRIPTOR = 4;
+	public static final byte SIGNATURE_CLASS = 5;
+	public static final byte SIGNATURE_METHOD = 6;
+	public static final byte SIGNATURE_FIELD = 7;
+
+	public final byte kind;
+	public final String[] args;
+	public String result;
+
+	public MapQuery(final byte kind, final String[] args) {
+		this.kind = kind;
+		this.args = args;
+	}
+
+	/**
+	 * Run the query against a name mapping.
+	 *
+	 * @param nm
+	 * @throws ClassFileException
+	 */
+	public String run(final NameMapper nm) throws ClassFileException {
+		switch (this.kind) {
+		case ATTRS:
+			return nm.getAttrsToKeep().toString();
+		case CLASS:
+			return nm.mapClass(this.args[0]);
+		case METHOD:
+			return nm.mapMethod(this.args[0], this.args[1], this.args[2]);
+		case FIELD:
+			return nm.mapField(this.args[0], this.args[1]);
+		case DESCRIPTOR:
+			return nm.mapDescriptor(this.args[0]);
+		case SIGNATURE_CLASS:
+			return nm.mapSignatureClass(this.args[0]);
+		case SIGNATURE_METHOD:
+			return nm.mapSignatureMethod(this.args[0]);
+		case SIGNATURE_FIELD:
+			return nm.mapSignatureField(this.args[0]);
+		default:
+			throw new ClassFileException("Unknown remap cache query: " + this.kind);
+		}
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (!(o instanceof MapQuery)) {
+			return false;
+		}
+		final MapQuery query = (MapQuery) o;
+		return this.kind == query.kind && Arrays.equals(this.args, query.args);
+	}
+
+	@Override
+	public int hashCode() {
+		return this.kind * 31 + Arrays.hashCode(this.args);
+	}
+}
@@ -48,14 +48,4 @@ public class Md extends MdFd {
 			final int access) throws ClassFileException {
 		super(parent, isSynthetic, name, descriptor, access);
 	}
-
-	/**
-	 * Does this method match the wildcard pattern? (compatibility mode)
-	 * 
-	 * @param namePattern
-	 * @param descPattern
-	 */
-	public boolean isOldStyleMatch(final String namePattern, final String descPattern) {
-		return this.isOldStyleMatch(namePattern) && TreeItem.isMatch(descPattern, this.getDescriptor());
-	}
 }
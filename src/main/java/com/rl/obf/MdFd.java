@@ -104,12 +104,12 @@ abstract public class MdFd extends TreeItem {
 	}
 
 	/**
-	 * Does this member match the wildcard pattern? (** and * supported)
+	 * Does this member match the compiled name and descriptor patterns?
 	 * 
-	 * @param namePattern
-	 * @param descPattern
+	 * @param nameMatcher
+	 * @param descMatcher
 	 */
-	public boolean isWildcardMatch(final String namePattern, final String descPattern) {
-		return this.isWildcardMatch(namePattern) && TreeItem.isMatch(descPattern, this.getDescriptor());
+	public boolean isMatch(final WildcardMatcher nameMatcher, final WildcardMatcher descMatcher) {
+		return this.isMatch(nameMatcher) && descMatcher.matches(this.getDescriptor());
 	}
 }
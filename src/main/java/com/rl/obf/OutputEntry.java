@@ -0,0 +1,188 @@
+/* ===========================================================================
+ * $RCSfile: OutputEntry.java,v $
+ * ===========================================================================
+ *
+ * RetroGuard -- an obfuscation package for Java classfiles.
+ *
+ * Copyright (c) 1998-2006 Mark Welsh (markw@retrologic.com)
+ *
+ * This program can be redistributed and/or modified under the terms of the
+ * Version 2 of the GNU General Public License as published by the Free
+ * Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+
+package com.rl.obf;
+
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.zip.ZipEntry;
+
+/**
+ * An entry of the output Jar, prepared off the writing thread -- the compressed
+ * (or stored) data to be written, its CRC, size and manifest digests, and the
+ * log output produced while preparing it. Entries too large to hold in memory
+ * are instead streamed from the input Jar entry by the writing thread.
+ *
+ * @author Mark Welsh
+ */
+class OutputEntry {
+	// Constants -------------------------------------------------------------
+
+	// Fields ----------------------------------------------------------------
+	private final String inName;
+	private final String outName;
+	private final byte[] data;
+	private final String logText;
+	private final int method;
+	private final long crc;
+	private final long size;
+	private final List<MessageDigest> digests;
+	private final ZipEntry source;
+
+	// Class Methods ---------------------------------------------------------
+
+	// Instance Methods ------------------------------------------------------
+	/**
+	 * Constructor for an input entry with nothing to be written.
+	 *
+	 * @param inName
+	 * @param logText
+	 */
+	public OutputEntry(final String inName, final String logText) {
+		this(inName, null, null, -1, -1, -1, null, logText);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param inName
+	 * @param outName
+	 * @param data
+	 *            the data, compressed by the method
+	 * @param method
+	 * @param crc
+	 *            CRC-32 of the uncompressed data
+	 * @param size
+	 *            size of the uncompressed data
+	 * @param digests
+	 * @param logText
+	 */
+	public OutputEntry(final String inName, final String outName, final byte[] data, final int method,
+			final long crc, final long size, final List<MessageDigest> digests, final String logText) {
+		this.inName = inName;
+		this.outName = outName;
+		this.data = data;
+		this.logText = logText;
+		this.method = method;
+		this.crc = crc;
+		this.size = size;
+		this.digests = digests;
+		this.source = null;
+	}
+
+	/**
+	 * Constructor for data to be streamed from the input Jar entry when written.
+	 *
+	 * @param inName
+	 * @param outName
+	 * @param source
+	 * @param method
+	 *            the method of the source to copy its compressed data as it is,
+	 *            {@code ZipEntry.STORED} to store its data, or -1 to compress its
+	 *            data when written
+	 * @param crc
+	 * @param size
+	 * @param digests
+	 *            manifest digests, unless the data is compressed when written
+	 */
+	public OutputEntry(final String inName, final String outName, final ZipEntry source, final int method,
+			final long crc, final long size, final List<MessageDigest> digests) {
+		this.inName = inName;
+		this.outName = outName;
+		this.data = null;
+		this.logText = null;
+		this.method = method;
+		this.crc = crc;
+		this.size = size;
+		this.digests = digests;
+		this.source = source;
+	}
+
+	/**
+	 * Return the name of the entry in the input Jar.
+	 */
+	public String getInName() {
+		return this.inName;
+	}
+
+	/**
+	 * Return the name of the entry in the output Jar, or null if nothing is to be
+	 * written.
+	 */
+	public String getOutName() {
+		return this.outName;
+	}
+
+	/**
+	 * Is the entry data to be streamed from the input Jar?
+	 */
+	public boolean isStreamed() {
+		return this.source != null;
+	}
+
+	/**
+	 * Return the entry data.
+	 */
+	public byte[] getData() {
+		return this.data;
+	}
+
+	/**
+	 * Return the log output produced while preparing the entry.
+	 */
+	public String getLogText() {
+		return this.logText;
+	}
+
+	/**
+	 * Return the compression method of the data, or -1 if it is compressed when
+	 * written.
+	 */
+	public int getMethod() {
+		return this.method;
+	}
+
+	/**
+	 * Return the CRC-32 of the uncompressed data.
+	 */
+	public long getCrc() {
+		return this.crc;
+	}
+
+	/**
+	 * Return the uncompressed size.
+	 */
+	public long getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Return the manifest digests of the uncompressed data.
+	 */
+	public List<MessageDigest> getDigests() {
+		return this.digests;
+	}
+
+	/**
+	 * Return the input Jar entry to stream the data from.
+	 */
+	public ZipEntry getSource() {
+		return this.source;
+	}
+}
@@ -144,7 +144,7 @@ public class Pk extends PkCl {
 	 * Construct and return the full obfuscated name of the entry.
 	 */
 	@Override
-	public String getFullOutName() {
+	protected String buildFullOutName() {
 		final String repackageName = this.getRepackageName();
 
 		if (repackageName != null) {
@@ -159,6 +159,6 @@ public class Pk extends PkCl {
 			}
 		}
 
-		return super.getFullOutName();
+		return super.buildFullOutName();
 	}
 }
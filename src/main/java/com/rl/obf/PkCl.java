@@ -171,6 +171,9 @@ abstract public class PkCl extends TreeItem {
 		} else {
 			this.repackageName = repackageName;
 		}
+		if (this.classTree != null) {
+			this.classTree.namesChanged();
+		}
 	}
 
 	/**
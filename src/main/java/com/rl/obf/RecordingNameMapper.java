@@ -0,0 +1,139 @@
+/* ===========================================================================
+ * $RCSfile: RecordingNameMapper.java,v $
+ * ===========================================================================
+ *
+ * RetroGuard -- an obfuscation package for Java classfiles.
+ *
+ * Copyright (c) 1998-2006 Mark Welsh (markw@retrologic.com)
+ *
+ * This program can be redistributed and/or modified under the terms of the
+ * Version 2 of the GNU General Public License as published by the Free
+ * Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+
+package com.rl.obf;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.rl.obf.classfile.ClassFileException;
+import com.rl.obf.classfile.NameMapper;
+
+/**
+ * A name mapping which records the queries made of it, and their results.
+ *
+ * @author Mark Welsh
+ */
+class RecordingNameMapper implements NameMapper {
+	// Fields ----------------------------------------------------------------
+	private final NameMapper nm;
+	private final Set<MapQuery> queries = new LinkedHashSet<>();
+
+	// Instance Methods ------------------------------------------------------
+	/**
+	 * Constructor
+	 *
+	 * @param nm
+	 *            the mapping to record
+	 */
+	public RecordingNameMapper(final NameMapper nm) {
+		this.nm = nm;
+	}
+
+	/**
+	 * Return the distinct queries made, in order.
+	 */
+	public Set<MapQuery> getQueries() {
+		return this.queries;
+	}
+
+	/**
+	 * Record a query and its result.
+	 *
+	 * @param kind
+	 * @param result
+	 * @param args
+	 */
+	private String record(final byte kind, final String result, final String... args) {
+		final MapQuery query = new MapQuery(kind, args);
+		query.result = result;
+		this.queries.add(query);
+		return result;
+	}
+
+	// Interface Methods -----------------------------------------------------
+	/**
+	 * @see NameMapper#getAttrsToKeep
+	 */
+	@Override
+	public List<String> getAttrsToKeep() {
+		final List<String> attrs = this.nm.getAttrsToKeep();
+		this.record(MapQuery.ATTRS, attrs.toString());
+		return attrs;
+	}
+
+	/**
+	 * @see NameMapper#mapClass
+	 */
+	@Override
+	public String mapClass(final String className) throws ClassFileException {
+		return this.record(MapQuery.CLASS, this.nm.mapClass(className), className);
+	}
+
+	/**
+	 * @see NameMapper#mapMethod
+	 */
+	@Override
+	public String mapMethod(final String className, final String methodName, final String descriptor)
+			throws ClassFileException {
+		return this.record(MapQuery.METHOD, this.nm.mapMethod(className, methodName, descriptor), className,
+				methodName, descriptor);
+	}
+
+	/**
+	 * @see NameMapper#mapField
+	 */
+	@Override
+	public String mapField(final String className, final String fieldName) throws ClassFileException {
+		return this.record(MapQuery.FIELD, this.nm.mapField(className, fieldName), className, fieldName);
+	}
+
+	/**
+	 * @see NameMapper#mapDescriptor
+	 */
+	@Override
+	public String mapDescriptor(final String descriptor) throws ClassFileException {
+		return this.record(MapQuery.DESCRIPTOR, this.nm.mapDescriptor(descriptor), descriptor);
+	}
+
+	/**
+	 * @see NameMapper#mapSignatureClass
+	 */
+	@Override
+	public String mapSignatureClass(final String signature) throws ClassFileException {
+		return this.record(MapQuery.SIGNATURE_CLASS, this.nm.mapSignatureClass(signature), signature);
+	}
+
+	/**
+	 * @see NameMapper#mapSignatureMethod
+	 */
+	@Override
+	public String mapSignatureMethod(final String signature) throws ClassFileException {
+		return this.record(MapQuery.SIGNATURE_METHOD, this.nm.mapSignatureMethod(signature), signature);
+	}
+
+	/**
+	 * @see NameMapper#mapSignatureField
+	 */
+	@Override
+	public String mapSignatureField(final String signature) throws ClassFileException {
+		return this.record(MapQuery.SIGNATURE_FIELD, this.nm.mapSignatureField(signature), signature);
+	}
+}
@@ -0,0 +1,313 @@
+/* ===========================================================================
+ * $RCSfile: RemapCache.java,v $
+ * ===========================================================================
+ *
+ * RetroGuard -- an obfuscation package for Java classfiles.
+ *
+ * Copyright (c) 1998-2006 Mark Welsh (markw@retrologic.com)
+ *
+ * This program can be redistributed and/or modified under the terms of the
+ * Version 2 of the GNU General Public License as published by the Free
+ * Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+
+package com.rl.obf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.rl.obf.classfile.ClassFileException;
+import com.rl.obf.classfile.NameMapper;
+
+/**
+ * On-disk cache of remapped class files, for incremental runs. An entry is
+ * found by a hash of the input class file, and holds the remapped class along
+ * with the queries made of the name mapping while remapping it. The entry is
+ * reused only while replaying those queries against the current class tree
+ * gives the same fingerprint -- that is, while the names of the class, of the
+ * classes it references and of their inherited members are unchanged.
+ *
+ * @author Mark Welsh
+ */
+class RemapCache {
+	// Constants -------------------------------------------------------------
+	private static final int FORMAT_VERSION = 1;
+	private static final String ENTRY_EXT = ".rgc";
+	private static final String TEMP_EXT = ".tmp";
+	private static final String DIGEST_ALGORITHM = "SHA-1";
+
+	// Fields ----------------------------------------------------------------
+	private final File dir;
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+
+	// Class Methods ---------------------------------------------------------
+	/**
+	 * Create a digest generator for keys and fingerprints.
+	 */
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance(RemapCache.DIGEST_ALGORITHM);
+		} catch (final NoSuchAlgorithmException e) {
+			// every Java platform provides SHA-1
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Add a string, or null, to a digest.
+	 *
+	 * @param digest
+	 * @param s
+	 */
+	private static void update(final MessageDigest digest, final String s) {
+		final int length = s != null ? s.length() : -1;
+		digest.update(new byte[] { (byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8),
+				(byte) length });
+		if (s != null) {
+			digest.update(s.getBytes(StandardCharsets.UTF_16BE));
+		}
+	}
+
+	/**
+	 * Fingerprint the mapping a class depends on, from the results of the queries
+	 * made of it.
+	 *
+	 * @param results
+	 */
+	private static byte[] fingerprint(final List<String> results) {
+		final MessageDigest digest = RemapCache.createDigest();
+		for (final String result : results) {
+			RemapCache.update(digest, result);
+		}
+		return digest.digest();
+	}
+
+	/**
+	 * Write a string, or null, to the cache entry.
+	 *
+	 * @param out
+	 * @param s
+	 * @throws IOException
+	 */
+	private static void writeString(final DataOutputStream out, final String s) throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(s.length());
+			out.writeChars(s);
+		}
+	}
+
+	/**
+	 * Read a string, or null, from the cache entry.
+	 *
+	 * @param in
+	 * @throws IOException
+	 */
+	private static String readString(final DataInputStream in) throws IOException {
+		final int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		final char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = in.readChar();
+		}
+		return new String(chars);
+	}
+
+	// Instance Methods ------------------------------------------------------
+	/**
+	 * Constructor
+	 *
+	 * @param dir
+	 *            directory for the cache entries, created if it does not exist
+	 * @throws IOException
+	 */
+	public RemapCache(final File dir) throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Remap cache directory cannot be created: " + dir);
+		}
+		this.dir = dir;
+	}
+
+	/**
+	 * Return the number of classes found in the cache.
+	 */
+	public int getHits() {
+		return this.hits.get();
+	}
+
+	/**
+	 * Return the number of classes not found in the cache, or whose mapping has
+	 * changed.
+	 */
+	public int getMisses() {
+		return this.misses.get();
+	}
+
+	/**
+	 * Return the key of an input class file, which also covers the settings that
+	 * change remapped classes other than through the name mapping.
+	 *
+	 * @param classBytes
+	 * @param enableMapClassString
+	 * @param compactConstantPool
+	 */
+	public String getKey(final byte[] classBytes, final boolean enableMapClassString,
+			final boolean compactConstantPool) {
+		final MessageDigest digest = RemapCache.createDigest();
+		RemapCache.update(digest, Integer.toString(RemapCache.FORMAT_VERSION));
+		RemapCache.update(digest, Version.getVersion());
+		RemapCache.update(digest, Version.isLite ? Version.getClassIdString() : null);
+		RemapCache.update(digest, Boolean.toString(enableMapClassString));
+		RemapCache.update(digest, Boolean.toString(compactConstantPool));
+		digest.update(classBytes);
+
+		final StringBuilder sb = new StringBuilder();
+		for (final byte b : digest.digest()) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+			sb.append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Return the cached remapped class for a key, or null if there is none or the
+	 * mapping it depends on has changed.
+	 *
+	 * @param key
+	 * @param tree
+	 */
+	public CachedClass get(final String key, final ClassTree tree) {
+		final File file = new File(this.dir, key + RemapCache.ENTRY_EXT);
+		if (file.isFile()) {
+			try {
+				final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+				try {
+					if (in.readInt() == RemapCache.FORMAT_VERSION) {
+						final String className = RemapCache.readString(in);
+						final CachedClass cached = new CachedClass();
+						cached.outName = RemapCache.readString(in);
+
+						// Replay the queries against the current mapping
+						final List<String> results = new ArrayList<>();
+						final int queryCount = in.readInt();
+						for (int i = 0; i < queryCount; i++) {
+							final MapQuery query = new MapQuery(in.readByte(), new String[in.readByte()]);
+							for (int j = 0; j < query.args.length; j++) {
+								query.args[j] = RemapCache.readString(in);
+							}
+							results.add(query.run(tree));
+						}
+						final byte[] fingerprint = new byte[in.readInt()];
+						in.readFully(fingerprint);
+
+						if (tree.getCl(className) != null
+								&& Arrays.equals(fingerprint, RemapCache.fingerprint(results))) {
+							cached.logText = RemapCache.readString(in);
+							cached.data = new byte[in.readInt()];
+							in.readFully(cached.data);
+							this.hits.incrementAndGet();
+							return cached;
+						}
+					}
+				} finally {
+					in.close();
+				}
+			} catch (final IOException e) {
+				// unreadable entries are remapped again, and replaced
+			} catch (final ClassFileException e) {
+				// the mapping has changed
+			}
+		}
+		this.misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Store a remapped class. Failures are ignored, leaving the class to be
+	 * remapped again next time.
+	 *
+	 * @param key
+	 * @param className
+	 *            name of the class before remapping
+	 * @param recorder
+	 *            the mapping the class was remapped through
+	 * @param outName
+	 * @param logText
+	 * @param data
+	 */
+	public void put(final String key, final String className, final RecordingNameMapper recorder,
+			final String outName, final String logText, final byte[] data) {
+		File temp = null;
+		try {
+			temp = File.createTempFile(key, RemapCache.TEMP_EXT, this.dir);
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			try {
+				out.writeInt(RemapCache.FORMAT_VERSION);
+				RemapCache.writeString(out, className);
+				RemapCache.writeString(out, outName);
+
+				final List<String> results = new ArrayList<>();
+				out.writeInt(recorder.getQueries().size());
+				for (final MapQuery query : recorder.getQueries()) {
+					out.writeByte(query.kind);
+					out.writeByte(query.args.length);
+					for (final String arg : query.args) {
+						RemapCache.writeString(out, arg);
+					}
+					results.add(query.result);
+				}
+				final byte[] fingerprint = RemapCache.fingerprint(results);
+				out.writeInt(fingerprint.length);
+				out.write(fingerprint);
+
+				RemapCache.writeString(out, logText);
+				out.writeInt(data.length);
+				out.write(data);
+			} finally {
+				out.close();
+			}
+
+			// Replace the entry in one step, as other threads or runs may be reading it
+			final File file = new File(this.dir, key + RemapCache.ENTRY_EXT);
+			try {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (final AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			temp = null;
+		} catch (final IOException e) {
+			// not cached
+		} finally {
+			if (temp != null) {
+				temp.delete();
+			}
+		}
+	}
+}
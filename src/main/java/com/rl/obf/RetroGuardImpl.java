@@ -50,8 +50,8 @@ public class RetroGuardImpl {
 	private static final String SEE_LOG_FILE = "Unrecoverable error during obfuscation, see log file for details.";
 
 	// Fields ----------------------------------------------------------------
-	private final File inFile;
-	private final File outFile;
+	private final File[] inFiles;
+	private final File[] outFiles;
 	private final File rgsFile;
 	private final File logFile;
 
@@ -60,9 +60,11 @@ public class RetroGuardImpl {
 	 * Main entry point for the obfuscator.
 	 * 
 	 * @param inFilename
-	 *            a readable input JAR file name
+	 *            a readable input JAR file, or directory, name, or several
+	 *            separated by the path separator to be obfuscated together
 	 * @param outFilename
-	 *            a writable JAR file name for obfuscated output
+	 *            a writable JAR file name for obfuscated output, or a directory
+	 *            name ending with a separator, for each input file
 	 * @param rgsFilename
 	 *            valid RetroGuard Script data file name, or null (which implies
 	 *            default settings)
@@ -72,22 +74,42 @@ public class RetroGuardImpl {
 	 */
 	public static void obfuscate(final String inFilename, final String outFilename, final String rgsFilename,
 			final String logFilename) throws Exception {
-		final File inFile = new File(inFilename == null ? RetroGuardImpl.DEFAULT_IN_FILE_NAME : inFilename);
-		final File outFile = new File(outFilename == null ? RetroGuardImpl.DEFAULT_OUT_FILE_NAME : outFilename);
+		final String[] inFilenames = (inFilename == null ? RetroGuardImpl.DEFAULT_IN_FILE_NAME : inFilename)
+				.split(File.pathSeparator);
+		final String[] outFilenames = (outFilename == null ? RetroGuardImpl.DEFAULT_OUT_FILE_NAME : outFilename)
+				.split(File.pathSeparator);
 		final File rgsFile = new File(rgsFilename == null ? RetroGuardImpl.DEFAULT_RGS_FILE_NAME : rgsFilename);
 		final File logFile = new File(logFilename == null ? RetroGuardImpl.DEFAULT_LOG_FILE_NAME : logFilename);
 
-		// Input JAR file must exist and be readable
-		if (!inFile.exists()) {
-			throw new IllegalArgumentException("JAR specified for obfuscation does not exist.");
-		}
-		if (!inFile.canRead()) {
-			throw new IllegalArgumentException("JAR specified for obfuscation exists but cannot be read.");
+		// Each input JAR file is obfuscated to its own output JAR file
+		if (inFilenames.length != outFilenames.length) {
+			throw new IllegalArgumentException("Number of output files does not match number of input files.");
 		}
+		final File[] inFiles = new File[inFilenames.length];
+		final File[] outFiles = new File[outFilenames.length];
+		for (int i = 0; i < inFiles.length; i++) {
+			inFiles[i] = new File(inFilenames[i]);
+			outFiles[i] = new File(outFilenames[i]);
+
+			// Output to a name ending in a separator is written as an exploded directory
+			if (outFilenames[i].endsWith("/") || outFilenames[i].endsWith(File.separator)) {
+				if (!outFiles[i].isDirectory() && !outFiles[i].mkdirs()) {
+					throw new IllegalArgumentException("Output directory cannot be created.");
+				}
+			}
+
+			// Input JAR file must exist and be readable
+			if (!inFiles[i].exists()) {
+				throw new IllegalArgumentException("JAR specified for obfuscation does not exist.");
+			}
+			if (!inFiles[i].canRead()) {
+				throw new IllegalArgumentException("JAR specified for obfuscation exists but cannot be read.");
+			}
 
-		// Output JAR file must be writable if it exists
-		if (outFile.exists() && !outFile.canWrite()) {
-			throw new IllegalArgumentException("Output JAR file cannot be written to.");
+			// Output JAR file must be writable if it exists
+			if (outFiles[i].exists() && !outFiles[i].canWrite()) {
+				throw new IllegalArgumentException("Output JAR file cannot be written to.");
+			}
 		}
 
 		// Script file must be readable if it exists, but need not exist
@@ -104,7 +126,7 @@ public class RetroGuardImpl {
 		}
 
 		// Call the main entry point on the obfuscator.
-		RetroGuardImpl.obfuscate(inFile, outFile, rgsFile, logFile);
+		RetroGuardImpl.obfuscate(inFiles, outFiles, rgsFile, logFile);
 	}
 
 	/**
@@ -123,26 +145,46 @@ public class RetroGuardImpl {
 	 */
 	public static void obfuscate(final File inFile, final File outFile, final File rgsFile, final File logFile)
 			throws Exception {
-		new RetroGuardImpl(inFile, outFile, rgsFile, logFile).run();
+		RetroGuardImpl.obfuscate(new File[] { inFile }, new File[] { outFile }, rgsFile, logFile);
+	}
+
+	/**
+	 * Main entry point for the obfuscator, for several JARs obfuscated together
+	 * against one class tree, so that inheritance between them is resolved.
+	 * 
+	 * @param inFiles
+	 *            Files pointing to readable JARs
+	 * @param outFiles
+	 *            a writable JAR for obfuscated output, for each input JAR
+	 * @param rgsFile
+	 *            valid RetroGuard Script data, or null (which implies default
+	 *            settings)
+	 * @param logFile
+	 *            file for the log data.
+	 * @throws Exception
+	 */
+	public static void obfuscate(final File[] inFiles, final File[] outFiles, final File rgsFile,
+			final File logFile) throws Exception {
+		new RetroGuardImpl(inFiles, outFiles, rgsFile, logFile).run();
 	}
 
 	// Instance Methods ------------------------------------------------------
 	/**
 	 * Private constructor takes in-jar, out-jar and script specifiers.
 	 * 
-	 * @param inFile
-	 *            a File pointing to a readable JAR
-	 * @param outFile
-	 *            a writable JAR for obfuscated output
+	 * @param inFiles
+	 *            Files pointing to readable JARs
+	 * @param outFiles
+	 *            a writable JAR for obfuscated output, for each input JAR
 	 * @param rgsFile
 	 *            valid RetroGuard Script data, or null (which implies default
 	 *            settings)
 	 * @param logFile
 	 *            file for the log data.
 	 */
-	private RetroGuardImpl(final File inFile, final File outFile, final File rgsFile, final File logFile) {
-		this.inFile = inFile;
-		this.outFile = outFile;
+	private RetroGuardImpl(final File[] inFiles, final File[] outFiles, final File rgsFile, final File logFile) {
+		this.inFiles = inFiles;
+		this.outFiles = outFiles;
 		this.rgsFile = rgsFile;
 		this.logFile = logFile;
 	}
@@ -160,9 +202,9 @@ public class RetroGuardImpl {
 			// Write out the log header
 			this.writeLogHeader(log);
 
-			// Create the name mapping database for the input JAR, constrained by the
+			// Create the name mapping database for the input JARs, constrained by the
 			// options in the rgs script
-			final GuardDB db = new GuardDB(this.inFile);
+			final GuardDB db = new GuardDB(this.inFiles);
 			try {
 				final InputStream rgsInputStream = this.rgsFile.exists() ? new FileInputStream(this.rgsFile) : null;
 				db.retain(new RgsEnum(rgsInputStream), log);
@@ -170,7 +212,7 @@ public class RetroGuardImpl {
 				if (rgsInputStream != null) {
 					rgsInputStream.close();
 				}
-				db.remapTo(this.outFile, log);
+				db.remapTo(this.outFiles, log);
 			} finally {
 				db.close();
 			}
@@ -216,8 +258,12 @@ public class RetroGuardImpl {
 		log.println("#");
 		log.println(RetroGuardImpl.LOG_CREATED + new Date().toString());
 		log.println("#");
-		log.println(RetroGuardImpl.LOG_INPUT_FILE + this.inFile.getName());
-		log.println(RetroGuardImpl.LOG_OUTPUT_FILE + this.outFile.getName());
+		for (final File inFile : this.inFiles) {
+			log.println(RetroGuardImpl.LOG_INPUT_FILE + inFile.getName());
+		}
+		for (final File outFile : this.outFiles) {
+			log.println(RetroGuardImpl.LOG_OUTPUT_FILE + outFile.getName());
+		}
 		log.println(RetroGuardImpl.LOG_SCRIPT_FILE
 				+ (this.rgsFile.exists() ? this.rgsFile.getName() : RetroGuardImpl.LOG_NO_SCRIPT));
 		log.println("#");
@@ -19,9 +19,6 @@
 
 package com.rl.obf;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import com.rl.obf.classfile.ClassFile;
 
 /**
@@ -89,114 +86,13 @@ public class TreeItem {
 	 */
 	protected boolean isOutput = false;
 
-	// Class Methods ---------------------------------------------------------
 	/**
-	 * Do a wildcard String match.
-	 * 
-	 * @param pattern
-	 * @param string
+	 * Full original and output names, as last constructed
 	 */
-	public static boolean isMatch(String pattern, String string) {
-		// Sanity check
-		if (pattern == null || string == null) {
-			return false;
-		}
-
-		// Not really a wildcard, then check for exact match
-		if (pattern.indexOf('*') == -1) {
-			return pattern.equals(string);
-		}
-
-		// Check for match of head
-		int pos = -1;
-		if (pattern.charAt(0) != '*') {
-			pos = pattern.indexOf('*');
-			final String head = pattern.substring(0, pos);
-			if ((string.length() < head.length()) || !string.substring(0, head.length()).equals(head)) {
-				return false;
-			}
-
-			pattern = pattern.substring(pos);
-			string = string.substring(pos);
-		}
-		// Check for match of tail
-		if (pattern.charAt(pattern.length() - 1) != '*') {
-			pos = pattern.lastIndexOf('*');
-			final String tail = pattern.substring(pos + 1);
-			if ((string.length() < tail.length()) || !string.substring(string.length() - tail.length()).equals(tail)) {
-				return false;
-			}
-
-			pattern = pattern.substring(0, pos + 1);
-			string = string.substring(0, string.length() - tail.length());
-		}
-		// Split the pattern at the wildcard positions
-		final List<String> section = new ArrayList<>();
-		pos = pattern.indexOf('*');
-		int rpos = -1;
-		while ((rpos = pattern.indexOf('*', pos + 1)) != -1) {
-			if (rpos != pos + 1) {
-				section.add(pattern.substring(pos + 1, rpos));
-			}
-			pos = rpos;
-		}
-		// Check each section for a non-overlapping match in the string
-		for (final String chunk : section) {
-			pos = string.indexOf(chunk);
-			if (pos == -1) {
-				return false;
-			}
-			string = string.substring(pos + chunk.length());
-		}
-		return true;
-	}
+	private CachedName fullInName = null;
+	private CachedName fullOutName = null;
 
-	/**
-	 * Do a generalized wildcard String match - handles '**' wildcard that matches
-	 * across package boundaries.
-	 * 
-	 * @param pattern
-	 * @param string
-	 */
-	public static boolean isGMatch(final String pattern, final String string) {
-		PatternList pl, sl;
-		pl = PatternList.create(pattern);
-		sl = PatternList.create(string);
-		if (!pl.scExists()) {
-			if (pl.length() != sl.length()) {
-				return false;
-			}
-			// check each string identifier against the non-** pattern
-			for (int i = 0; i < pl.length(); i++) {
-				if (!TreeItem.isMatch(pl.getSub(i), sl.getSub(i))) {
-					return false;
-				}
-			}
-		} else {
-			if (pl.length() > sl.length()) {
-				return false;
-			}
-			// check the head identifiers (pre-** segment)
-			for (int i = 0; i < pl.scIndex(); i++) {
-				if (!TreeItem.isMatch(pl.getSub(i), sl.getSub(i))) {
-					return false;
-				}
-			}
-			// check the tail identifiers (post-** segment)
-			for (int i = pl.scIndex() + 1; i < pl.length(); i++) {
-				final int j = i + sl.length() - pl.length();
-				if (!TreeItem.isMatch(pl.getSub(i), sl.getSub(j))) {
-					return false;
-				}
-			}
-			// check the merged central identifiers against the ** segment
-			final int j = pl.scIndex() + sl.length() - pl.length();
-			if (!TreeItem.isMatch(pl.getSub(pl.scIndex()), sl.getSub(pl.scIndex(), j))) {
-				return false;
-			}
-		}
-		return true;
-	}
+	// Class Methods ---------------------------------------------------------
 
 	// Instance Methods ------------------------------------------------------
 	/**
@@ -245,6 +141,9 @@ public class TreeItem {
 	public void setOutName(final String outName) {
 		this.outName = outName;
 		this.isFixed = true;
+		if (this.classTree != null) {
+			this.classTree.namesChanged();
+		}
 	}
 
 	/**
@@ -351,6 +250,9 @@ public class TreeItem {
 	 */
 	public void setParent(final TreeItem parent) {
 		this.parent = parent;
+		if (this.classTree != null) {
+			this.classTree.treeChanged();
+		}
 	}
 
 	/**
@@ -361,9 +263,26 @@ public class TreeItem {
 	}
 
 	/**
-	 * Construct and return the full original name of the entry.
+	 * Return the full original name of the entry, constructed again only if the
+	 * tree has changed since it was last asked for.
 	 */
 	public String getFullInName() {
+		if (this.classTree == null) {
+			return this.buildFullInName();
+		}
+		final int generation = this.classTree.getTreeGeneration();
+		CachedName cached = this.fullInName;
+		if (cached == null || cached.generation != generation) {
+			cached = new CachedName(this.buildFullInName(), generation);
+			this.fullInName = cached;
+		}
+		return cached.name;
+	}
+
+	/**
+	 * Construct and return the full original name of the entry.
+	 */
+	protected String buildFullInName() {
 		if (this.parent == null) {
 			return this.getInName();
 		}
@@ -388,9 +307,27 @@ public class TreeItem {
 	}
 
 	/**
-	 * Construct and return the full modified name of the entry.
+	 * Return the full modified name of the entry, constructed again only if a name
+	 * in the tree has changed since it was last asked for.
 	 */
 	public String getFullOutName() {
+		if (this.classTree == null) {
+			return this.buildFullOutName();
+		}
+		final int generation = this.classTree.getNameGeneration();
+		CachedName cached = this.fullOutName;
+		if (cached == null || cached.generation != generation) {
+			cached = new CachedName(this.buildFullOutName(), generation);
+			this.fullOutName = cached;
+		}
+		return cached.name;
+	}
+
+	/**
+	 * Construct and return the full modified name of the entry; over-ride this in
+	 * sub-classes.
+	 */
+	protected String buildFullOutName() {
 		if (this.parent == null) {
 			return this.getOutName();
 		}
@@ -427,20 +364,31 @@ public class TreeItem {
 	}
 
 	/**
-	 * Does this name match the wildcard pattern? (compatibility mode)
+	 * Does this name match the compiled wildcard pattern?
 	 * 
-	 * @param pattern
+	 * @param matcher
 	 */
-	public boolean isOldStyleMatch(final String pattern) {
-		return TreeItem.isMatch(pattern, this.getFullInName());
+	public boolean isMatch(final WildcardMatcher matcher) {
+		return matcher.matches(this.getFullInName());
 	}
+}
+
+/**
+ * Full name of a tree item, and the generation of the tree it was constructed
+ * in, held together so both are seen at once by every thread.
+ */
+class CachedName {
+	public final String name;
+	public final int generation;
 
 	/**
-	 * Does this name match the wildcard pattern? (** and * supported)
+	 * Constructor
 	 * 
-	 * @param pattern
+	 * @param name
+	 * @param generation
 	 */
-	public boolean isWildcardMatch(final String pattern) {
-		return TreeItem.isGMatch(pattern, this.getFullInName());
+	public CachedName(final String name, final int generation) {
+		this.name = name;
+		this.generation = generation;
 	}
 }
@@ -0,0 +1,232 @@
+/* ===========================================================================
+ * $RCSfile: WildcardMatcher.java,v $
+ * ===========================================================================
+ *
+ * RetroGuard -- an obfuscation package for Java classfiles.
+ *
+ * Copyright (c) 1998-2006 Mark Welsh (markw@retrologic.com)
+ *
+ * This program can be redistributed and/or modified under the terms of the
+ * Version 2 of the GNU General Public License as published by the Free
+ * Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+
+package com.rl.obf;
+
+/**
+ * Wildcard pattern compiled once into its literal parts, which can then be
+ * matched against any number of names without splitting or copying them.
+ *
+ * @author Mark Welsh
+ */
+public class WildcardMatcher {
+	// Constants -------------------------------------------------------------
+	/**
+	 * Matcher for a null pattern, which matches nothing
+	 */
+	private static final WildcardMatcher NONE = new WildcardMatcher(null, -1, false);
+
+	// Fields ----------------------------------------------------------------
+	/**
+	 * Package level segments of the pattern, or null if the pattern is null
+	 */
+	private final WildcardSegment[] segments;
+
+	/**
+	 * Index of the '**' segment, or -1 if there is none
+	 */
+	private final int sc;
+
+	/**
+	 * Do the segments each match one package level of the name?
+	 */
+	private final boolean general;
+
+	// Class Methods ---------------------------------------------------------
+	/**
+	 * Compile a pattern in which each '*' matches any characters, including package
+	 * separators.
+	 *
+	 * @param pattern
+	 */
+	public static WildcardMatcher compile(final String pattern) {
+		if (pattern == null) {
+			return WildcardMatcher.NONE;
+		}
+		return new WildcardMatcher(new WildcardSegment[] { new WildcardSegment(pattern) }, -1, false);
+	}
+
+	/**
+	 * Compile a pattern in which '**' matches across package boundaries and '*'
+	 * does not.
+	 *
+	 * @param pattern
+	 */
+	public static WildcardMatcher compileGeneral(final String pattern) {
+		if (pattern == null) {
+			return WildcardMatcher.NONE;
+		}
+		final PatternList pl = PatternList.create(pattern);
+		final WildcardSegment[] segments = new WildcardSegment[pl.length()];
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = new WildcardSegment(pl.getSub(i));
+		}
+		return new WildcardMatcher(segments, pl.scIndex(), true);
+	}
+
+	// Instance Methods ------------------------------------------------------
+	/**
+	 * Private constructor
+	 *
+	 * @param segments
+	 * @param sc
+	 * @param general
+	 */
+	private WildcardMatcher(final WildcardSegment[] segments, final int sc, final boolean general) {
+		this.segments = segments;
+		this.sc = sc;
+		this.general = general;
+	}
+
+	/**
+	 * Does the string match the pattern?
+	 *
+	 * @param string
+	 */
+	public boolean matches(final String string) {
+		if (this.segments == null || string == null) {
+			return false;
+		}
+		if (!this.general) {
+			return this.segments[0].matches(string, 0, string.length());
+		}
+
+		// Count the package level segments of the string
+		int length = 1;
+		for (int pos = string.indexOf(ClassTree.PACKAGE_LEVEL); pos != -1; pos = string
+				.indexOf(ClassTree.PACKAGE_LEVEL, pos + 1)) {
+			length++;
+		}
+		if (this.sc < 0 ? length != this.segments.length : length < this.segments.length) {
+			return false;
+		}
+
+		// Check the head segments (all of them without a '**' segment)
+		final int headLength = this.sc < 0 ? this.segments.length : this.sc;
+		int start = 0;
+		for (int i = 0; i < headLength; i++) {
+			int end = string.indexOf(ClassTree.PACKAGE_LEVEL, start);
+			if (end == -1) {
+				end = string.length();
+			}
+			if (!this.segments[i].matches(string, start, end)) {
+				return false;
+			}
+			start = end + 1;
+		}
+		if (this.sc < 0) {
+			return true;
+		}
+
+		// Check the tail segments, working back from the end of the string
+		int end = string.length();
+		for (int i = this.segments.length - 1; i > this.sc; i--) {
+			final int pos = string.lastIndexOf(ClassTree.PACKAGE_LEVEL, end - 1);
+			if (!this.segments[i].matches(string, pos + 1, end)) {
+				return false;
+			}
+			end = pos;
+		}
+
+		// Check the merged central segments against the '**' segment
+		return this.segments[this.sc].matches(string, start, end);
+	}
+}
+
+/**
+ * Single wildcard pattern, held as the literal text before the first '*', after
+ * the last '*', and between each pair of '*'s in turn.
+ */
+class WildcardSegment {
+	/**
+	 * Whole pattern if it has no '*', otherwise null
+	 */
+	private final String literal;
+	private final String head;
+	private final String tail;
+	private final String[] chunks;
+
+	/**
+	 * Constructor
+	 *
+	 * @param pattern
+	 */
+	public WildcardSegment(final String pattern) {
+		final int first = pattern.indexOf('*');
+		if (first == -1) {
+			this.literal = pattern;
+			this.head = null;
+			this.tail = null;
+			this.chunks = null;
+		} else {
+			final int last = pattern.lastIndexOf('*');
+			this.literal = null;
+			this.head = pattern.substring(0, first);
+			this.tail = pattern.substring(last + 1);
+
+			int count = 0;
+			for (int pos = first; pos < last; pos = pattern.indexOf('*', pos + 1)) {
+				if (pattern.charAt(pos + 1) != '*') {
+					count++;
+				}
+			}
+			this.chunks = new String[count];
+			count = 0;
+			for (int pos = first; pos < last;) {
+				final int next = pattern.indexOf('*', pos + 1);
+				if (next != pos + 1) {
+					this.chunks[count++] = pattern.substring(pos + 1, next);
+				}
+				pos = next;
+			}
+		}
+	}
+
+	/**
+	 * Does the part of the string from start to end match the pattern?
+	 *
+	 * @param string
+	 * @param start
+	 * @param end
+	 */
+	public boolean matches(final String string, final int start, final int end) {
+		// Not really a wildcard, then check for exact match
+		if (this.literal != null) {
+			return end - start == this.literal.length() && string.startsWith(this.literal, start);
+		}
+
+		// Check for match of head and tail
+		if (end - start < this.head.length() + this.tail.length() || !string.startsWith(this.head, start)
+				|| !string.startsWith(this.tail, end - this.tail.length())) {
+			return false;
+		}
+
+		// Check each chunk for a non-overlapping match between them
+		int pos = start + this.head.length();
+		final int limit = end - this.tail.length();
+		for (final String chunk : this.chunks) {
+			pos = string.indexOf(chunk, pos);
+			if (pos == -1 || pos + chunk.length() > limit) {
+				return false;
+			}
+			pos += chunk.length();
+		}
+		return true;
+	}
+}
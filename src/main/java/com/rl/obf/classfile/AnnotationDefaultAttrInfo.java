@@ -74,6 +74,16 @@ public class AnnotationDefaultAttrInfo extends AttrInfo {
 		this.defaultValue.markUtf8Refs(pool);
 	}
 
+	/**
+	 * Renumber the references in the 'info' data to Constant Pool entries.
+	 * 
+	 * @throws ClassFileException
+	 */
+	@Override
+	protected void renumberCpRefsInInfo(final CpIndexMapper mapper) throws ClassFileException {
+		this.defaultValue.renumberCpRefs(mapper);
+	}
+
 	/**
 	 * Read the data following the header.
 	 * 
@@ -76,6 +76,19 @@ public class AnnotationInfo {
 		}
 	}
 
+	/**
+	 * Renumber the references to Constant Pool entries.
+	 * 
+	 * @param mapper
+	 * @throws ClassFileException
+	 */
+	protected void renumberCpRefs(final CpIndexMapper mapper) throws ClassFileException {
+		this.u2typeIndex = mapper.mapIndex(this.u2typeIndex);
+		for (final MemberValuePairInfo mvp : this.memberValuePairTable) {
+			mvp.renumberCpRefs(mapper);
+		}
+	}
+
 	/**
 	 * @param din
 	 * @throws IOException
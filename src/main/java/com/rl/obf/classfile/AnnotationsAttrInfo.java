@@ -63,6 +63,18 @@ abstract public class AnnotationsAttrInfo extends AttrInfo {
 		}
 	}
 
+	/**
+	 * Renumber the references in the 'info' data to Constant Pool entries.
+	 * 
+	 * @throws ClassFileException
+	 */
+	@Override
+	protected void renumberCpRefsInInfo(final CpIndexMapper mapper) throws ClassFileException {
+		for (final AnnotationInfo a : this.annotationTable) {
+			a.renumberCpRefs(mapper);
+		}
+	}
+
 	/**
 	 * Read the data following the header.
 	 * 
@@ -22,6 +22,7 @@ package com.rl.obf.classfile;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 /**
@@ -35,9 +36,10 @@ public class AttrInfo implements ClassConstants {
 	public static final int CONSTANT_FIELD_SIZE = 6;
 
 	// Fields ----------------------------------------------------------------
-	private final int u2attrNameIndex;
+	private int u2attrNameIndex;
 	private final int u4attrLength;
-	private byte info[];
+	private ByteBuffer info;
+	private boolean infoCopied = false;
 	protected AttrSource source;
 
 	protected ClassFile cf;
@@ -133,6 +135,14 @@ public class AttrInfo implements ClassConstants {
 		return this.u4attrLength;
 	}
 
+	/**
+	 * Return the length in bytes of the attribute as written by {@link #write},
+	 * including its header.
+	 */
+	public int getLength() {
+		return AttrInfo.CONSTANT_FIELD_SIZE + this.getAttrInfoLength();
+	}
+
 	/**
 	 * Return the String name of the attribute; over-ride this in sub-classes.
 	 */
@@ -172,6 +182,58 @@ public class AttrInfo implements ClassConstants {
 		// do nothing
 	}
 
+	/**
+	 * Renumber the references to Constant Pool entries.
+	 * 
+	 * @param mapper
+	 * @throws ClassFileException
+	 */
+	protected void renumberCpRefs(final CpIndexMapper mapper) throws ClassFileException {
+		this.u2attrNameIndex = mapper.mapIndex(this.u2attrNameIndex);
+		this.renumberCpRefsInInfo(mapper);
+	}
+
+	/**
+	 * Renumber the references in the 'info' data to Constant Pool entries;
+	 * over-ride this in sub-classes. Those of an unknown attribute cannot be
+	 * found, so it fails here.
+	 * 
+	 * @param mapper
+	 * @throws ClassFileException
+	 */
+	protected void renumberCpRefsInInfo(final CpIndexMapper mapper) throws ClassFileException {
+		throw new ClassFileException("Constant Pool references of unknown attribute cannot be renumbered.");
+	}
+
+	/**
+	 * Renumber the Constant Pool index at an offset in the 'info' data, as it was
+	 * read, first copying the data if the index changes.
+	 * 
+	 * @param offset
+	 * @param mapper
+	 * @throws ClassFileException
+	 */
+	protected void renumberInfoIndex(final int offset, final CpIndexMapper mapper) throws ClassFileException {
+		final int index = this.info.getShort(offset) & 0xFFFF;
+		final int newIndex = mapper.mapIndex(index);
+		if (newIndex != index) {
+			if (!this.infoCopied) {
+				this.setInfo(ByteBufferInput.copy(this.info));
+			}
+			this.info.putShort(offset, (short) newIndex);
+		}
+	}
+
+	/**
+	 * Replace the 'info' data, with data of the same length.
+	 * 
+	 * @param info
+	 */
+	protected void setInfo(final ByteBuffer info) {
+		this.info = info;
+		this.infoCopied = true;
+	}
+
 	/**
 	 * Read the data following the header; over-ride this in sub-classes.
 	 * 
@@ -180,8 +242,15 @@ public class AttrInfo implements ClassConstants {
 	 * @throws ClassFileException
 	 */
 	protected void readInfo(final DataInput din) throws IOException, ClassFileException {
-		this.info = new byte[this.u4attrLength];
-		din.readFully(this.info);
+		this.info = ByteBufferInput.readSlice(din, this.u4attrLength);
+	}
+
+	/**
+	 * Return a stream over the 'info' data as it was read, for sub-classes which
+	 * keep it undecoded until their structure is needed.
+	 */
+	protected DataInput getInfoInput() {
+		return new ByteBufferInput(this.info);
 	}
 
 	/**
@@ -209,7 +278,7 @@ public class AttrInfo implements ClassConstants {
 	 * @throws ClassFileException
 	 */
 	public void writeInfo(final DataOutput dout) throws IOException, ClassFileException {
-		dout.write(this.info);
+		ByteBufferInput.writeSlice(dout, this.info);
 	}
 
 	/**
@@ -40,4 +40,11 @@ public class BootStrapMethod {
 		return this.factory;
 	}
 
+	protected void renumberCpRefs(final CpIndexMapper mapper) throws ClassFileException {
+		this.factory = mapper.mapIndex(this.factory);
+		for (int i = 0; i < this.bsmArgs.size(); i++) {
+			this.bsmArgs.set(i, mapper.mapIndex(this.bsmArgs.get(i)));
+		}
+	}
+
 }
@@ -42,6 +42,18 @@ public class BootstrapMethodsAttrInfo extends AttrInfo {
 		return ClassConstants.ATTR_BootstrapMethods;
 	}
 
+	/**
+	 * Renumber the references in the 'info' data to Constant Pool entries.
+	 * 
+	 * @throws ClassFileException
+	 */
+	@Override
+	protected void renumberCpRefsInInfo(final CpIndexMapper mapper) throws ClassFileException {
+		for (final BootStrapMethod bsm : this.bsmList) {
+			bsm.renumberCpRefs(mapper);
+		}
+	}
+
 	/**
 	 * Read the data following the header; over-ride this in sub-classes.
 	 * 
@@ -0,0 +1,285 @@
+/* ===========================================================================
+ * $RCSfile: ByteBufferInput.java,v $
+ * ===========================================================================
+ *
+ * RetroGuard -- an obfuscation package for Java classfiles.
+ *
+ * Copyright (c) 1998-2006 Mark Welsh (markw@retrologic.com)
+ *
+ * This program can be redistributed and/or modified under the terms of the
+ * Version 2 of the GNU General Public License as published by the Free
+ * Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+
+package com.rl.obf.classfile;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * DataInput reading class file data straight from a heap or direct ByteBuffer,
+ * which can also hand out parts of the data as slices sharing the buffer,
+ * rather than copies.
+ *
+ * @author Mark Welsh
+ */
+public class ByteBufferInput implements DataInput {
+	// Constants -------------------------------------------------------------
+
+	// Fields ----------------------------------------------------------------
+	private final ByteBuffer buffer;
+
+	// Class Methods ---------------------------------------------------------
+	/**
+	 * Read the next bytes of the input as a ByteBuffer, which is a slice sharing
+	 * the data if the input is a ByteBufferInput, and otherwise a copy.
+	 *
+	 * @param din
+	 * @param length
+	 * @throws IOException
+	 */
+	public static ByteBuffer readSlice(final DataInput din, final int length) throws IOException {
+		if (din instanceof ByteBufferInput) {
+			return ((ByteBufferInput) din).readSlice(length);
+		}
+		final byte[] bytes = new byte[length];
+		din.readFully(bytes);
+		return ByteBuffer.wrap(bytes);
+	}
+
+	/**
+	 * Write the remaining bytes of a ByteBuffer, leaving its position unchanged.
+	 *
+	 * @param dout
+	 * @param bytes
+	 * @throws IOException
+	 */
+	public static void writeSlice(final DataOutput dout, final ByteBuffer bytes) throws IOException {
+		if (bytes.hasArray()) {
+			dout.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+		} else {
+			final byte[] copy = new byte[bytes.remaining()];
+			bytes.duplicate().get(copy);
+			dout.write(copy);
+		}
+	}
+
+	/**
+	 * Return a writable copy of the remaining bytes of a ByteBuffer, leaving its
+	 * position unchanged.
+	 *
+	 * @param bytes
+	 */
+	public static ByteBuffer copy(final ByteBuffer bytes) {
+		final ByteBuffer copy = ByteBuffer.allocate(bytes.remaining());
+		copy.put(bytes.duplicate());
+		copy.clear();
+		return copy;
+	}
+
+	// Instance Methods ------------------------------------------------------
+	/**
+	 * Constructor for reading the remaining bytes of a ByteBuffer, without
+	 * changing its position.
+	 *
+	 * @param buffer
+	 */
+	public ByteBufferInput(final ByteBuffer buffer) {
+		this.buffer = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+	}
+
+	/**
+	 * Return the next bytes as a slice sharing the data of the buffer.
+	 *
+	 * @param length
+	 * @throws IOException
+	 */
+	public ByteBuffer readSlice(final int length) throws IOException {
+		this.require(length);
+		final ByteBuffer slice = this.buffer.slice();
+		slice.limit(length);
+		this.buffer.position(this.buffer.position() + length);
+		return slice;
+	}
+
+	/**
+	 * Move to the given position in the buffer, to read from there.
+	 * 
+	 * @param position
+	 */
+	public void seek(final int position) {
+		this.buffer.position(position);
+	}
+
+	/**
+	 * Check that the given number of bytes remain to be read.
+	 *
+	 * @param length
+	 * @throws EOFException
+	 */
+	private void require(final int length) throws EOFException {
+		if (length < 0 || this.buffer.remaining() < length) {
+			throw new EOFException();
+		}
+	}
+
+	/**
+	 * @see DataInput#readFully(byte[])
+	 */
+	@Override
+	public void readFully(final byte[] b) throws IOException {
+		this.readFully(b, 0, b.length);
+	}
+
+	/**
+	 * @see DataInput#readFully(byte[], int, int)
+	 */
+	@Override
+	public void readFully(final byte[] b, final int off, final int len) throws IOException {
+		this.require(len);
+		this.buffer.get(b, off, len);
+	}
+
+	/**
+	 * @see DataInput#skipBytes(int)
+	 */
+	@Override
+	public int skipBytes(final int n) {
+		final int skip = Math.max(0, Math.min(n, this.buffer.remaining()));
+		this.buffer.position(this.buffer.position() + skip);
+		return skip;
+	}
+
+	/**
+	 * @see DataInput#readBoolean()
+	 */
+	@Override
+	public boolean readBoolean() throws IOException {
+		return this.readByte() != 0;
+	}
+
+	/**
+	 * @see DataInput#readByte()
+	 */
+	@Override
+	public byte readByte() throws IOException {
+		this.require(1);
+		return this.buffer.get();
+	}
+
+	/**
+	 * @see DataInput#readUnsignedByte()
+	 */
+	@Override
+	public int readUnsignedByte() throws IOException {
+		return this.readByte() & 0xFF;
+	}
+
+	/**
+	 * @see DataInput#readShort()
+	 */
+	@Override
+	public short readShort() throws IOException {
+		this.require(2);
+		return this.buffer.getShort();
+	}
+
+	/**
+	 * @see DataInput#readUnsignedShort()
+	 */
+	@Override
+	public int readUnsignedShort() throws IOException {
+		return this.readShort() & 0xFFFF;
+	}
+
+	/**
+	 * @see DataInput#readChar()
+	 */
+	@Override
+	public char readChar() throws IOException {
+		this.require(2);
+		return this.buffer.getChar();
+	}
+
+	/**
+	 * @see DataInput#readInt()
+	 */
+	@Override
+	public int readInt() throws IOException {
+		this.require(4);
+		return this.buffer.getInt();
+	}
+
+	/**
+	 * @see DataInput#readLong()
+	 */
+	@Override
+	public long readLong() throws IOException {
+		this.require(8);
+		return this.buffer.getLong();
+	}
+
+	/**
+	 * @see DataInput#readFloat()
+	 */
+	@Override
+	public float readFloat() throws IOException {
+		this.require(4);
+		return this.buffer.getFloat();
+	}
+
+	/**
+	 * @see DataInput#readDouble()
+	 */
+	@Override
+	public double readDouble() throws IOException {
+		this.require(8);
+		return this.buffer.getDouble();
+	}
+
+	/**
+	 * Read a line of bytes, each taken as a character; class files have no lines,
+	 * so this is only for completeness.
+	 *
+	 * @see DataInput#readLine()
+	 */
+	@Override
+	public String readLine() {
+		if (!this.buffer.hasRemaining()) {
+			return null;
+		}
+		final StringBuilder sb = new StringBuilder();
+		while (this.buffer.hasRemaining()) {
+			final int c = this.buffer.get() & 0xFF;
+			if (c == '\n') {
+				break;
+			} else if (c == '\r') {
+				if (this.buffer.hasRemaining() && this.buffer.get(this.buffer.position()) == '\n') {
+					this.buffer.get();
+				}
+				break;
+			}
+			sb.append((char) c);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @see DataInput#readUTF()
+	 */
+	@Override
+	public String readUTF() throws IOException {
+		return DataInputStream.readUTF(this);
+	}
+}
@@ -0,0 +1,191 @@
+/* ===========================================================================
+ * $RCSfile: ByteBufferOutput.java,v $
+ * ===========================================================================
+ *
+ * RetroGuard -- an obfuscation package for Java classfiles.
+ *
+ * Copyright (c) 1998-2006 Mark Welsh (markw@retrologic.com)
+ *
+ * This program can be redistributed and/or modified under the terms of the
+ * Version 2 of the GNU General Public License as published by the Free
+ * Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+
+package com.rl.obf.classfile;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * DataOutput writing class file data straight into a ByteBuffer, sized in
+ * advance to hold all of it.
+ *
+ * @author Mark Welsh
+ */
+public class ByteBufferOutput implements DataOutput {
+	// Constants -------------------------------------------------------------
+
+	// Fields ----------------------------------------------------------------
+	private final ByteBuffer buffer;
+
+	// Class Methods ---------------------------------------------------------
+
+	// Instance Methods ------------------------------------------------------
+	/**
+	 * Constructor for writing from the position of a ByteBuffer, which is
+	 * advanced by the data written.
+	 *
+	 * @param buffer
+	 */
+	public ByteBufferOutput(final ByteBuffer buffer) {
+		this.buffer = buffer.order(ByteOrder.BIG_ENDIAN);
+	}
+
+	/**
+	 * @see DataOutput#write(int)
+	 */
+	@Override
+	public void write(final int b) {
+		this.buffer.put((byte) b);
+	}
+
+	/**
+	 * @see DataOutput#write(byte[])
+	 */
+	@Override
+	public void write(final byte[] b) {
+		this.buffer.put(b);
+	}
+
+	/**
+	 * @see DataOutput#write(byte[], int, int)
+	 */
+	@Override
+	public void write(final byte[] b, final int off, final int len) {
+		this.buffer.put(b, off, len);
+	}
+
+	/**
+	 * @see DataOutput#writeBoolean(boolean)
+	 */
+	@Override
+	public void writeBoolean(final boolean v) {
+		this.buffer.put((byte) (v ? 1 : 0));
+	}
+
+	/**
+	 * @see DataOutput#writeByte(int)
+	 */
+	@Override
+	public void writeByte(final int v) {
+		this.buffer.put((byte) v);
+	}
+
+	/**
+	 * @see DataOutput#writeShort(int)
+	 */
+	@Override
+	public void writeShort(final int v) {
+		this.buffer.putShort((short) v);
+	}
+
+	/**
+	 * @see DataOutput#writeChar(int)
+	 */
+	@Override
+	public void writeChar(final int v) {
+		this.buffer.putChar((char) v);
+	}
+
+	/**
+	 * @see DataOutput#writeInt(int)
+	 */
+	@Override
+	public void writeInt(final int v) {
+		this.buffer.putInt(v);
+	}
+
+	/**
+	 * @see DataOutput#writeLong(long)
+	 */
+	@Override
+	public void writeLong(final long v) {
+		this.buffer.putLong(v);
+	}
+
+	/**
+	 * @see DataOutput#writeFloat(float)
+	 */
+	@Override
+	public void writeFloat(final float v) {
+		this.buffer.putFloat(v);
+	}
+
+	/**
+	 * @see DataOutput#writeDouble(double)
+	 */
+	@Override
+	public void writeDouble(final double v) {
+		this.buffer.putDouble(v);
+	}
+
+	/**
+	 * @see DataOutput#writeBytes(String)
+	 */
+	@Override
+	public void writeBytes(final String s) {
+		for (int i = 0; i < s.length(); i++) {
+			this.buffer.put((byte) s.charAt(i));
+		}
+	}
+
+	/**
+	 * @see DataOutput#writeChars(String)
+	 */
+	@Override
+	public void writeChars(final String s) {
+		for (int i = 0; i < s.length(); i++) {
+			this.buffer.putChar(s.charAt(i));
+		}
+	}
+
+	/**
+	 * Write a string in modified UTF-8, as for a Utf8 Constant Pool entry.
+	 *
+	 * @see DataOutput#writeUTF(String)
+	 */
+	@Override
+	public void writeUTF(final String s) throws IOException {
+		int utfLength = 0;
+		for (int i = 0; i < s.length(); i++) {
+			final char c = s.charAt(i);
+			utfLength += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+		}
+		if (utfLength > 0xFFFF) {
+			throw new UTFDataFormatException("String too long to encode: " + utfLength + " bytes");
+		}
+		this.buffer.putShort((short) utfLength);
+		for (int i = 0; i < s.length(); i++) {
+			final char c = s.charAt(i);
+			if (c >= 0x0001 && c <= 0x007F) {
+				this.buffer.put((byte) c);
+			} else if (c <= 0x07FF) {
+				this.buffer.put((byte) (0xC0 | c >> 6));
+				this.buffer.put((byte) (0x80 | c & 0x3F));
+			} else {
+				this.buffer.put((byte) (0xE0 | c >> 12));
+				this.buffer.put((byte) (0x80 | c >> 6 & 0x3F));
+				this.buffer.put((byte) (0x80 | c & 0x3F));
+			}
+		}
+	}
+}
@@ -32,7 +32,6 @@ public class ClassCpInfo extends CpInfo {
 	// Constants -------------------------------------------------------------
 
 	// Fields ----------------------------------------------------------------
-	private int u2nameIndex;
 
 	// Class Methods ---------------------------------------------------------
 
@@ -48,7 +47,7 @@ public class ClassCpInfo extends CpInfo {
 	 * Return the name index.
 	 */
 	protected int getNameIndex() {
-		return this.u2nameIndex;
+		return this.getOperand1();
 	}
 
 	/**
@@ -57,7 +56,7 @@ public class ClassCpInfo extends CpInfo {
 	 * @param index
 	 */
 	protected void setNameIndex(final int index) {
-		this.u2nameIndex = index;
+		this.setOperand1(index);
 	}
 
 	/**
@@ -67,28 +66,28 @@ public class ClassCpInfo extends CpInfo {
 	 * @throws ClassFileException
 	 */
 	public String getName(final ClassFile cf) throws ClassFileException {
-		return cf.getUtf8(this.u2nameIndex);
+		return cf.getUtf8(this.getOperand1());
 	}
 
 	/**
-	 * Check for Utf8 references to constant pool and mark them.
+	 * Read the 'info' data following the u1tag byte.
 	 * 
+	 * @throws IOException
 	 * @throws ClassFileException
 	 */
 	@Override
-	protected void markUtf8Refs(final ConstantPool pool) throws ClassFileException {
-		pool.incRefCount(this.u2nameIndex);
+	protected void readInfo(final DataInput din) throws IOException, ClassFileException {
+		this.setOperand1(din.readUnsignedShort());
 	}
 
 	/**
-	 * Read the 'info' data following the u1tag byte.
+	 * Return the length in bytes of the 'info' data following the u1tag byte.
 	 * 
-	 * @throws IOException
-	 * @throws ClassFileException
+	 * @see CpInfo#getInfoLength()
 	 */
 	@Override
-	protected void readInfo(final DataInput din) throws IOException, ClassFileException {
-		this.u2nameIndex = din.readUnsignedShort();
+	protected int getInfoLength() {
+		return 2;
 	}
 
 	/**
@@ -99,6 +98,6 @@ public class ClassCpInfo extends CpInfo {
 	 */
 	@Override
 	protected void writeInfo(final DataOutput dout) throws IOException, ClassFileException {
-		dout.writeShort(this.u2nameIndex);
+		dout.writeShort(this.getOperand1());
 	}
 }
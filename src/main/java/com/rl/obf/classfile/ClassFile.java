@@ -19,12 +19,17 @@
 
 package com.rl.obf.classfile;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataInput;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -71,6 +76,7 @@ public class ClassFile implements ClassConstants {
 	private List<FieldInfo> fields;
 	private List<MethodInfo> methods;
 	private List<AttrInfo> attributes;
+	private boolean isSkeleton = false;
 
 	private CpInfo cpIdString = null;
 
@@ -88,10 +94,117 @@ public class ClassFile implements ClassConstants {
 			throw new IOException("No input stream was provided.");
 		}
 		final ClassFile cf = new ClassFile();
-		cf.read(din);
+		cf.read(din, false);
 		return cf;
 	}
 
+	/**
+	 * Create a skeleton ClassFile from the class file format data in the DataInput
+	 * stream, with only what is needed to build the class tree: the constant pool,
+	 * the class header and the field and method names, descriptors and flags. The
+	 * bodies of all attributes are skipped, so the skeleton cannot be remapped or
+	 * written.
+	 *
+	 * @param din
+	 * @throws IOException
+	 * @throws ClassFileException
+	 */
+	public static ClassFile createSkeleton(final DataInput din) throws IOException, ClassFileException {
+		if (din == null) {
+			throw new IOException("No input stream was provided.");
+		}
+		final ClassFile cf = new ClassFile();
+		cf.read(din, true);
+		return cf;
+	}
+
+	/**
+	 * Skip the given number of bytes of the DataInput stream.
+	 *
+	 * @param din
+	 * @param length
+	 * @throws IOException
+	 */
+	protected static void skipFully(final DataInput din, final int length) throws IOException {
+		int remaining = length;
+		while (remaining > 0) {
+			final int skipped = din.skipBytes(remaining);
+			if (skipped > 0) {
+				remaining -= skipped;
+			} else {
+				// Fails at the end of the stream
+				din.readByte();
+				remaining--;
+			}
+		}
+	}
+
+	/**
+	 * Create a new ClassFile from the class file format data remaining in the
+	 * ByteBuffer, which is parsed in place. The code and unknown attributes are
+	 * kept as slices of the buffer, so its contents must not be changed while the
+	 * ClassFile is in use; the position of the buffer is left unchanged.
+	 *
+	 * @param buffer
+	 * @throws IOException
+	 * @throws ClassFileException
+	 */
+	public static ClassFile create(final ByteBuffer buffer) throws IOException, ClassFileException {
+		if (buffer == null) {
+			throw new IOException("No input buffer was provided.");
+		}
+		return ClassFile.create(new ByteBufferInput(buffer));
+	}
+
+	/**
+	 * Create a new ClassFile from the class file format data in part of a byte
+	 * array, which is parsed in place as by {@link #create(ByteBuffer)}.
+	 *
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @throws IOException
+	 * @throws ClassFileException
+	 */
+	public static ClassFile create(final byte[] bytes, final int offset, final int length)
+			throws IOException, ClassFileException {
+		if (bytes == null) {
+			throw new IOException("No input buffer was provided.");
+		}
+		return ClassFile.create(ByteBuffer.wrap(bytes, offset, length));
+	}
+
+	/**
+	 * Return the name of the class in class file format data in part of a byte
+	 * array, reading only as far as the class header, without creating a
+	 * ClassFile or any of its Constant Pool entries.
+	 *
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @throws IOException
+	 * @throws ClassFileException
+	 */
+	public static String readName(final byte[] bytes, final int offset, final int length)
+			throws IOException, ClassFileException {
+		if (bytes == null) {
+			throw new IOException("No input buffer was provided.");
+		}
+		final DataInput din = new ByteBufferInput(ByteBuffer.wrap(bytes, offset, length));
+		if (din.readInt() != ClassConstants.MAGIC) {
+			throw new ClassFileException("Invalid magic number in class file.");
+		}
+		din.readUnsignedShort();
+		din.readUnsignedShort();
+		final ConstantPool pool = new ConstantPool(null, din);
+		din.readUnsignedShort();
+		final int u2thisClass = din.readUnsignedShort();
+		if (pool.getTag(u2thisClass) != ClassConstants.CONSTANT_Class) {
+			throw new ClassFileException("Inconsistent Constant Pool in class file.");
+		}
+		return pool.getUtf8(pool.getOperand1(u2thisClass));
+	}
+
 	/**
 	 * Parse a method descriptor into a list of parameter names and a return type,
 	 * in same format as the Class.forName() method returns.
@@ -271,10 +384,12 @@ public class ClassFile implements ClassConstants {
 	 * Import the class data to internal representation.
 	 *
 	 * @param din
+	 * @param skeleton
+	 *            skip the attributes, as for {@link #createSkeleton(DataInput)}
 	 * @throws IOException
 	 * @throws ClassFileException
 	 */
-	private void read(final DataInput din) throws IOException, ClassFileException {
+	private void read(final DataInput din, final boolean skeleton) throws IOException, ClassFileException {
 		// Read the class file
 		this.u4magic = din.readInt();
 		this.u2minorVersion = din.readUnsignedShort();
@@ -290,20 +405,8 @@ public class ClassFile implements ClassConstants {
 		// format.");
 		// }
 
-		final int u2constantPoolCount = din.readUnsignedShort();
-		final List<CpInfo> cpInfo = new ArrayList<>(u2constantPoolCount);
-		// Fill the constant pool, recalling the zero entry is not persisted, nor are
-		// the entries following a Long or Double
-		cpInfo.add(null);
-		for (int i = 1; i < u2constantPoolCount; i++) {
-			final CpInfo cp = CpInfo.create(din);
-			cpInfo.add(cp);
-			if (cp instanceof LongCpInfo || cp instanceof DoubleCpInfo) {
-				i++;
-				cpInfo.add(null);
-			}
-		}
-		this.constantPool = new ConstantPool(this, cpInfo);
+		// The constant pool entries are only created as they are used
+		this.constantPool = new ConstantPool(this, din);
 
 		this.u2accessFlags = din.readUnsignedShort();
 		this.u2thisClass = din.readUnsignedShort();
@@ -316,12 +419,18 @@ public class ClassFile implements ClassConstants {
 		final int u2fieldsCount = din.readUnsignedShort();
 		this.fields = new ArrayList<>(u2fieldsCount);
 		for (int i = 0; i < u2fieldsCount; i++) {
-			this.fields.add(FieldInfo.create(din, this));
+			this.fields.add(skeleton ? FieldInfo.createSkeleton(din, this) : FieldInfo.create(din, this));
 		}
 		final int u2methodsCount = din.readUnsignedShort();
 		this.methods = new ArrayList<>(u2methodsCount);
 		for (int i = 0; i < u2methodsCount; i++) {
-			this.methods.add(MethodInfo.create(din, this));
+			this.methods.add(skeleton ? MethodInfo.createSkeleton(din, this) : MethodInfo.create(din, this));
+		}
+		if (skeleton) {
+			// The class attributes are not needed for the class tree
+			this.attributes = new ArrayList<>(0);
+			this.isSkeleton = true;
+			return;
 		}
 		final int u2attributesCount = din.readUnsignedShort();
 		this.attributes = new ArrayList<>(u2attributesCount);
@@ -330,6 +439,13 @@ public class ClassFile implements ClassConstants {
 		}
 	}
 
+	/**
+	 * Is this a skeleton class file, without its attributes?
+	 */
+	public boolean isSkeleton() {
+		return this.isSkeleton;
+	}
+
 	/**
 	 * Define a constant String to include in this output class file.
 	 *
@@ -444,13 +560,7 @@ public class ClassFile implements ClassConstants {
 	 * @throws ClassFileException
 	 */
 	protected String getUtf8(final int cpIndex) throws ClassFileException {
-		final CpInfo utf8Entry = this.getCpEntry(cpIndex);
-		if (utf8Entry instanceof Utf8CpInfo) {
-			final Utf8CpInfo entry = (Utf8CpInfo) utf8Entry;
-			return entry.getString();
-		}
-
-		throw new ClassFileException("Not UTF8Info");
+		return this.constantPool.getUtf8(cpIndex);
 	}
 
 	/**
@@ -463,11 +573,11 @@ public class ClassFile implements ClassConstants {
 		// Need only check CONSTANT_Methodref entries of constant pool since dangerous
 		// methods belong to classes 'Class' and
 		// 'ClassLoader', not to interfaces.
-		for (final CpInfo cpInfo : this.constantPool) {
-			if (cpInfo instanceof MethodrefCpInfo) {
-				try {
+		for (int i = 0; i < this.constantPool.length(); i++) {
+			try {
+				if (this.constantPool.getTag(i) == ClassConstants.CONSTANT_Methodref) {
 					// Get the method class name, simple name and descriptor
-					final MethodrefCpInfo entry = (MethodrefCpInfo) cpInfo;
+					final MethodrefCpInfo entry = (MethodrefCpInfo) this.getCpEntry(i);
 					final ClassCpInfo classEntry = (ClassCpInfo) this.getCpEntry(entry.getClassIndex());
 					final String className = this.getUtf8(classEntry.getNameIndex());
 					final NameAndTypeCpInfo ntEntry = (NameAndTypeCpInfo) this.getCpEntry(entry.getNameAndTypeIndex());
@@ -489,9 +599,9 @@ public class ClassFile implements ClassConstants {
 						list.add(ClassFile.LOG_DANGER_CLASSLOADER_PRE + this.getName()
 								+ ClassFile.LOG_DANGER_CLASSLOADER_MID + name + descriptor);
 					}
-				} catch (final ClassFileException e) {
-					// ignore
 				}
+			} catch (final ClassFileException e) {
+				// ignore
 			}
 		}
 		return list;
@@ -515,11 +625,7 @@ public class ClassFile implements ClassConstants {
 		}
 
 		// Now check for references from other CP entries
-		for (final CpInfo cpInfo : this.constantPool) {
-			if (cpInfo != null) {
-				cpInfo.markUtf8Refs(this.constantPool);
-			}
-		}
+		this.constantPool.markUtf8Refs();
 	}
 
 	/**
@@ -529,10 +635,81 @@ public class ClassFile implements ClassConstants {
 	 */
 	public void markNTRefs() throws ClassFileException {
 		// Now check the method and field CP entries
-		for (final CpInfo cpInfo : this.constantPool) {
-			if (cpInfo != null) {
-				cpInfo.markNTRefs(this.constantPool);
+		this.constantPool.markNTRefs();
+	}
+
+	/**
+	 * Remove the Constant Pool entries no longer referenced, such as the Utf8
+	 * entries blanked and the NameAndType entries orphaned by remapping, and
+	 * renumber the references to the rest. The entries keep their order, so no
+	 * index grows. A class with an attribute whose references are unknown is left
+	 * unchanged. Return whether any entry was removed.
+	 *
+	 * @throws ClassFileException
+	 */
+	public boolean compactConstantPool() throws ClassFileException {
+		// Find the entries in use, directly or through other entries
+		final BitSet used = new BitSet(this.constantPool.length());
+		final CpIndexMapper marker = new CpIndexMapper() {
+			@Override
+			public int mapIndex(final int index) throws ClassFileException {
+				if (index != 0 && !used.get(index)) {
+					used.set(index);
+					if (ClassFile.this.constantPool.getTag(index) == 0) {
+						throw new ClassFileException("Reference to unusable Constant Pool entry.");
+					}
+					ClassFile.this.constantPool.renumberCpRefs(index, this);
+				}
+				return index;
+			}
+		};
+		try {
+			this.renumberCpRefs(marker);
+		} catch (final ClassFileException e) {
+			// Nothing has changed yet, so leave the class as it is
+			return false;
+		}
+
+		// Remove the entries not in use, and renumber the references to the rest
+		final int[] newIndices = this.constantPool.compact(used);
+		if (newIndices == null) {
+			return false;
+		}
+		final CpIndexMapper renumberer = new CpIndexMapper() {
+			@Override
+			public int mapIndex(final int index) throws ClassFileException {
+				if (index < 0 || index >= newIndices.length || index != 0 && newIndices[index] == 0) {
+					throw new ClassFileException("Reference to removed Constant Pool entry.");
+				}
+				return newIndices[index];
 			}
+		};
+		this.renumberCpRefs(renumberer);
+		this.constantPool.renumberCpRefs(renumberer);
+		return true;
+	}
+
+	/**
+	 * Renumber the references to Constant Pool entries from outside the Constant
+	 * Pool.
+	 *
+	 * @param mapper
+	 * @throws ClassFileException
+	 */
+	private void renumberCpRefs(final CpIndexMapper mapper) throws ClassFileException {
+		this.u2thisClass = mapper.mapIndex(this.u2thisClass);
+		this.u2superClass = mapper.mapIndex(this.u2superClass);
+		for (int i = 0; i < this.u2interfaces.size(); i++) {
+			this.u2interfaces.set(i, mapper.mapIndex(this.u2interfaces.get(i)));
+		}
+		for (final FieldInfo fd : this.fields) {
+			fd.renumberCpRefs(mapper);
+		}
+		for (final MethodInfo md : this.methods) {
+			md.renumberCpRefs(mapper);
+		}
+		for (final AttrInfo at : this.attributes) {
+			at.renumberCpRefs(mapper);
 		}
 	}
 
@@ -595,6 +772,10 @@ public class ClassFile implements ClassConstants {
 	 */
 	public void remap(final NameMapper nm, final PrintWriter log, final boolean enableMapClassString)
 			throws ClassFileException {
+		if (this.isSkeleton) {
+			throw new ClassFileException("Skeleton class file cannot be remapped.");
+		}
+
 		// Go through all of class's fields and methods mapping 'name' and 'descriptor'
 		// references
 		final ClassCpInfo cls = (ClassCpInfo) this.getCpEntry(this.u2thisClass);
@@ -639,26 +820,27 @@ public class ClassFile implements ClassConstants {
 		// class names)
 		final int currentCpLength = this.constantPool.length(); // constant pool can be extended (never contracted)
 																// during loop
+		// The entries are read from the pool arrays, and only those to be changed are
+		// created
+		final ConstantPool pool = this.constantPool;
 		for (int i = 0; i < currentCpLength; i++) {
-			final CpInfo cpInfo = this.getCpEntry(i);
+			final int tag = pool.getTag(i);
 			// If this is a CONSTANT_Fieldref, CONSTANT_Methodref or
 			// CONSTANT_InterfaceMethodref get the CONSTANT_NameAndType
 			// and remap the name and the components of the descriptor string.
-			if (cpInfo instanceof RefCpInfo) {
+			if (tag == ClassConstants.CONSTANT_Fieldref || tag == ClassConstants.CONSTANT_Methodref
+					|| tag == ClassConstants.CONSTANT_InterfaceMethodref) {
 				// Get the unmodified class name
-				final RefCpInfo refInfo = (RefCpInfo) cpInfo;
-				final ClassCpInfo classInfo = (ClassCpInfo) this.getCpEntry(refInfo.getClassIndex());
-				final String className = this.getUtf8(classInfo.getNameIndex());
+				final String className = this.getUtf8(pool.getOperand1(pool.getOperand1(i)));
 
 				// Get the current N&T reference and its 'name' and 'descriptor' utf's
-				final int ntIndex = refInfo.getNameAndTypeIndex();
-				final NameAndTypeCpInfo nameTypeInfo = (NameAndTypeCpInfo) this.getCpEntry(ntIndex);
-				final String ref = this.getUtf8(nameTypeInfo.getNameIndex());
-				final String desc = this.getUtf8(nameTypeInfo.getDescriptorIndex());
+				final int ntIndex = pool.getOperand2(i);
+				final String ref = this.getUtf8(pool.getOperand1(ntIndex));
+				final String desc = this.getUtf8(pool.getOperand2(ntIndex));
 
 				// Get the remapped versions of 'name' and 'descriptor'
 				String remapRef;
-				if (cpInfo instanceof FieldrefCpInfo) {
+				if (tag == ClassConstants.CONSTANT_Fieldref) {
 					remapRef = nm.mapField(className, ref);
 				} else {
 					remapRef = nm.mapMethod(className, ref, desc);
@@ -669,6 +851,9 @@ public class ClassFile implements ClassConstants {
 				// 'descriptor', decrement original
 				// N&T's ref count, set new N&T ref count to 1), remap new N&T's utf's
 				if (!remapRef.equals(ref) || !remapDesc.equals(desc)) {
+					final RefCpInfo refInfo = (RefCpInfo) this.getCpEntry(i);
+					final NameAndTypeCpInfo nameTypeInfo = (NameAndTypeCpInfo) this.getCpEntry(ntIndex);
+
 					// Get the new N&T guy
 					NameAndTypeCpInfo newNameTypeInfo;
 					if (nameTypeInfo.getRefCount() == 1) {
@@ -696,16 +881,15 @@ public class ClassFile implements ClassConstants {
 					newNameTypeInfo.setDescriptorIndex(
 							this.constantPool.remapUtf8To(remapDesc, newNameTypeInfo.getDescriptorIndex()));
 				}
-			} else if (cpInfo instanceof MethodTypeCpInfo) {
-				final MethodTypeCpInfo mtInfo = (MethodTypeCpInfo) cpInfo;
-				final String desc = this.getUtf8(mtInfo.getDescriptorIndex());
+			} else if (tag == ClassConstants.CONSTANT_MethodType) {
+				final String desc = this.getUtf8(pool.getOperand1(i));
 				final String remapDesc = nm.mapDescriptor(desc);
 
 				if (!remapDesc.equals(desc)) {
-					mtInfo.setDescriptorIndex(this.constantPool.remapUtf8To(remapDesc, mtInfo.getDescriptorIndex()));
+					pool.setOperand1(i, this.constantPool.remapUtf8To(remapDesc, pool.getOperand1(i)));
 				}
-			} else if (cpInfo instanceof InvokeDynamicCpInfo) {
-				final InvokeDynamicCpInfo idc = (InvokeDynamicCpInfo) cpInfo;
+			} else if (tag == ClassConstants.CONSTANT_InvokeDynamic) {
+				final InvokeDynamicCpInfo idc = (InvokeDynamicCpInfo) this.getCpEntry(i);
 				if (bsm != null) {
 					do {
 						final BootStrapMethod b = bsm.get(idc.getBootstrapMethodAttrIndex());
@@ -792,15 +976,13 @@ public class ClassFile implements ClassConstants {
 		}
 
 		// Remap all class references to Utf
-		for (int i = 0; i < this.constantPool.length(); i++) {
-			final CpInfo cpInfo = this.getCpEntry(i);
+		for (int i = 0; i < pool.length(); i++) {
 			// If this is CONSTANT_Class, remap the class-name Utf8 entry
-			if (cpInfo instanceof ClassCpInfo) {
-				final ClassCpInfo classInfo = (ClassCpInfo) cpInfo;
-				final String className = this.getUtf8(classInfo.getNameIndex());
+			if (pool.getTag(i) == ClassConstants.CONSTANT_Class) {
+				final String className = this.getUtf8(pool.getOperand1(i));
 				final String remapClass = nm.mapClass(className);
-				final int remapIndex = this.constantPool.remapUtf8To(remapClass, classInfo.getNameIndex());
-				classInfo.setNameIndex(remapIndex);
+				final int remapIndex = this.constantPool.remapUtf8To(remapClass, pool.getOperand1(i));
+				pool.setOperand1(i, remapIndex);
 			}
 		}
 
@@ -944,6 +1126,59 @@ public class ClassFile implements ClassConstants {
 		return true;
 	}
 
+	/**
+	 * Return the length in bytes of the class file as written by {@link #write}.
+	 */
+	public int getLength() {
+		int length = 10;
+		length += this.constantPool.getEntriesLength();
+		if (this.cpIdString != null) {
+			length += this.cpIdString.getLength();
+		}
+		length += 8 + 2 * this.u2interfaces.size();
+		length += 2;
+		for (final FieldInfo fd : this.fields) {
+			length += fd.getLength();
+		}
+		length += 2;
+		for (final MethodInfo md : this.methods) {
+			length += md.getLength();
+		}
+		length += 2;
+		for (final AttrInfo at : this.attributes) {
+			length += at.getLength();
+		}
+		return length;
+	}
+
+	/**
+	 * Export the representation to a byte array of exactly the class file size,
+	 * filled in a single pass without intermediate buffers.
+	 *
+	 * @throws IOException
+	 * @throws ClassFileException
+	 */
+	public byte[] toByteArray() throws IOException, ClassFileException {
+		final byte[] data = new byte[this.getLength()];
+		final ByteBuffer buffer = ByteBuffer.wrap(data);
+		try {
+			this.write(new ByteBufferOutput(buffer));
+		} catch (final BufferOverflowException e) {
+			// an attribute wrote more than its declared length; fall through
+		}
+		if (buffer.position() == data.length && !buffer.hasRemaining()) {
+			return data;
+		}
+
+		// Declared attribute lengths disagree with the data written, so write the
+		// class as it would be streamed
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length);
+		final DataOutputStream dout = new DataOutputStream(bytes);
+		this.write(dout);
+		dout.flush();
+		return bytes.toByteArray();
+	}
+
 	/**
 	 * Export the representation to a DataOutput stream.
 	 *
@@ -955,15 +1190,14 @@ public class ClassFile implements ClassConstants {
 		if (dout == null) {
 			throw new IOException("No output stream was provided.");
 		}
+		if (this.isSkeleton) {
+			throw new ClassFileException("Skeleton class file cannot be written.");
+		}
 		dout.writeInt(this.u4magic);
 		dout.writeShort(this.u2minorVersion);
 		dout.writeShort(this.u2majorVersion);
 		dout.writeShort(this.constantPool.length() + (this.cpIdString != null ? 1 : 0));
-		for (final CpInfo cpInfo : this.constantPool) {
-			if (cpInfo != null) {
-				cpInfo.write(dout);
-			}
-		}
+		this.constantPool.write(dout);
 		if (this.cpIdString != null) {
 			this.cpIdString.write(dout);
 		}
@@ -152,6 +152,20 @@ abstract public class ClassItemInfo implements ClassConstants {
 		}
 	}
 
+	/**
+	 * Renumber the references to Constant Pool entries.
+	 * 
+	 * @param mapper
+	 * @throws ClassFileException
+	 */
+	protected void renumberCpRefs(final CpIndexMapper mapper) throws ClassFileException {
+		this.u2nameIndex = mapper.mapIndex(this.u2nameIndex);
+		this.u2descriptorIndex = mapper.mapIndex(this.u2descriptorIndex);
+		for (final AttrInfo at : this.attributes) {
+			at.renumberCpRefs(mapper);
+		}
+	}
+
 	/**
 	 * Import the field or method data to internal representation.
 	 * 
@@ -175,6 +189,42 @@ abstract public class ClassItemInfo implements ClassConstants {
 		}
 	}
 
+	/**
+	 * Import only the access flags, name and descriptor, and whether the field or
+	 * method is 'Synthetic', skipping its attributes.
+	 * 
+	 * @param din
+	 * @throws IOException
+	 * @throws ClassFileException
+	 */
+	protected void readSkeleton(final DataInput din) throws IOException, ClassFileException {
+		this.u2accessFlags = din.readUnsignedShort();
+		this.u2nameIndex = din.readUnsignedShort();
+		this.u2descriptorIndex = din.readUnsignedShort();
+		final int u2attributesCount = din.readUnsignedShort();
+		this.attributes = new ArrayList<>(0);
+		for (int i = 0; i < u2attributesCount; i++) {
+			final int attrNameIndex = din.readUnsignedShort();
+			final int attrLength = din.readInt();
+			if (this.cf.getUtf8(attrNameIndex).equals(ClassConstants.ATTR_Synthetic)) {
+				this.isSynthetic = true;
+			}
+			ClassFile.skipFully(din, attrLength);
+		}
+	}
+
+	/**
+	 * Return the length in bytes of the field or method as written by
+	 * {@link #write}.
+	 */
+	public int getLength() {
+		int length = 8;
+		for (final AttrInfo at : this.attributes) {
+			length += at.getLength();
+		}
+		return length;
+	}
+
 	/**
 	 * Export the representation to a DataOutput stream.
 	 * 
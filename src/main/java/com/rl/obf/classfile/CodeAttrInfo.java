@@ -22,13 +22,16 @@ package com.rl.obf.classfile;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 /**
- * Representation of an attribute.
+ * Representation of an attribute. The exception table needs no remapping, so it
+ * is kept as read, written back unchanged, and only decoded if asked for.
  *
  * @author Mark Welsh
  */
@@ -41,81 +44,15 @@ public class CodeAttrInfo extends AttrInfo {
 	private int u2maxStack;
 	private int u2maxLocals;
 	private int u4codeLength;
-	private byte[] code;
-	private List<ExceptionInfo> exceptionTable;
+	private ByteBuffer code;
+	private boolean codeShared;
+	private ByteBuffer exceptionTableData;
+	private List<ExceptionInfo> exceptionTable = null;
 	protected List<AttrInfo> attributes;
+	private int[] forNameSites = null;
+	private int forNameSiteCount = 0;
 
 	// Class Methods ---------------------------------------------------------
-	/**
-	 * Number of bytes following an opcode
-	 * 
-	 * @param opcode
-	 */
-	private static int opcodeBytes(final int opcode) {
-		switch (opcode) {
-		case 0xAA:
-		case 0xAB:
-		case 0xC4:
-			return -1; // variable length opcode
-		case 0x10:
-		case 0x12:
-		case 0x15:
-		case 0x16:
-		case 0x17:
-		case 0x18:
-		case 0x19:
-		case 0x36:
-		case 0x37:
-		case 0x38:
-		case 0x39:
-		case 0x3A:
-		case 0xBC:
-			return 1;
-		case 0x11:
-		case 0x13:
-		case 0x14:
-		case 0x84:
-		case 0x99:
-		case 0x9A:
-		case 0x9B:
-		case 0x9C:
-		case 0x9D:
-		case 0x9E:
-		case 0x9F:
-		case 0xA0:
-		case 0xA1:
-		case 0xA2:
-		case 0xA3:
-		case 0xA4:
-		case 0xA5:
-		case 0xA6:
-		case 0xA7:
-		case 0xA8:
-		case 0xB2:
-		case 0xB3:
-		case 0xB4:
-		case 0xB5:
-		case 0xB6:
-		case 0xB7:
-		case 0xB8:
-		case 0xBB:
-		case 0xBD:
-		case 0xC0:
-		case 0xC1:
-		case 0xC6:
-		case 0xC7:
-			return 2;
-		case 0xC5:
-			return 3;
-		case 0xB9:
-		case 0xBA:
-		case 0xC8:
-		case 0xC9:
-			return 4;
-		default:
-			return 0;
-		}
-	}
 
 	// Instance Methods ------------------------------------------------------
 	/**
@@ -134,8 +71,7 @@ public class CodeAttrInfo extends AttrInfo {
 	 */
 	@Override
 	protected int getAttrInfoLength() {
-		int length = CodeAttrInfo.CONSTANT_FIELD_SIZE + this.u4codeLength
-				+ this.exceptionTable.size() * ExceptionInfo.CONSTANT_FIELD_SIZE;
+		int length = CodeAttrInfo.CONSTANT_FIELD_SIZE + this.u4codeLength + this.exceptionTableData.remaining();
 		for (final AttrInfo at : this.attributes) {
 			length += AttrInfo.CONSTANT_FIELD_SIZE + at.getAttrInfoLength();
 		}
@@ -150,6 +86,28 @@ public class CodeAttrInfo extends AttrInfo {
 		return ClassConstants.ATTR_Code;
 	}
 
+	/**
+	 * Return the exception table, decoding it on first use.
+	 * 
+	 * @throws ClassFileException
+	 */
+	public List<ExceptionInfo> getExceptionTable() throws ClassFileException {
+		if (this.exceptionTable == null) {
+			try {
+				final DataInput din = new ByteBufferInput(this.exceptionTableData);
+				final int u2exceptionTableLength = this.exceptionTableData.remaining() / ExceptionInfo.CONSTANT_FIELD_SIZE;
+				final List<ExceptionInfo> table = new ArrayList<>(u2exceptionTableLength);
+				for (int i = 0; i < u2exceptionTableLength; i++) {
+					table.add(ExceptionInfo.create(din));
+				}
+				this.exceptionTable = Collections.unmodifiableList(table);
+			} catch (final IOException e) {
+				throw new ClassFileException("Truncated Code attribute");
+			}
+		}
+		return this.exceptionTable;
+	}
+
 	/**
 	 * Trim attributes from the classfile ('Code', 'Exceptions', 'ConstantValue' are
 	 * preserved, all others except those in the {@code List<String>} are killed).
@@ -181,6 +139,74 @@ public class CodeAttrInfo extends AttrInfo {
 		}
 	}
 
+	/**
+	 * Renumber the references in the code, exception table and attributes to
+	 * Constant Pool entries.
+	 * 
+	 * @throws ClassFileException
+	 */
+	@Override
+	protected void renumberCpRefsInInfo(final CpIndexMapper mapper) throws ClassFileException {
+		final InstructionCursor cursor = new InstructionCursor(this.code, this.u4codeLength);
+		while (cursor.next()) {
+			switch (cursor.getOpcode()) {
+			case 0x12: // ldc
+				final int index = cursor.getU1Operand();
+				final int newIndex = mapper.mapIndex(index);
+				if (newIndex > 0xFF) {
+					throw new ClassFileException("Constant Pool index out of range for ldc.");
+				} else if (newIndex != index) {
+					this.getWritableCode().put(cursor.getOperandOffset(), (byte) newIndex);
+				}
+				break;
+			case 0x13: // ldc_w
+			case 0x14: // ldc2_w
+			case 0xB2: // getstatic
+			case 0xB3: // putstatic
+			case 0xB4: // getfield
+			case 0xB5: // putfield
+			case 0xB6: // invokevirtual
+			case 0xB7: // invokespecial
+			case 0xB8: // invokestatic
+			case 0xB9: // invokeinterface
+			case 0xBA: // invokedynamic
+			case 0xBB: // new
+			case 0xBD: // anewarray
+			case 0xC0: // checkcast
+			case 0xC1: // instanceof
+			case 0xC5: // multianewarray
+				final int wideIndex = cursor.getU2Operand();
+				final int newWideIndex = mapper.mapIndex(wideIndex);
+				if (newWideIndex != wideIndex) {
+					this.getWritableCode().putShort(cursor.getOperandOffset(), (short) newWideIndex);
+				}
+				break;
+			default:
+				break;
+			}
+		}
+
+		// The catch types of the exception table, copied before the first change
+		boolean copied = false;
+		for (int offset = ExceptionInfo.CONSTANT_FIELD_SIZE - 2; offset < this.exceptionTableData
+				.remaining(); offset += ExceptionInfo.CONSTANT_FIELD_SIZE) {
+			final int catchType = this.exceptionTableData.getShort(offset) & 0xFFFF;
+			final int newCatchType = mapper.mapIndex(catchType);
+			if (newCatchType != catchType) {
+				if (!copied) {
+					this.exceptionTableData = ByteBufferInput.copy(this.exceptionTableData);
+					this.exceptionTable = null;
+					copied = true;
+				}
+				this.exceptionTableData.putShort(offset, (short) newCatchType);
+			}
+		}
+
+		for (final AttrInfo at : this.attributes) {
+			at.renumberCpRefs(mapper);
+		}
+	}
+
 	/**
 	 * Read the data following the header.
 	 * 
@@ -192,13 +218,12 @@ public class CodeAttrInfo extends AttrInfo {
 		this.u2maxStack = din.readUnsignedShort();
 		this.u2maxLocals = din.readUnsignedShort();
 		this.u4codeLength = din.readInt();
-		this.code = new byte[this.u4codeLength];
-		din.readFully(this.code);
+		// Kept as slices of the class data when read from a buffer
+		this.code = ByteBufferInput.readSlice(din, this.u4codeLength);
+		this.codeShared = din instanceof ByteBufferInput;
 		final int u2exceptionTableLength = din.readUnsignedShort();
-		this.exceptionTable = new ArrayList<>(u2exceptionTableLength);
-		for (int i = 0; i < u2exceptionTableLength; i++) {
-			this.exceptionTable.add(ExceptionInfo.create(din));
-		}
+		this.exceptionTableData = ByteBufferInput.readSlice(din,
+				u2exceptionTableLength * ExceptionInfo.CONSTANT_FIELD_SIZE);
 		final int u2attributesCount = din.readUnsignedShort();
 		this.attributes = new ArrayList<>(u2attributesCount);
 		for (int i = 0; i < u2attributesCount; i++) {
@@ -217,11 +242,9 @@ public class CodeAttrInfo extends AttrInfo {
 		dout.writeShort(this.u2maxStack);
 		dout.writeShort(this.u2maxLocals);
 		dout.writeInt(this.u4codeLength);
-		dout.write(this.code);
-		dout.writeShort(this.exceptionTable.size());
-		for (final ExceptionInfo ex : this.exceptionTable) {
-			ex.write(dout);
-		}
+		ByteBufferInput.writeSlice(dout, this.code);
+		dout.writeShort(this.exceptionTableData.remaining() / ExceptionInfo.CONSTANT_FIELD_SIZE);
+		ByteBufferInput.writeSlice(dout, this.exceptionTableData);
 		dout.writeShort(this.attributes.size());
 		for (final AttrInfo at : this.attributes) {
 			at.write(dout);
@@ -241,173 +264,124 @@ public class CodeAttrInfo extends AttrInfo {
 	}
 
 	/**
-	 * Walk the code, finding .class and Class.forName to update.
+	 * Walk the code, flagging how each String loaded by ldc or ldc_w is used, and
+	 * noting the loads passed straight to Class.forName or a .class lookup. Note
+	 * that class literals MyClass.class are stored directly in the constant pool
+	 * in 1.5 (change from 1.4), not referenced by Utf8 name, so .option
+	 * MapClassString is not necessary for them. Still needed for
+	 * Class.forName("MyClass") though.
 	 * 
 	 * @param cpToFlag
 	 * @throws ClassFileException
 	 */
 	protected FlagHashtable walkFindClassStrings(final FlagHashtable cpToFlag) throws ClassFileException {
-		return this.walkClassStrings(cpToFlag, Collections.<Integer, Integer>emptyMap());
+		this.forNameSiteCount = 0;
+		final InstructionCursor cursor = new InstructionCursor(this.code, this.u4codeLength);
+		int ldcOffset = -1;
+		int ldcIndex = -1;
+		while (cursor.next()) {
+			final int opcode = cursor.getOpcode();
+			// Previous instruction was ldc or ldc_w of a StringCpInfo
+			if (ldcIndex != -1) {
+				final boolean isClassForName = opcode == 0xB8 && this.isClassForName(cursor.getU2Operand()); // invokestatic
+				if (isClassForName) {
+					this.addForNameSite(ldcOffset);
+				}
+				cpToFlag.updateFlag(this.cf.getCpEntry(ldcIndex), ldcIndex, isClassForName);
+			}
+			ldcIndex = -1;
+			if (opcode == 0x12 || opcode == 0x13) // ldc or ldc_w
+			{
+				final int index = opcode == 0x12 ? cursor.getU1Operand() : cursor.getU2Operand();
+				if (this.cf.getCpEntry(index) instanceof StringCpInfo) {
+					ldcOffset = cursor.getOffset();
+					ldcIndex = index;
+				}
+			}
+		}
+		return cpToFlag;
 	}
 
 	/**
-	 * Walk the code, updating .class and Class.forName strings.
+	 * Update the .class and Class.forName strings noted by the last
+	 * {@link #walkFindClassStrings}, without walking the code again.
 	 * 
 	 * @param cpUpdate
 	 * @throws ClassFileException
 	 */
 	protected void walkUpdateClassStrings(final Map<Integer, ?> cpUpdate) throws ClassFileException {
-		this.walkClassStrings(null, cpUpdate);
+		for (int i = 0; i < this.forNameSiteCount; i++) {
+			final int offset = this.forNameSites[i];
+			final int opcode = this.code.get(offset) & 0xFF;
+			final int ldcIndex = opcode == 0x12 ? this.code.get(offset + 1) & 0xFF
+					: this.code.getShort(offset + 1) & 0xFFFF;
+			// Update StringCpInfo index in ldc to new one
+			final Object o = cpUpdate.get(Integer.valueOf(ldcIndex));
+			if (o instanceof Integer) {
+				final int remapStringIndex = ((Integer) o).intValue();
+				switch (opcode) {
+				case 0x13: // ldc_w
+					this.getWritableCode().put(offset + 1, (byte) 0);
+					this.getWritableCode().put(offset + 2, (byte) remapStringIndex);
+					break;
+				case 0x12: // ldc
+					this.getWritableCode().put(offset + 1, (byte) remapStringIndex);
+					break;
+				default: // error
+					throw new RuntimeException("Internal error: " + ".class or Class.forName remap of non-ldc/ldc_w");
+				}
+			}
+		}
 	}
 
 	/**
-	 * Walk the code, updating .class and Class.forName strings. Note that class
-	 * literals MyClass.class are stored directly in the constant pool in 1.5
-	 * (change from 1.4), not referenced by Utf8 name, so .option MapClassString is
-	 * not necessary for them. Still needed for Class.forName("MyClass") though.
+	 * Is the Methodref entry a call of Class.forName, or of the class$ method
+	 * generated for .class before 1.5?
 	 * 
-	 * @param cpToFlag
-	 * @param cpUpdate
+	 * @param invokeIndex
 	 * @throws ClassFileException
 	 */
-	private FlagHashtable walkClassStrings(final FlagHashtable cpToFlag, final Map<Integer, ?> cpUpdate)
-			throws ClassFileException {
-		int opcodePrev = -1;
-		int ldcIndex = -1;
-		for (int i = 0; i < this.code.length; i++) {
-			final int opcode = this.code[i] & 0xFF;
-			if (opcode == 0x12 && i + 1 < this.code.length) // ldc
-			{
-				ldcIndex = this.code[i + 1] & 0xFF;
-				final CpInfo ldcCpInfo = this.cf.getCpEntry(ldcIndex);
-				if (!(ldcCpInfo instanceof StringCpInfo)) {
-					ldcIndex = -1;
-				}
-			} else if (opcode == 0x13 && i + 2 < this.code.length) // ldc_w
-			{
-				ldcIndex = ((this.code[i + 1] & 0xFF) << 8) + (this.code[i + 2] & 0xFF);
-				final CpInfo ldcCpInfo = this.cf.getCpEntry(ldcIndex);
-				if (!(ldcCpInfo instanceof StringCpInfo)) {
-					ldcIndex = -1;
-				}
-			}
-			if ((opcodePrev == 0x12 || opcodePrev == 0x13) && ldcIndex != -1) // ldc or ldc_w and is a StringCpInfo
-			{
-				boolean isClassForName = false;
-				if (opcode == 0xB8 && i + 2 < this.code.length) // invokestatic
-				{
-					final int invokeIndex = ((this.code[i + 1] & 0xFF) << 8) + (this.code[i + 2] & 0xFF);
-					final CpInfo cpInfo = this.cf.getCpEntry(invokeIndex);
-					if (cpInfo instanceof MethodrefCpInfo) {
-						final MethodrefCpInfo entry = (MethodrefCpInfo) cpInfo;
-						final ClassCpInfo classEntry = (ClassCpInfo) this.cf.getCpEntry(entry.getClassIndex());
-						final String className = this.cf.getUtf8(classEntry.getNameIndex());
-						final NameAndTypeCpInfo ntEntry = (NameAndTypeCpInfo) this.cf
-								.getCpEntry(entry.getNameAndTypeIndex());
-						final String name = this.cf.getUtf8(ntEntry.getNameIndex());
-						final String descriptor = this.cf.getUtf8(ntEntry.getDescriptorIndex());
-						if ("class$".equals(name)
-								&& ("(Ljava/lang/String;)Ljava/lang/Class;".equals(descriptor)
-										|| "(Ljava/lang/String;Z)Ljava/lang/Class;".equals(descriptor))
-								|| "java/lang/Class".equals(className) && "forName".equals(name)
-										&& "(Ljava/lang/String;)Ljava/lang/Class;".equals(descriptor)) {
-							isClassForName = true;
-							// Update StringCpInfo index in ldc to new one
-							final Object o = cpUpdate.get(new Integer(ldcIndex));
-							if (o instanceof Integer) {
-								final Integer oi = (Integer) o;
-								final int remapStringIndex = oi.intValue();
-								switch (opcodePrev) {
-								case 0x13: // ldc_w
-									this.code[i - 2] = 0;
-									//$FALL-THROUGH$
-								case 0x12: // ldc
-									this.code[i - 1] = (byte) remapStringIndex;
-									break;
-								default: // error
-									throw new RuntimeException(
-											"Internal error: " + ".class or Class.forName remap of non-ldc/ldc_w");
-								}
-							}
-						}
-					}
-				}
-				if (cpToFlag != null) {
-					cpToFlag.updateFlag(this.cf.getCpEntry(ldcIndex), ldcIndex, isClassForName);
-				}
-			}
-			final int bytes = this.getOpcodeBytes(opcode, i);
-			i += bytes;
-			opcodePrev = opcode;
+	private boolean isClassForName(final int invokeIndex) throws ClassFileException {
+		final CpInfo cpInfo = this.cf.getCpEntry(invokeIndex);
+		if (!(cpInfo instanceof MethodrefCpInfo)) {
+			return false;
 		}
-		return cpToFlag;
+		final MethodrefCpInfo entry = (MethodrefCpInfo) cpInfo;
+		final ClassCpInfo classEntry = (ClassCpInfo) this.cf.getCpEntry(entry.getClassIndex());
+		final String className = this.cf.getUtf8(classEntry.getNameIndex());
+		final NameAndTypeCpInfo ntEntry = (NameAndTypeCpInfo) this.cf.getCpEntry(entry.getNameAndTypeIndex());
+		final String name = this.cf.getUtf8(ntEntry.getNameIndex());
+		final String descriptor = this.cf.getUtf8(ntEntry.getDescriptorIndex());
+		return "class$".equals(name)
+				&& ("(Ljava/lang/String;)Ljava/lang/Class;".equals(descriptor)
+						|| "(Ljava/lang/String;Z)Ljava/lang/Class;".equals(descriptor))
+				|| "java/lang/Class".equals(className) && "forName".equals(name)
+						&& "(Ljava/lang/String;)Ljava/lang/Class;".equals(descriptor);
 	}
 
 	/**
-	 * Compute length of opcode arguments at offset
+	 * Note the code offset of an ldc or ldc_w passed to Class.forName.
 	 * 
-	 * @param opcode
-	 * @param i
-	 * @throws ClassFileException
+	 * @param offset
 	 */
-	private int getOpcodeBytes(final int opcode, final int i) throws ClassFileException {
-		int bytes = CodeAttrInfo.opcodeBytes(opcode);
-		if (bytes < 0) // variable length instructions
-		{
-			switch (opcode) {
-			case 0xAA: // tableswitch
-				bytes = 3 - i % 4; // 0-3 byte pad
-				bytes += 4; // default value
-				final int low = ((this.code[i + 1 + bytes] & 0xFF) << 24)
-						+ ((this.code[i + 1 + bytes + 1] & 0xFF) << 16) + ((this.code[i + 1 + bytes + 2] & 0xFF) << 8)
-						+ (this.code[i + 1 + bytes + 3] & 0xFF);
-				bytes += 4; // low value
-				final int high = ((this.code[i + 1 + bytes] & 0xFF) << 24)
-						+ ((this.code[i + 1 + bytes + 1] & 0xFF) << 16) + ((this.code[i + 1 + bytes + 2] & 0xFF) << 8)
-						+ (this.code[i + 1 + bytes + 3] & 0xFF);
-				bytes += 4; // high value
-				if (high >= low) {
-					bytes += (high - low + 1) * 4; // jump offsets
-				}
-				break;
-			case 0xAB: // lookupswitch
-				bytes = 3 - i % 4; // 0-3 byte pad
-				bytes += 4; // default value
-				final int npairs = ((this.code[i + 1 + bytes] & 0xFF) << 24)
-						+ ((this.code[i + 1 + bytes + 1] & 0xFF) << 16) + ((this.code[i + 1 + bytes + 2] & 0xFF) << 8)
-						+ (this.code[i + 1 + bytes + 3] & 0xFF);
-				bytes += 4; // npairs value
-				if (npairs >= 0) {
-					bytes += npairs * 8; // match / offset pairs
-				}
-				break;
-			case 0xC4: // wide
-				final int wideOpcode = this.code[i + 1] & 0xFF;
-				switch (wideOpcode) {
-				case 0x15: // iload
-				case 0x16: // lload
-				case 0x17: // fload
-				case 0x18: // dload
-				case 0x19: // aload
-				case 0x36: // istore
-				case 0x37: // lstore
-				case 0x38: // fstore
-				case 0x39: // dstore
-				case 0x3A: // astore
-				case 0xA9: // ret
-					bytes = 3;
-					break;
-				case 0x84: // iinc
-					bytes = 5;
-					break;
-				default:
-					throw new ClassFileException("Illegal wide opcode");
-				}
-				break;
-			default:
-				throw new ClassFileException("Illegal variable length opcode");
-			}
+	private void addForNameSite(final int offset) {
+		if (this.forNameSites == null) {
+			this.forNameSites = new int[4];
+		} else if (this.forNameSiteCount == this.forNameSites.length) {
+			this.forNameSites = Arrays.copyOf(this.forNameSites, this.forNameSiteCount * 2);
+		}
+		this.forNameSites[this.forNameSiteCount++] = offset;
+	}
+
+	/**
+	 * Return the code for updating, first copying it if it is shared with the
+	 * class data it was read from.
+	 */
+	private ByteBuffer getWritableCode() {
+		if (this.codeShared) {
+			this.code = ByteBufferInput.copy(this.code);
+			this.codeShared = false;
 		}
-		return bytes;
+		return this.code;
 	}
 }
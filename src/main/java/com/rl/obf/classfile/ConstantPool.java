@@ -19,25 +19,135 @@
 
 package com.rl.obf.classfile;
 
-import java.util.ArrayList;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
 
 /**
  * A representation of the data in a Java class-file's Constant Pool. Constant
  * Pool entries are managed by reference counting.
+ * <p>
+ * The entries are held as parallel arrays of their tags, operands and
+ * reference counts, with the bytes of the Utf8 strings in one shared arena, so
+ * reading, reference counting, remapping and writing a pool are walks over the
+ * arrays. A CpInfo is only created, as a view of an entry's data in the arrays,
+ * when the entry is asked for; changes through the view are made to the arrays.
  *
  * @author Mark Welsh
  */
 public class ConstantPool implements Iterable<CpInfo> {
 	// Constants -------------------------------------------------------------
+	/**
+	 * Offset in the arena of the empty string, which all cleared Utf8 entries
+	 * share
+	 */
+	private static final int EMPTY_UTF8_OFFSET = 0;
 
 	// Fields ----------------------------------------------------------------
 	private final ClassFile myClassFile;
-	private final List<CpInfo> pool;
+
+	/**
+	 * Number of entries, including the unused zero entry and those following a
+	 * Long or Double
+	 */
+	private int size = 0;
+
+	/**
+	 * Tag of each entry, zero for the unused entries
+	 */
+	private byte[] tags;
+
+	/**
+	 * Operands of each entry: the indices of the entries it refers to, the
+	 * reference kind of a MethodHandle, the bootstrap method index of an
+	 * InvokeDynamic, or the value of an Integer, Float, Long or Double (high word
+	 * first)
+	 */
+	private int[] operands1;
+	private int[] operands2;
+
+	/**
+	 * Reference count of each entry
+	 */
+	private int[] refCounts;
+
+	/**
+	 * Offset of the length and modified UTF-8 bytes of each Utf8 entry in the
+	 * arena, which is appended to when a string is changed
+	 */
+	private int[] offsets;
+	private byte[] arena;
+	private int arenaLength = 0;
+
+	/**
+	 * Number of bytes in the arena left behind by replaced strings
+	 */
+	private int arenaGarbage = 0;
+
+	/**
+	 * Decoded string of each Utf8 entry, or null if not yet decoded
+	 */
+	private String[] strings;
+
+	/**
+	 * View of each entry that has been asked for, or null
+	 */
+	private CpInfo[] views;
+
+	/**
+	 * Lowest index of each non-empty Utf8 string, built on the first string added
+	 * since the reference counts were last updated
+	 */
+	private Map<String, Integer> utf8Index = null;
+
+	/**
+	 * Indices of the Utf8 entries without references, free to be overwritten
+	 */
+	private BitSet freeUtf8 = null;
+
+	/**
+	 * Does the pool hold any non-empty Utf8 string more than once?
+	 */
+	private boolean duplicateUtf8 = false;
 
 	// Class Methods ---------------------------------------------------------
+	/**
+	 * Return the length of the data following the tag of an entry, excluding the
+	 * string bytes of a Utf8. The tags are checked as the entries are read or
+	 * added, so an unknown one has no data.
+	 * 
+	 * @param tag
+	 */
+	private static int getInfoLength(final int tag) {
+		switch (tag) {
+		case ClassConstants.CONSTANT_Utf8:
+		case ClassConstants.CONSTANT_Class:
+		case ClassConstants.CONSTANT_String:
+		case ClassConstants.CONSTANT_MethodType:
+			return 2;
+		case ClassConstants.CONSTANT_MethodHandle:
+			return 3;
+		case ClassConstants.CONSTANT_Integer:
+		case ClassConstants.CONSTANT_Float:
+		case ClassConstants.CONSTANT_Fieldref:
+		case ClassConstants.CONSTANT_Methodref:
+		case ClassConstants.CONSTANT_InterfaceMethodref:
+		case ClassConstants.CONSTANT_NameAndType:
+		case ClassConstants.CONSTANT_InvokeDynamic:
+			return 4;
+		case ClassConstants.CONSTANT_Long:
+		case ClassConstants.CONSTANT_Double:
+			return 8;
+		default:
+			return 0;
+		}
+	}
 
 	// Instance Methods ------------------------------------------------------
 	/**
@@ -48,38 +158,321 @@ public class ConstantPool implements Iterable<CpInfo> {
 	 */
 	public ConstantPool(final ClassFile classFile, final List<CpInfo> cpInfo) {
 		this.myClassFile = classFile;
-		this.pool = new ArrayList<>(cpInfo);
+		this.allocate(Math.max(1, cpInfo.size()), 16);
+		for (final CpInfo entry : cpInfo) {
+			if (entry != null) {
+				this.addEntry(entry);
+			} else {
+				this.size++;
+			}
+		}
+	}
+
+	/**
+	 * Constructor, which reads the Constant Pool of a class file into the arrays,
+	 * without creating any CpInfo.
+	 * 
+	 * @param classFile
+	 * @param din
+	 * @throws IOException
+	 * @throws ClassFileException
+	 */
+	public ConstantPool(final ClassFile classFile, final DataInput din) throws IOException, ClassFileException {
+		this.myClassFile = classFile;
+		final int count = din.readUnsignedShort();
+		this.allocate(Math.max(1, count), count * 8);
+		this.size = count;
+		// The zero entry is not persisted, nor are the entries following a Long or
+		// Double
+		for (int i = 1; i < this.size; i++) {
+			final int tag = din.readUnsignedByte();
+			this.tags[i] = (byte) tag;
+			switch (tag) {
+			case ClassConstants.CONSTANT_Utf8:
+				final int length = din.readUnsignedShort();
+				final int offset = this.reserveArena(2 + length);
+				this.arena[offset] = (byte) (length >> 8);
+				this.arena[offset + 1] = (byte) length;
+				din.readFully(this.arena, offset + 2, length);
+				this.offsets[i] = offset;
+				break;
+			case ClassConstants.CONSTANT_Class:
+			case ClassConstants.CONSTANT_String:
+			case ClassConstants.CONSTANT_MethodType:
+				this.operands1[i] = din.readUnsignedShort();
+				break;
+			case ClassConstants.CONSTANT_MethodHandle:
+				this.operands1[i] = din.readUnsignedByte();
+				this.operands2[i] = din.readUnsignedShort();
+				break;
+			case ClassConstants.CONSTANT_Integer:
+			case ClassConstants.CONSTANT_Float:
+				this.operands1[i] = din.readInt();
+				break;
+			case ClassConstants.CONSTANT_Long:
+			case ClassConstants.CONSTANT_Double:
+				this.operands1[i] = din.readInt();
+				this.operands2[i] = din.readInt();
+				i++;
+				break;
+			case ClassConstants.CONSTANT_Fieldref:
+			case ClassConstants.CONSTANT_Methodref:
+			case ClassConstants.CONSTANT_InterfaceMethodref:
+			case ClassConstants.CONSTANT_NameAndType:
+			case ClassConstants.CONSTANT_InvokeDynamic:
+				this.operands1[i] = din.readUnsignedShort();
+				this.operands2[i] = din.readUnsignedShort();
+				break;
+			default:
+				throw new ClassFileException("Unknown tag type in constant pool.");
+			}
+		}
 	}
 
 	/**
-	 * Return an Iterator of all Constant Pool entries.
+	 * Allocate the arrays, with the shared empty string at the start of the arena.
+	 * 
+	 * @param capacity
+	 * @param arenaCapacity
+	 */
+	private void allocate(final int capacity, final int arenaCapacity) {
+		this.tags = new byte[capacity];
+		this.operands1 = new int[capacity];
+		this.operands2 = new int[capacity];
+		this.refCounts = new int[capacity];
+		this.offsets = new int[capacity];
+		this.strings = new String[capacity];
+		this.views = new CpInfo[capacity];
+		this.arena = new byte[Math.max(16, arenaCapacity)];
+		this.arenaLength = 2;
+	}
+
+	/**
+	 * Reserve space at the end of the arena and return its offset.
+	 * 
+	 * @param length
+	 */
+	private int reserveArena(final int length) {
+		if (this.arenaLength + length > this.arena.length && this.arenaGarbage > this.arenaLength / 2) {
+			// Reclaim the bytes of replaced strings rather than growing the arena
+			this.trimArena();
+		}
+		final int offset = this.arenaLength;
+		if (offset + length > this.arena.length) {
+			this.arena = Arrays.copyOf(this.arena, Math.max(this.arena.length * 2, offset + length));
+		}
+		this.arenaLength += length;
+		return offset;
+	}
+
+	/**
+	 * Copy the bytes of the Utf8 entries into a new arena, dropping those left
+	 * behind by replaced strings.
+	 */
+	private void trimArena() {
+		final byte[] trimmed = new byte[Math.max(16, this.arenaLength - this.arenaGarbage)];
+		int length = 2;
+		for (int i = 0; i < this.size; i++) {
+			if (this.tags[i] == ClassConstants.CONSTANT_Utf8 && this.offsets[i] != ConstantPool.EMPTY_UTF8_OFFSET) {
+				final int entryLength = this.getUtf8InfoLength(i);
+				System.arraycopy(this.arena, this.offsets[i], trimmed, length, entryLength);
+				this.offsets[i] = length;
+				length += entryLength;
+			}
+		}
+		this.arena = trimmed;
+		this.arenaLength = length;
+		this.arenaGarbage = 0;
+	}
+
+	/**
+	 * Return an Iterator of all Constant Pool entries, creating a view of each.
 	 */
 	@Override
 	public Iterator<CpInfo> iterator() {
-		return this.pool.iterator();
+		try {
+			for (int i = 0; i < this.size; i++) {
+				this.getCpEntry(i);
+			}
+		} catch (final ClassFileException e) {
+			// the index is in range
+			throw new RuntimeException("Internal error: " + e.getMessage(), e);
+		}
+		return Arrays.asList(this.views).subList(0, this.size).iterator();
 	}
 
 	/**
 	 * Return the Constant Pool length.
 	 */
 	public int length() {
-		return this.pool.size();
+		return this.size;
 	}
 
 	/**
-	 * Return the specified Constant Pool entry.
+	 * Check that an index is within the Constant Pool.
 	 * 
 	 * @param i
 	 * @throws ClassFileException
 	 */
-	public CpInfo getCpEntry(final int i) throws ClassFileException {
-		try {
-			return this.pool.get(i);
-		} catch (final IndexOutOfBoundsException e) {
+	private void checkIndex(final int i) throws ClassFileException {
+		if (i < 0 || i >= this.size) {
 			throw new ClassFileException("Constant Pool index out of range.");
 		}
 	}
 
+	/**
+	 * Return the tag of the specified Constant Pool entry, or zero for the unused
+	 * entries, without creating it.
+	 * 
+	 * @param i
+	 * @throws ClassFileException
+	 */
+	public int getTag(final int i) throws ClassFileException {
+		this.checkIndex(i);
+		return this.tags[i] & 0xFF;
+	}
+
+	/**
+	 * Return the specified Constant Pool entry, or null for the unused entries.
+	 * 
+	 * @param i
+	 * @throws ClassFileException
+	 */
+	public CpInfo getCpEntry(final int i) throws ClassFileException {
+		this.checkIndex(i);
+		if (this.views[i] == null && this.tags[i] != 0) {
+			this.views[i] = CpInfo.createView(this, i);
+		}
+		return this.views[i];
+	}
+
+	/**
+	 * Return the first operand of an entry.
+	 * 
+	 * @param i
+	 */
+	int getOperand1(final int i) {
+		return this.operands1[i];
+	}
+
+	/**
+	 * Set the first operand of an entry.
+	 * 
+	 * @param i
+	 * @param value
+	 */
+	void setOperand1(final int i, final int value) {
+		this.operands1[i] = value;
+	}
+
+	/**
+	 * Return the second operand of an entry.
+	 * 
+	 * @param i
+	 */
+	int getOperand2(final int i) {
+		return this.operands2[i];
+	}
+
+	/**
+	 * Set the second operand of an entry.
+	 * 
+	 * @param i
+	 * @param value
+	 */
+	void setOperand2(final int i, final int value) {
+		this.operands2[i] = value;
+	}
+
+	/**
+	 * Return the string of a Utf8 entry.
+	 * 
+	 * @param i
+	 * @throws ClassFileException
+	 */
+	public String getUtf8(final int i) throws ClassFileException {
+		this.checkIndex(i);
+		if (this.tags[i] != ClassConstants.CONSTANT_Utf8) {
+			throw new ClassFileException("Not UTF8Info");
+		}
+		return this.getString(i);
+	}
+
+	/**
+	 * Return the string of a Utf8 entry, decoding it when first needed.
+	 * 
+	 * @param i
+	 */
+	String getString(final int i) {
+		String s = this.strings[i];
+		if (s == null) {
+			final int offset = this.offsets[i];
+			final int length = (this.arena[offset] & 0xFF) << 8 | this.arena[offset + 1] & 0xFF;
+			s = Utf8CpInfo.decode(this.arena, offset + 2, length);
+			this.strings[i] = s;
+		}
+		return s;
+	}
+
+	/**
+	 * Set the string of a Utf8 entry.
+	 * 
+	 * @param i
+	 * @param s
+	 */
+	void setString(final int i, final String s) {
+		final String oldString = this.utf8Index != null ? this.getString(i) : null;
+		final int oldOffset = this.offsets[i];
+		final int oldLength = this.getUtf8InfoLength(i);
+		if (s.length() == 0) {
+			this.offsets[i] = ConstantPool.EMPTY_UTF8_OFFSET;
+			this.arenaGarbage += oldOffset != ConstantPool.EMPTY_UTF8_OFFSET ? oldLength : 0;
+		} else {
+			final byte[] bytes = Utf8CpInfo.encode(s);
+			final int offset;
+			if (oldOffset != ConstantPool.EMPTY_UTF8_OFFSET && 2 + bytes.length <= oldLength) {
+				// Write the new string over the old one, which it fits in
+				offset = oldOffset;
+				this.arenaGarbage += oldLength - 2 - bytes.length;
+			} else {
+				if (oldOffset != ConstantPool.EMPTY_UTF8_OFFSET) {
+					this.offsets[i] = ConstantPool.EMPTY_UTF8_OFFSET;
+					this.arenaGarbage += oldLength;
+				}
+				offset = this.reserveArena(2 + bytes.length);
+			}
+			this.arena[offset] = (byte) (bytes.length >> 8);
+			this.arena[offset + 1] = (byte) bytes.length;
+			System.arraycopy(bytes, 0, this.arena, offset + 2, bytes.length);
+			this.offsets[i] = offset;
+		}
+		this.strings[i] = s;
+		if (this.utf8Index != null) {
+			this.utf8StringChanged(i, oldString, s);
+		}
+	}
+
+	/**
+	 * Return the length of the data following the tag of a Utf8 entry.
+	 * 
+	 * @param i
+	 */
+	int getUtf8InfoLength(final int i) {
+		final int offset = this.offsets[i];
+		return 2 + ((this.arena[offset] & 0xFF) << 8 | this.arena[offset + 1] & 0xFF);
+	}
+
+	/**
+	 * Write the data following the tag of a Utf8 entry.
+	 * 
+	 * @param i
+	 * @param dout
+	 * @throws IOException
+	 */
+	void writeUtf8Info(final int i, final DataOutput dout) throws IOException {
+		dout.write(this.arena, this.offsets[i], this.getUtf8InfoLength(i));
+	}
+
 	/**
 	 * Set the reference count for each element, using references from the owning
 	 * ClassFile.
@@ -87,13 +480,12 @@ public class ConstantPool implements Iterable<CpInfo> {
 	 * @throws ClassFileException
 	 */
 	public void updateRefCount() throws ClassFileException {
+		// The Utf8 index is rebuilt from the new reference counts when next needed
+		this.utf8Index = null;
+		this.freeUtf8 = null;
+
 		// Reset all reference counts to zero
-		this.walkPool(new PoolAction() {
-			@Override
-			public void defaultAction(final CpInfo cpInfo) {
-				cpInfo.resetRefCount();
-			}
-		});
+		Arrays.fill(this.refCounts, 0, this.size, 0);
 
 		// Count the direct references to Utf8 entries
 		this.myClassFile.markUtf8Refs();
@@ -102,14 +494,105 @@ public class ConstantPool implements Iterable<CpInfo> {
 		this.myClassFile.markNTRefs();
 
 		// Go through pool, clearing the Utf8 entries which have no references
-		this.walkPool(new PoolAction() {
-			@Override
-			public void utf8Action(final Utf8CpInfo cpInfo) {
-				if (cpInfo.getRefCount() == 0) {
-					cpInfo.clearString();
-				}
+		for (int i = 0; i < this.size; i++) {
+			if (this.tags[i] == ClassConstants.CONSTANT_Utf8 && this.refCounts[i] == 0) {
+				this.setString(i, "");
 			}
-		});
+		}
+	}
+
+	/**
+	 * Count the references to Utf8 entries from other entries.
+	 * 
+	 * @throws ClassFileException
+	 */
+	protected void markUtf8Refs() throws ClassFileException {
+		for (int i = 0; i < this.size; i++) {
+			switch (this.tags[i]) {
+			case ClassConstants.CONSTANT_Class:
+			case ClassConstants.CONSTANT_String:
+			case ClassConstants.CONSTANT_MethodType:
+				this.incRefCount(this.operands1[i]);
+				break;
+			case ClassConstants.CONSTANT_NameAndType:
+				this.incRefCount(this.operands1[i]);
+				this.incRefCount(this.operands2[i]);
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Count the references to NameAndType entries from other entries.
+	 * 
+	 * @throws ClassFileException
+	 */
+	protected void markNTRefs() throws ClassFileException {
+		for (int i = 0; i < this.size; i++) {
+			switch (this.tags[i]) {
+			case ClassConstants.CONSTANT_Fieldref:
+			case ClassConstants.CONSTANT_Methodref:
+			case ClassConstants.CONSTANT_InterfaceMethodref:
+			case ClassConstants.CONSTANT_InvokeDynamic:
+				this.incRefCount(this.operands2[i]);
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Renumber the references from an entry to other entries.
+	 * 
+	 * @param i
+	 * @param mapper
+	 * @throws ClassFileException
+	 */
+	protected void renumberCpRefs(final int i, final CpIndexMapper mapper) throws ClassFileException {
+		switch (this.tags[i]) {
+		case ClassConstants.CONSTANT_Class:
+		case ClassConstants.CONSTANT_String:
+		case ClassConstants.CONSTANT_MethodType:
+			this.operands1[i] = mapper.mapIndex(this.operands1[i]);
+			break;
+		case ClassConstants.CONSTANT_Fieldref:
+		case ClassConstants.CONSTANT_Methodref:
+		case ClassConstants.CONSTANT_InterfaceMethodref:
+		case ClassConstants.CONSTANT_NameAndType:
+			this.operands1[i] = mapper.mapIndex(this.operands1[i]);
+			this.operands2[i] = mapper.mapIndex(this.operands2[i]);
+			break;
+		case ClassConstants.CONSTANT_MethodHandle:
+		case ClassConstants.CONSTANT_InvokeDynamic:
+			this.operands2[i] = mapper.mapIndex(this.operands2[i]);
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Renumber the references between entries.
+	 * 
+	 * @param mapper
+	 * @throws ClassFileException
+	 */
+	protected void renumberCpRefs(final CpIndexMapper mapper) throws ClassFileException {
+		for (int i = 0; i < this.size; i++) {
+			this.renumberCpRefs(i, mapper);
+		}
+	}
+
+	/**
+	 * Return the reference count of an entry.
+	 * 
+	 * @param i
+	 */
+	int getRefCount(final int i) {
+		return this.refCounts[i];
 	}
 
 	/**
@@ -119,14 +602,26 @@ public class ConstantPool implements Iterable<CpInfo> {
 	 * @throws ClassFileException
 	 */
 	public void incRefCount(final int i) throws ClassFileException {
-		final CpInfo cpInfo = this.getCpEntry(i);
-		if (cpInfo == null) {
+		this.checkIndex(i);
+		if (this.tags[i] == 0) {
 			// This can happen for JDK1.2 code so remove - 981123
 			// throw new ClassFileException("Illegal access to a Constant Pool element.");
 			return;
 		}
 
-		cpInfo.incRefCount();
+		this.addRefCount(i);
+	}
+
+	/**
+	 * Increment the reference count of an entry.
+	 * 
+	 * @param i
+	 */
+	void addRefCount(final int i) {
+		this.refCounts[i]++;
+		if (this.refCounts[i] == 1 && this.tags[i] == ClassConstants.CONSTANT_Utf8) {
+			this.utf8RefCountChanged(i, 1);
+		}
 	}
 
 	/**
@@ -149,25 +644,136 @@ public class ConstantPool implements Iterable<CpInfo> {
 	 * @throws ClassFileException
 	 */
 	public void decRefCount(final int i) throws ClassFileException {
-		final CpInfo cpInfo = this.getCpEntry(i);
-		if (cpInfo == null) {
+		this.checkIndex(i);
+		if (this.tags[i] == 0) {
 			// This can happen for JDK1.2 code so remove - 981123
 			// throw new ClassFileException("Illegal access to a Constant Pool element.");
 			return;
 		}
 
-		cpInfo.decRefCount();
+		if (this.refCounts[i] == 0) {
+			throw new ClassFileException("Illegal to decrement ref count that is already zero.");
+		}
+		this.refCounts[i]--;
+		if (this.refCounts[i] == 0 && this.tags[i] == ClassConstants.CONSTANT_Utf8) {
+			this.utf8RefCountChanged(i, 0);
+			this.setString(i, "");
+		}
 	}
 
 	/**
-	 * Add an entry to the constant pool and return its index.
+	 * Remove the entries not in use, keeping the order of the rest, and return the
+	 * new index for each old index, zero for those removed; or null if all are in
+	 * use.
+	 * 
+	 * @param used
+	 */
+	protected int[] compact(final BitSet used) {
+		final int[] newIndices = new int[this.size];
+		int compactedSize = 1;
+		for (int i = 1; i < this.size; i++) {
+			if (this.tags[i] != 0 && used.get(i)) {
+				newIndices[i] = compactedSize;
+				compactedSize++;
+				if (this.tags[i] == ClassConstants.CONSTANT_Long || this.tags[i] == ClassConstants.CONSTANT_Double) {
+					compactedSize++;
+				}
+			}
+		}
+		if (compactedSize == this.size) {
+			return null;
+		}
+
+		// Move each entry kept down to its new index, which is never above its old one
+		for (int i = 1; i < this.size; i++) {
+			final int j = newIndices[i];
+			if (j == 0) {
+				if (this.views[i] != null) {
+					this.views[i].setPool(null, 0);
+				}
+				continue;
+			}
+			this.tags[j] = this.tags[i];
+			this.operands1[j] = this.operands1[i];
+			this.operands2[j] = this.operands2[i];
+			this.refCounts[j] = this.refCounts[i];
+			this.offsets[j] = this.offsets[i];
+			this.strings[j] = this.strings[i];
+			this.views[j] = this.views[i];
+			if (this.views[j] != null) {
+				this.views[j].setPool(this, j);
+			}
+			if (this.tags[j] == ClassConstants.CONSTANT_Long || this.tags[j] == ClassConstants.CONSTANT_Double) {
+				this.clearEntry(j + 1);
+			}
+		}
+		for (int i = compactedSize; i < this.size; i++) {
+			this.clearEntry(i);
+		}
+		this.size = compactedSize;
+		this.trimArena();
+
+		// The Utf8 index is rebuilt for the new indices when next needed
+		this.utf8Index = null;
+		this.freeUtf8 = null;
+		return newIndices;
+	}
+
+	/**
+	 * Clear the slot of an entry.
+	 * 
+	 * @param i
+	 */
+	private void clearEntry(final int i) {
+		this.tags[i] = 0;
+		this.operands1[i] = 0;
+		this.operands2[i] = 0;
+		this.refCounts[i] = 0;
+		this.offsets[i] = 0;
+		this.strings[i] = null;
+		this.views[i] = null;
+	}
+
+	/**
+	 * Append a slot for an entry and return its index.
+	 * 
+	 * @param tag
+	 */
+	private int appendEntry(final int tag) {
+		final int index = this.size;
+		if (index == this.tags.length) {
+			final int capacity = Math.max(16, index * 3 / 2);
+			this.tags = Arrays.copyOf(this.tags, capacity);
+			this.operands1 = Arrays.copyOf(this.operands1, capacity);
+			this.operands2 = Arrays.copyOf(this.operands2, capacity);
+			this.refCounts = Arrays.copyOf(this.refCounts, capacity);
+			this.offsets = Arrays.copyOf(this.offsets, capacity);
+			this.strings = Arrays.copyOf(this.strings, capacity);
+			this.views = Arrays.copyOf(this.views, capacity);
+		}
+		this.tags[index] = (byte) tag;
+		this.size++;
+		return index;
+	}
+
+	/**
+	 * Add an entry to the constant pool and return its index; from then on the
+	 * entry is a view of its data in the pool.
 	 * 
 	 * @param entry
 	 */
 	public int addEntry(final CpInfo entry) {
 		// Add new entry to end of pool
-		final int index = this.pool.size();
-		this.pool.add(entry);
+		final int index = this.appendEntry(entry.getTag());
+		this.operands1[index] = entry.getOperand1();
+		this.operands2[index] = entry.getOperand2();
+		this.refCounts[index] = entry.getRefCount();
+		if (entry instanceof Utf8CpInfo) {
+			this.setString(index, ((Utf8CpInfo) entry).getString());
+			this.utf8RefCountChanged(index, this.refCounts[index]);
+		}
+		entry.setPool(this, index);
+		this.views[index] = entry;
 		return index;
 	}
 
@@ -177,66 +783,168 @@ public class ConstantPool implements Iterable<CpInfo> {
 	 * @param s
 	 */
 	protected int addUtf8Entry(final String s) {
+		if (this.utf8Index == null) {
+			this.buildUtf8Index();
+		}
+
 		// Search pool for the string. If found, just increment the reference count and
 		// return the index
-		for (final ListIterator<CpInfo> iter = this.pool.listIterator(); iter.hasNext();) {
-			final int i = iter.nextIndex();
-			final CpInfo cpInfo = iter.next();
-			if (cpInfo instanceof Utf8CpInfo) {
-				final Utf8CpInfo entry = (Utf8CpInfo) cpInfo;
-				if (entry.getString().equals(s)) {
-					entry.incRefCount();
-					return i;
-				}
-			}
+		final Integer found = s.length() > 0 ? this.utf8Index.get(s) : this.findUtf8(s, -1);
+		if (found != null) {
+			this.addRefCount(found.intValue());
+			return found.intValue();
 		}
 
 		// No luck, so try to overwrite an old, blanked entry
-		for (final ListIterator<CpInfo> iter = this.pool.listIterator(); iter.hasNext();) {
-			final int i = iter.nextIndex();
-			final CpInfo cpInfo = iter.next();
-			if (cpInfo instanceof Utf8CpInfo) {
-				final Utf8CpInfo entry = (Utf8CpInfo) cpInfo;
-				if (entry.getRefCount() == 0) {
-					entry.setString(s);
-					entry.incRefCount();
-					return i;
-				}
+		int index = this.freeUtf8.nextSetBit(0);
+		if (index < 0) {
+			// Still no luck, so append a fresh Utf8 entry to the pool
+			index = this.appendEntry(ClassConstants.CONSTANT_Utf8);
+		}
+		this.setString(index, s);
+		this.addRefCount(index);
+		return index;
+	}
+
+	/**
+	 * Index the Utf8 entries by string, and note those without references.
+	 */
+	private void buildUtf8Index() {
+		this.utf8Index = new HashMap<>();
+		this.freeUtf8 = new BitSet(this.size);
+		this.duplicateUtf8 = false;
+		for (int i = 0; i < this.size; i++) {
+			if (this.tags[i] == ClassConstants.CONSTANT_Utf8) {
+				this.utf8StringChanged(i, null, this.getString(i));
+				this.utf8RefCountChanged(i, this.refCounts[i]);
 			}
 		}
+	}
 
-		// Still no luck, so append a fresh Utf8CpInfo entry to the pool
-		return this.addEntry(new Utf8CpInfo(s));
+	/**
+	 * Return the lowest index of a Utf8 entry holding the string, other than the
+	 * given index, or null if there is none.
+	 * 
+	 * @param s
+	 * @param exceptIndex
+	 */
+	private Integer findUtf8(final String s, final int exceptIndex) {
+		for (int i = 0; i < this.size; i++) {
+			if (i != exceptIndex && this.tags[i] == ClassConstants.CONSTANT_Utf8 && this.getString(i).equals(s)) {
+				return Integer.valueOf(i);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Update the Utf8 index for a change to the string of an entry.
+	 * 
+	 * @param index
+	 * @param oldString
+	 *            the previous string, or null for a new entry
+	 * @param newString
+	 */
+	private void utf8StringChanged(final int index, final String oldString, final String newString) {
+		if (this.utf8Index == null) {
+			return;
+		}
+		if (oldString != null && oldString.length() > 0
+				&& Integer.valueOf(index).equals(this.utf8Index.get(oldString))) {
+			this.utf8Index.remove(oldString);
+			if (this.duplicateUtf8) {
+				final Integer other = this.findUtf8(oldString, index);
+				if (other != null) {
+					this.utf8Index.put(oldString, other);
+				}
+			}
+		}
+		if (newString.length() > 0) {
+			final Integer current = this.utf8Index.get(newString);
+			if (current == null || current.intValue() > index) {
+				this.utf8Index.put(newString, Integer.valueOf(index));
+			}
+			if (current != null) {
+				this.duplicateUtf8 = true;
+			}
+		}
 	}
 
 	/**
-	 * Data walker
+	 * Update the free Utf8 entries for a change to the reference count of an
+	 * entry.
+	 * 
+	 * @param index
+	 * @param refCount
 	 */
-	class PoolAction {
-		/**
-		 * @param cpInfo
-		 */
-		public void utf8Action(final Utf8CpInfo cpInfo) {
-			this.defaultAction(cpInfo);
+	private void utf8RefCountChanged(final int index, final int refCount) {
+		if (this.freeUtf8 != null) {
+			this.freeUtf8.set(index, refCount == 0);
 		}
+	}
 
-		/**
-		 * @param cpInfo
-		 */
-		public void defaultAction(final CpInfo cpInfo) {
-			// do nothing
+	/**
+	 * Return the length in bytes of the entries as written by {@link #write}.
+	 */
+	public int getEntriesLength() {
+		int length = 0;
+		for (int i = 0; i < this.size; i++) {
+			if (this.tags[i] == ClassConstants.CONSTANT_Utf8) {
+				length += 1 + this.getUtf8InfoLength(i);
+			} else if (this.tags[i] != 0) {
+				length += 1 + ConstantPool.getInfoLength(this.tags[i]);
+			}
 		}
+		return length;
 	}
 
 	/**
-	 * @param pa
+	 * Export the entries, without their count, to a {@code DataOutput} stream.
+	 * 
+	 * @param dout
+	 * @throws IOException
+	 * @throws ClassFileException
 	 */
-	private void walkPool(final PoolAction pa) {
-		for (final CpInfo cpInfo : this.pool) {
-			if (cpInfo instanceof Utf8CpInfo) {
-				pa.utf8Action((Utf8CpInfo) cpInfo);
-			} else if (cpInfo != null) {
-				pa.defaultAction(cpInfo);
+	public void write(final DataOutput dout) throws IOException, ClassFileException {
+		for (int i = 0; i < this.size; i++) {
+			final int tag = this.tags[i];
+			if (tag != 0) {
+				dout.writeByte(tag);
+			}
+			switch (tag) {
+			case 0:
+				break;
+			case ClassConstants.CONSTANT_Utf8:
+				this.writeUtf8Info(i, dout);
+				break;
+			case ClassConstants.CONSTANT_Class:
+			case ClassConstants.CONSTANT_String:
+			case ClassConstants.CONSTANT_MethodType:
+				dout.writeShort(this.operands1[i]);
+				break;
+			case ClassConstants.CONSTANT_MethodHandle:
+				dout.writeByte(this.operands1[i]);
+				dout.writeShort(this.operands2[i]);
+				break;
+			case ClassConstants.CONSTANT_Integer:
+			case ClassConstants.CONSTANT_Float:
+				dout.writeInt(this.operands1[i]);
+				break;
+			case ClassConstants.CONSTANT_Long:
+			case ClassConstants.CONSTANT_Double:
+				dout.writeInt(this.operands1[i]);
+				dout.writeInt(this.operands2[i]);
+				break;
+			case ClassConstants.CONSTANT_Fieldref:
+			case ClassConstants.CONSTANT_Methodref:
+			case ClassConstants.CONSTANT_InterfaceMethodref:
+			case ClassConstants.CONSTANT_NameAndType:
+			case ClassConstants.CONSTANT_InvokeDynamic:
+				dout.writeShort(this.operands1[i]);
+				dout.writeShort(this.operands2[i]);
+				break;
+			default:
+				throw new ClassFileException("Unknown tag type in constant pool.");
 			}
 		}
 	}
@@ -56,6 +56,16 @@ public class ConstantValueAttrInfo extends AttrInfo {
 		return ClassConstants.ATTR_ConstantValue;
 	}
 
+	/**
+	 * Renumber the references in the 'info' data to Constant Pool entries.
+	 * 
+	 * @throws ClassFileException
+	 */
+	@Override
+	protected void renumberCpRefsInInfo(final CpIndexMapper mapper) throws ClassFileException {
+		this.u2constantValueIndex = mapper.mapIndex(this.u2constantValueIndex);
+	}
+
 	/**
 	 * Read the data following the header.
 	 * 
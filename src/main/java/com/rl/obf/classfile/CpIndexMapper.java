@@ -0,0 +1,37 @@
+/* ===========================================================================
+ * $RCSfile: CpIndexMapper.java,v $
+ * ===========================================================================
+ *
+ * RetroGuard -- an obfuscation package for Java classfiles.
+ *
+ * Copyright (c) 1998-2006 Mark Welsh (markw@retrologic.com)
+ *
+ * This program can be redistributed and/or modified under the terms of the
+ * Version 2 of the GNU General Public License as published by the Free
+ * Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+
+package com.rl.obf.classfile;
+
+/**
+ * Interface to a renumbering of Constant Pool indices.
+ *
+ * @author Mark Welsh
+ */
+public interface CpIndexMapper {
+	// Interface Methods -----------------------------------------------------
+	/**
+	 * Return the new index for a Constant Pool index; zero, for no entry, always
+	 * maps to zero.
+	 * 
+	 * @param index
+	 * @throws ClassFileException
+	 */
+	public int mapIndex(int index) throws ClassFileException;
+}
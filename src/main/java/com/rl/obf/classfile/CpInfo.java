@@ -26,6 +26,10 @@ import java.io.IOException;
 /**
  * Representation of an entry in the ConstantPool. Specific types of entry have
  * their representations sub-classed from this.
+ * <p>
+ * An entry holds its operands and reference count itself only until it is
+ * added to a ConstantPool; from then on it is a view of them in the pool's
+ * arrays, and reads and writes them there.
  *
  * @author Mark Welsh
  */
@@ -36,9 +40,19 @@ abstract public class CpInfo implements ClassConstants {
 	private final int u1tag;
 
 	/**
-	 * Used for reference counting in Constant Pool
+	 * Constant pool holding this entry, and its index there, or null if it is in
+	 * none
 	 */
-	protected int refCount = 0;
+	private ConstantPool pool = null;
+	private int poolIndex = 0;
+
+	/**
+	 * Operands, such as the indices of other entries, and reference count, while
+	 * this entry is in no constant pool
+	 */
+	private int operand1 = 0;
+	private int operand2 = 0;
+	private int refCount = 0;
 
 	// Class Methods ---------------------------------------------------------
 	/**
@@ -52,10 +66,46 @@ abstract public class CpInfo implements ClassConstants {
 		if (din == null) {
 			throw new IOException("No input stream was provided.");
 		}
+		return CpInfo.create(din.readUnsignedByte(), din);
+	}
+
+	/**
+	 * Create a new CpInfo from the data following the tag byte.
+	 * 
+	 * @param tag
+	 * @param din
+	 * @throws IOException
+	 * @throws ClassFileException
+	 */
+	public static CpInfo create(final int tag, final DataInput din) throws IOException, ClassFileException {
+		final CpInfo ci = CpInfo.newInstance(tag);
+		ci.readInfo(din);
+		return ci;
+	}
+
+	/**
+	 * Create a view of an entry held in a constant pool.
+	 * 
+	 * @param pool
+	 * @param index
+	 * @throws ClassFileException
+	 */
+	static CpInfo createView(final ConstantPool pool, final int index) throws ClassFileException {
+		final CpInfo ci = CpInfo.newInstance(pool.getTag(index));
+		ci.setPool(pool, index);
+		return ci;
+	}
 
+	/**
+	 * Create an empty entry of the type given by the tag byte.
+	 * 
+	 * @param tag
+	 * @throws ClassFileException
+	 */
+	private static CpInfo newInstance(final int tag) throws ClassFileException {
 		// Instantiate based on tag byte
 		CpInfo ci = null;
-		switch (din.readUnsignedByte()) {
+		switch (tag) {
 		case CONSTANT_Utf8:
 			ci = new Utf8CpInfo();
 			break;
@@ -101,7 +151,6 @@ abstract public class CpInfo implements ClassConstants {
 		default:
 			throw new ClassFileException("Unknown tag type in constant pool.");
 		}
-		ci.readInfo(din);
 		return ci;
 	}
 
@@ -115,6 +164,13 @@ abstract public class CpInfo implements ClassConstants {
 		this.u1tag = tag;
 	}
 
+	/**
+	 * Return the tag of the entry.
+	 */
+	protected int getTag() {
+		return this.u1tag;
+	}
+
 	/**
 	 * Read the 'info' data following the u1tag byte; over-ride this in sub-classes.
 	 * 
@@ -125,25 +181,68 @@ abstract public class CpInfo implements ClassConstants {
 	abstract protected void readInfo(DataInput din) throws IOException, ClassFileException;
 
 	/**
-	 * Check for Utf8 references to constant pool and mark them; over-ride this in
-	 * sub-classes.
+	 * Set the constant pool holding this entry, and its index there.
 	 * 
 	 * @param pool
-	 * @throws ClassFileException
+	 * @param index
+	 */
+	void setPool(final ConstantPool pool, final int index) {
+		this.pool = pool;
+		this.poolIndex = index;
+	}
+
+	/**
+	 * Return the constant pool holding this entry, or null if it is in none.
+	 */
+	protected ConstantPool getPool() {
+		return this.pool;
+	}
+
+	/**
+	 * Return the index of this entry in its constant pool.
+	 */
+	protected int getPoolIndex() {
+		return this.poolIndex;
+	}
+
+	/**
+	 * Return the first operand.
 	 */
-	protected void markUtf8Refs(final ConstantPool pool) throws ClassFileException {
-		// do nothing
+	protected int getOperand1() {
+		return this.pool != null ? this.pool.getOperand1(this.poolIndex) : this.operand1;
 	}
 
 	/**
-	 * Check for NameAndType references to constant pool and mark them; over-ride
-	 * this in sub-classes.
+	 * Set the first operand.
 	 * 
-	 * @param pool
-	 * @throws ClassFileException
+	 * @param value
+	 */
+	protected void setOperand1(final int value) {
+		if (this.pool != null) {
+			this.pool.setOperand1(this.poolIndex, value);
+		} else {
+			this.operand1 = value;
+		}
+	}
+
+	/**
+	 * Return the second operand.
 	 */
-	protected void markNTRefs(final ConstantPool pool) throws ClassFileException {
-		// do nothing
+	protected int getOperand2() {
+		return this.pool != null ? this.pool.getOperand2(this.poolIndex) : this.operand2;
+	}
+
+	/**
+	 * Set the second operand.
+	 * 
+	 * @param value
+	 */
+	protected void setOperand2(final int value) {
+		if (this.pool != null) {
+			this.pool.setOperand2(this.poolIndex, value);
+		} else {
+			this.operand2 = value;
+		}
 	}
 
 	/**
@@ -171,18 +270,35 @@ abstract public class CpInfo implements ClassConstants {
 	 */
 	abstract protected void writeInfo(DataOutput dout) throws IOException, ClassFileException;
 
+	/**
+	 * Return the length in bytes of the entry as written by {@link #write}.
+	 */
+	public int getLength() {
+		return 1 + this.getInfoLength();
+	}
+
+	/**
+	 * Return the length in bytes of the 'info' data following the u1tag byte;
+	 * over-ride this in sub-classes.
+	 */
+	abstract protected int getInfoLength();
+
 	/**
 	 * Return the reference count.
 	 */
 	public int getRefCount() {
-		return this.refCount;
+		return this.pool != null ? this.pool.getRefCount(this.poolIndex) : this.refCount;
 	}
 
 	/**
 	 * Increment the reference count.
 	 */
 	public void incRefCount() {
-		this.refCount++;
+		if (this.pool != null) {
+			this.pool.addRefCount(this.poolIndex);
+		} else {
+			this.refCount++;
+		}
 	}
 
 	/**
@@ -191,16 +307,13 @@ abstract public class CpInfo implements ClassConstants {
 	 * @throws ClassFileException
 	 */
 	public void decRefCount() throws ClassFileException {
-		if (this.refCount == 0) {
-			throw new ClassFileException("Illegal to decrement ref count that is already zero.");
+		if (this.pool != null) {
+			this.pool.decRefCount(this.poolIndex);
+		} else {
+			if (this.refCount == 0) {
+				throw new ClassFileException("Illegal to decrement ref count that is already zero.");
+			}
+			this.refCount--;
 		}
-		this.refCount--;
-	}
-
-	/**
-	 * Reset the reference count to zero.
-	 */
-	public void resetRefCount() {
-		this.refCount = 0;
 	}
 }
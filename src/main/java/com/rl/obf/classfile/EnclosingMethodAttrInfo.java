@@ -71,6 +71,17 @@ public class EnclosingMethodAttrInfo extends AttrInfo {
 		return this.u2methodIndex;
 	}
 
+	/**
+	 * Renumber the references in the 'info' data to Constant Pool entries.
+	 * 
+	 * @throws ClassFileException
+	 */
+	@Override
+	protected void renumberCpRefsInInfo(final CpIndexMapper mapper) throws ClassFileException {
+		this.u2classIndex = mapper.mapIndex(this.u2classIndex);
+		this.u2methodIndex = mapper.mapIndex(this.u2methodIndex);
+	}
+
 	/**
 	 * Read the data following the header.
 	 * 
@@ -20,12 +20,14 @@
 package com.rl.obf.classfile;
 
 import java.io.DataInput;
-import java.io.DataOutput;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
- * Representation of an attribute.
+ * Representation of an attribute. The table needs no remapping, so it is kept as
+ * read, written back unchanged, and only decoded if asked for.
  *
  * @author Mark Welsh
  */
@@ -33,7 +35,7 @@ public class ExceptionsAttrInfo extends AttrInfo {
 	// Constants -------------------------------------------------------------
 
 	// Fields ----------------------------------------------------------------
-	private ArrayList<Integer> u2exceptionIndexTable;
+	private List<Integer> u2exceptionIndexTable = null;
 
 	// Class Methods ---------------------------------------------------------
 
@@ -58,31 +60,39 @@ public class ExceptionsAttrInfo extends AttrInfo {
 	}
 
 	/**
-	 * Read the data following the header.
+	 * Renumber the references in the 'info' data to Constant Pool entries.
 	 * 
-	 * @throws IOException
 	 * @throws ClassFileException
 	 */
 	@Override
-	protected void readInfo(final DataInput din) throws IOException, ClassFileException {
-		final int u2numberOfExceptions = din.readUnsignedShort();
-		this.u2exceptionIndexTable = new ArrayList<>(u2numberOfExceptions);
+	protected void renumberCpRefsInInfo(final CpIndexMapper mapper) throws ClassFileException {
+		final int u2numberOfExceptions = this.getExceptionIndexTable().size();
 		for (int i = 0; i < u2numberOfExceptions; i++) {
-			this.u2exceptionIndexTable.add(din.readUnsignedShort());
+			this.renumberInfoIndex(2 + 2 * i, mapper);
 		}
+		this.u2exceptionIndexTable = null;
 	}
 
 	/**
-	 * Export data following the header to a DataOutput stream.
+	 * Return the constant pool indices of the exception classes, decoding them on
+	 * first use.
 	 * 
-	 * @throws IOException
 	 * @throws ClassFileException
 	 */
-	@Override
-	public void writeInfo(final DataOutput dout) throws IOException, ClassFileException {
-		dout.writeShort(this.u2exceptionIndexTable.size());
-		for (final int ex : this.u2exceptionIndexTable) {
-			dout.writeShort(ex);
+	public List<Integer> getExceptionIndexTable() throws ClassFileException {
+		if (this.u2exceptionIndexTable == null) {
+			try {
+				final DataInput din = this.getInfoInput();
+				final int u2numberOfExceptions = din.readUnsignedShort();
+				final List<Integer> table = new ArrayList<>(u2numberOfExceptions);
+				for (int i = 0; i < u2numberOfExceptions; i++) {
+					table.add(din.readUnsignedShort());
+				}
+				this.u2exceptionIndexTable = Collections.unmodifiableList(table);
+			} catch (final IOException e) {
+				throw new ClassFileException("Truncated Exceptions attribute");
+			}
 		}
+		return this.u2exceptionIndexTable;
 	}
 }
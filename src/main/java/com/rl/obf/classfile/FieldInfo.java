@@ -50,6 +50,25 @@ public class FieldInfo extends ClassItemInfo {
 		return fi;
 	}
 
+	/**
+	 * Create a new FieldInfo from the file format data in the DataInput stream,
+	 * reading only what is needed to build the class tree.
+	 * 
+	 * @param din
+	 * @param cf
+	 * @throws IOException
+	 * @throws ClassFileException
+	 */
+	public static FieldInfo createSkeleton(final DataInput din, final ClassFile cf)
+			throws IOException, ClassFileException {
+		if (din == null) {
+			throw new IOException("No input stream was provided.");
+		}
+		final FieldInfo fi = new FieldInfo(cf);
+		fi.readSkeleton(din);
+		return fi;
+	}
+
 	// Instance Methods ------------------------------------------------------
 	/**
 	 * Constructor
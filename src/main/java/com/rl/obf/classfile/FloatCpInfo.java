@@ -32,7 +32,6 @@ public class FloatCpInfo extends CpInfo {
 	// Constants -------------------------------------------------------------
 
 	// Fields ----------------------------------------------------------------
-	private int u4bytes;
 
 	// Class Methods ---------------------------------------------------------
 
@@ -52,7 +51,17 @@ public class FloatCpInfo extends CpInfo {
 	 */
 	@Override
 	protected void readInfo(final DataInput din) throws IOException, ClassFileException {
-		this.u4bytes = din.readInt();
+		this.setOperand1(din.readInt());
+	}
+
+	/**
+	 * Return the length in bytes of the 'info' data following the u1tag byte.
+	 * 
+	 * @see CpInfo#getInfoLength()
+	 */
+	@Override
+	protected int getInfoLength() {
+		return 4;
 	}
 
 	/**
@@ -63,6 +72,6 @@ public class FloatCpInfo extends CpInfo {
 	 */
 	@Override
 	protected void writeInfo(final DataOutput dout) throws IOException, ClassFileException {
-		dout.writeInt(this.u4bytes);
+		dout.writeInt(this.getOperand1());
 	}
 }
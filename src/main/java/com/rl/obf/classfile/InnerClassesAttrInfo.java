@@ -78,6 +78,18 @@ public class InnerClassesAttrInfo extends AttrInfo {
 		}
 	}
 
+	/**
+	 * Renumber the references in the 'info' data to Constant Pool entries.
+	 * 
+	 * @throws ClassFileException
+	 */
+	@Override
+	protected void renumberCpRefsInInfo(final CpIndexMapper mapper) throws ClassFileException {
+		for (final InnerClassesInfo ic : this.classes) {
+			ic.renumberCpRefs(mapper);
+		}
+	}
+
 	/**
 	 * Read the data following the header.
 	 * 
@@ -91,6 +91,18 @@ public class InnerClassesInfo {
 		}
 	}
 
+	/**
+	 * Renumber the references to Constant Pool entries.
+	 * 
+	 * @param mapper
+	 * @throws ClassFileException
+	 */
+	protected void renumberCpRefs(final CpIndexMapper mapper) throws ClassFileException {
+		this.u2innerClassInfoIndex = mapper.mapIndex(this.u2innerClassInfoIndex);
+		this.u2outerClassInfoIndex = mapper.mapIndex(this.u2outerClassInfoIndex);
+		this.u2innerNameIndex = mapper.mapIndex(this.u2innerNameIndex);
+	}
+
 	/**
 	 * @param din
 	 * @throws IOException
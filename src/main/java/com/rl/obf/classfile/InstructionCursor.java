@@ -0,0 +1,225 @@
+/* ===========================================================================
+ * $RCSfile: InstructionCursor.java,v $
+ * ===========================================================================
+ *
+ * RetroGuard -- an obfuscation package for Java classfiles.
+ *
+ * Copyright (c) 1998-2006 Mark Welsh (markw@retrologic.com)
+ *
+ * This program can be redistributed and/or modified under the terms of the
+ * Version 2 of the GNU General Public License as published by the Free
+ * Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+
+package com.rl.obf.classfile;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Cursor stepping through the instructions of a method's code in place, giving
+ * the opcode, offset and operand position of each; it allocates nothing as it
+ * goes, and can be reset to walk other code.
+ *
+ * @author Mark Welsh
+ */
+public class InstructionCursor {
+	// Constants -------------------------------------------------------------
+	/**
+	 * Number of operand bytes following each opcode, or -1 for the variable
+	 * length tableswitch, lookupswitch and wide.
+	 */
+	private static final byte[] OPERAND_BYTES = new byte[256];
+
+	static {
+		for (final int opcode : new int[] { 0x10, 0x12, 0x15, 0x16, 0x17, 0x18, 0x19, 0x36, 0x37, 0x38, 0x39, 0x3A,
+				0xA9, 0xBC }) {
+			InstructionCursor.OPERAND_BYTES[opcode] = 1;
+		}
+		for (final int opcode : new int[] { 0x11, 0x13, 0x14, 0x84, 0x99, 0x9A, 0x9B, 0x9C, 0x9D, 0x9E, 0x9F, 0xA0,
+				0xA1, 0xA2, 0xA3, 0xA4, 0xA5, 0xA6, 0xA7, 0xA8, 0xB2, 0xB3, 0xB4, 0xB5, 0xB6, 0xB7, 0xB8, 0xBB, 0xBD,
+				0xC0, 0xC1, 0xC6, 0xC7 }) {
+			InstructionCursor.OPERAND_BYTES[opcode] = 2;
+		}
+		InstructionCursor.OPERAND_BYTES[0xC5] = 3;
+		for (final int opcode : new int[] { 0xB9, 0xBA, 0xC8, 0xC9 }) {
+			InstructionCursor.OPERAND_BYTES[opcode] = 4;
+		}
+		for (final int opcode : new int[] { 0xAA, 0xAB, 0xC4 }) {
+			InstructionCursor.OPERAND_BYTES[opcode] = -1;
+		}
+	}
+
+	// Fields ----------------------------------------------------------------
+	private ByteBuffer code;
+	private int codeLength;
+	private int offset;
+	private int length;
+	private int opcode;
+
+	// Class Methods ---------------------------------------------------------
+
+	// Instance Methods ------------------------------------------------------
+	/**
+	 * Constructor, for a cursor to be reset before use.
+	 */
+	public InstructionCursor() {
+		this.reset(ByteBuffer.allocate(0), 0);
+	}
+
+	/**
+	 * Constructor, placing the cursor before the first instruction of the code.
+	 *
+	 * @param code
+	 * @param codeLength
+	 */
+	public InstructionCursor(final ByteBuffer code, final int codeLength) {
+		this.reset(code, codeLength);
+	}
+
+	/**
+	 * Place the cursor before the first instruction of the code.
+	 *
+	 * @param code
+	 * @param codeLength
+	 */
+	public void reset(final ByteBuffer code, final int codeLength) {
+		this.code = code;
+		this.codeLength = codeLength;
+		this.offset = 0;
+		this.length = 0;
+		this.opcode = -1;
+	}
+
+	/**
+	 * Move to the next instruction, returning false if there are no more.
+	 *
+	 * @throws ClassFileException
+	 */
+	public boolean next() throws ClassFileException {
+		this.offset += this.length;
+		if (this.offset >= this.codeLength) {
+			this.offset = this.codeLength;
+			this.length = 0;
+			this.opcode = -1;
+			return false;
+		}
+		this.opcode = this.code.get(this.offset) & 0xFF;
+		final long bytes = 1 + this.getOperandBytes();
+		if (bytes > this.codeLength - this.offset) {
+			throw new ClassFileException("Truncated instruction at code offset " + this.offset);
+		}
+		this.length = (int) bytes;
+		return true;
+	}
+
+	/**
+	 * Return the opcode of the instruction.
+	 */
+	public int getOpcode() {
+		return this.opcode;
+	}
+
+	/**
+	 * Return the offset of the instruction in the code.
+	 */
+	public int getOffset() {
+		return this.offset;
+	}
+
+	/**
+	 * Return the offset in the code of the instruction's first operand byte.
+	 */
+	public int getOperandOffset() {
+		return this.offset + 1;
+	}
+
+	/**
+	 * Return the length of the instruction, including its opcode.
+	 */
+	public int getLength() {
+		return this.length;
+	}
+
+	/**
+	 * Return the first operand byte of the instruction, unsigned.
+	 */
+	public int getU1Operand() {
+		return this.code.get(this.offset + 1) & 0xFF;
+	}
+
+	/**
+	 * Return the first two operand bytes of the instruction, as an unsigned short.
+	 */
+	public int getU2Operand() {
+		return this.code.getShort(this.offset + 1) & 0xFFFF;
+	}
+
+	/**
+	 * Compute the number of operand bytes following the opcode.
+	 *
+	 * @throws ClassFileException
+	 */
+	private long getOperandBytes() throws ClassFileException {
+		final int bytes = InstructionCursor.OPERAND_BYTES[this.opcode];
+		if (bytes >= 0) {
+			return bytes;
+		}
+
+		// Variable length instructions, whose size fields must lie within the code
+		final int pad = 3 - this.offset % 4; // 0-3 byte pad
+		switch (this.opcode) {
+		case 0xAA: // tableswitch
+			this.require(pad + 12);
+			final int low = this.code.getInt(this.offset + 1 + pad + 4);
+			final int high = this.code.getInt(this.offset + 1 + pad + 8);
+			// default, low and high values, and jump offsets
+			return pad + 12 + (high >= low ? ((long) high - low + 1) * 4 : 0);
+		case 0xAB: // lookupswitch
+			this.require(pad + 8);
+			final int npairs = this.code.getInt(this.offset + 1 + pad + 4);
+			// default and npairs values, and match / offset pairs
+			return pad + 8 + (npairs >= 0 ? (long) npairs * 8 : 0);
+		case 0xC4: // wide
+			this.require(1);
+			final int wideOpcode = this.code.get(this.offset + 1) & 0xFF;
+			switch (wideOpcode) {
+			case 0x15: // iload
+			case 0x16: // lload
+			case 0x17: // fload
+			case 0x18: // dload
+			case 0x19: // aload
+			case 0x36: // istore
+			case 0x37: // lstore
+			case 0x38: // fstore
+			case 0x39: // dstore
+			case 0x3A: // astore
+			case 0xA9: // ret
+				return 3;
+			case 0x84: // iinc
+				return 5;
+			default:
+				throw new ClassFileException("Illegal wide opcode");
+			}
+		default:
+			throw new ClassFileException("Illegal variable length opcode");
+		}
+	}
+
+	/**
+	 * Check that the given number of operand bytes lie within the code.
+	 *
+	 * @param bytes
+	 * @throws ClassFileException
+	 */
+	private void require(final int bytes) throws ClassFileException {
+		if (bytes > this.codeLength - this.offset - 1) {
+			throw new ClassFileException("Truncated instruction at code offset " + this.offset);
+		}
+	}
+}
@@ -15,8 +15,6 @@ public class InvokeDynamicCpInfo extends CpInfo {
 	// Constants -------------------------------------------------------------
 
 	// Fields ----------------------------------------------------------------
-	private int u2bootstrapMethodAttrIndex;
-	private int u2nameAndTypeIndex;
 
 	// Class Methods ---------------------------------------------------------
 
@@ -32,14 +30,14 @@ public class InvokeDynamicCpInfo extends CpInfo {
 	 * Return the bootstrap-method-attr index.
 	 */
 	protected int getBootstrapMethodAttrIndex() {
-		return this.u2bootstrapMethodAttrIndex;
+		return this.getOperand1();
 	}
 
 	/**
 	 * Return the name-and-type index.
 	 */
 	protected int getNameAndTypeIndex() {
-		return this.u2nameAndTypeIndex;
+		return this.getOperand2();
 	}
 
 	/**
@@ -48,7 +46,7 @@ public class InvokeDynamicCpInfo extends CpInfo {
 	 * @param index
 	 */
 	protected void setNameAndTypeIndex(final int index) {
-		this.u2nameAndTypeIndex = index;
+		this.setOperand2(index);
 	}
 
 	/**
@@ -58,7 +56,7 @@ public class InvokeDynamicCpInfo extends CpInfo {
 	 * @throws ClassFileException
 	 */
 	public String getName(final ClassFile cf) throws ClassFileException {
-		final NameAndTypeCpInfo ntCpInfo = (NameAndTypeCpInfo) cf.getCpEntry(this.u2nameAndTypeIndex);
+		final NameAndTypeCpInfo ntCpInfo = (NameAndTypeCpInfo) cf.getCpEntry(this.getNameAndTypeIndex());
 		return cf.getUtf8(ntCpInfo.getNameIndex());
 	}
 
@@ -69,30 +67,30 @@ public class InvokeDynamicCpInfo extends CpInfo {
 	 * @throws ClassFileException
 	 */
 	public String getDescriptor(final ClassFile cf) throws ClassFileException {
-		final NameAndTypeCpInfo ntCpInfo = (NameAndTypeCpInfo) cf.getCpEntry(this.u2nameAndTypeIndex);
+		final NameAndTypeCpInfo ntCpInfo = (NameAndTypeCpInfo) cf.getCpEntry(this.getNameAndTypeIndex());
 		return cf.getUtf8(ntCpInfo.getDescriptorIndex());
 	}
 
 	/**
-	 * Check for N+T references to constant pool and mark them.
+	 * Read the 'info' data following the u1tag byte.
 	 * 
+	 * @throws IOException
 	 * @throws ClassFileException
 	 */
 	@Override
-	protected void markNTRefs(final ConstantPool pool) throws ClassFileException {
-		pool.incRefCount(this.u2nameAndTypeIndex);
+	protected void readInfo(final DataInput din) throws IOException, ClassFileException {
+		this.setOperand1(din.readUnsignedShort());
+		this.setOperand2(din.readUnsignedShort());
 	}
 
 	/**
-	 * Read the 'info' data following the u1tag byte.
+	 * Return the length in bytes of the 'info' data following the u1tag byte.
 	 * 
-	 * @throws IOException
-	 * @throws ClassFileException
+	 * @see CpInfo#getInfoLength()
 	 */
 	@Override
-	protected void readInfo(final DataInput din) throws IOException, ClassFileException {
-		this.u2bootstrapMethodAttrIndex = din.readUnsignedShort();
-		this.u2nameAndTypeIndex = din.readUnsignedShort();
+	protected int getInfoLength() {
+		return 4;
 	}
 
 	/**
@@ -103,7 +101,7 @@ public class InvokeDynamicCpInfo extends CpInfo {
 	 */
 	@Override
 	protected void writeInfo(final DataOutput dout) throws IOException, ClassFileException {
-		dout.writeShort(this.u2bootstrapMethodAttrIndex);
-		dout.writeShort(this.u2nameAndTypeIndex);
+		dout.writeShort(this.getOperand1());
+		dout.writeShort(this.getOperand2());
 	}
 }
@@ -20,13 +20,14 @@
 package com.rl.obf.classfile;
 
 import java.io.DataInput;
-import java.io.DataOutput;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
- * Representation of an attribute.
+ * Representation of an attribute. The table needs no remapping, so it is kept as
+ * read, written back unchanged, and only decoded if asked for.
  *
  * @author Mark Welsh
  */
@@ -34,7 +35,7 @@ public class LineNumberTableAttrInfo extends AttrInfo {
 	// Constants -------------------------------------------------------------
 
 	// Fields ----------------------------------------------------------------
-	private List<LineNumberInfo> lineNumberTable;
+	private List<LineNumberInfo> lineNumberTable = null;
 
 	// Class Methods ---------------------------------------------------------
 
@@ -59,31 +60,35 @@ public class LineNumberTableAttrInfo extends AttrInfo {
 	}
 
 	/**
-	 * Read the data following the header.
+	 * Renumber the references in the 'info' data to Constant Pool entries, of which
+	 * there are none.
 	 * 
-	 * @throws IOException
 	 * @throws ClassFileException
 	 */
 	@Override
-	protected void readInfo(final DataInput din) throws IOException, ClassFileException {
-		final int u2lineNumberTableLength = din.readUnsignedShort();
-		this.lineNumberTable = new ArrayList<>(u2lineNumberTableLength);
-		for (int i = 0; i < u2lineNumberTableLength; i++) {
-			this.lineNumberTable.add(LineNumberInfo.create(din));
-		}
+	protected void renumberCpRefsInInfo(final CpIndexMapper mapper) throws ClassFileException {
+		// do nothing
 	}
 
 	/**
-	 * Export data following the header to a DataOutput stream.
+	 * Return the line number table, decoding it on first use.
 	 * 
-	 * @throws IOException
 	 * @throws ClassFileException
 	 */
-	@Override
-	public void writeInfo(final DataOutput dout) throws IOException, ClassFileException {
-		dout.writeShort(this.lineNumberTable.size());
-		for (final LineNumberInfo ln : this.lineNumberTable) {
-			ln.write(dout);
+	public List<LineNumberInfo> getLineNumberTable() throws ClassFileException {
+		if (this.lineNumberTable == null) {
+			try {
+				final DataInput din = this.getInfoInput();
+				final int u2lineNumberTableLength = din.readUnsignedShort();
+				final List<LineNumberInfo> table = new ArrayList<>(u2lineNumberTableLength);
+				for (int i = 0; i < u2lineNumberTableLength; i++) {
+					table.add(LineNumberInfo.create(din));
+				}
+				this.lineNumberTable = Collections.unmodifiableList(table);
+			} catch (final IOException e) {
+				throw new ClassFileException("Truncated LineNumberTable attribute");
+			}
 		}
+		return this.lineNumberTable;
 	}
 }
@@ -99,6 +99,17 @@ public class LocalVariableInfo {
 		pool.incRefCount(this.u2descriptorIndex);
 	}
 
+	/**
+	 * Renumber the references to Constant Pool entries.
+	 * 
+	 * @param mapper
+	 * @throws ClassFileException
+	 */
+	protected void renumberCpRefs(final CpIndexMapper mapper) throws ClassFileException {
+		this.u2nameIndex = mapper.mapIndex(this.u2nameIndex);
+		this.u2descriptorIndex = mapper.mapIndex(this.u2descriptorIndex);
+	}
+
 	/**
 	 * @param din
 	 * @throws IOException
@@ -81,6 +81,17 @@ public class LocalVariableTypeInfo {
 		pool.incRefCount(this.u2signatureIndex);
 	}
 
+	/**
+	 * Renumber the references to Constant Pool entries.
+	 * 
+	 * @param mapper
+	 * @throws ClassFileException
+	 */
+	protected void renumberCpRefs(final CpIndexMapper mapper) throws ClassFileException {
+		this.u2nameIndex = mapper.mapIndex(this.u2nameIndex);
+		this.u2signatureIndex = mapper.mapIndex(this.u2signatureIndex);
+	}
+
 	/**
 	 * @param din
 	 * @throws IOException
@@ -71,6 +71,18 @@ public class LocalVariableTypeTableAttrInfo extends AttrInfo {
 		}
 	}
 
+	/**
+	 * Renumber the references in the 'info' data to Constant Pool entries.
+	 * 
+	 * @throws ClassFileException
+	 */
+	@Override
+	protected void renumberCpRefsInInfo(final CpIndexMapper mapper) throws ClassFileException {
+		for (final LocalVariableTypeInfo lvt : this.localVariableTypeTable) {
+			lvt.renumberCpRefs(mapper);
+		}
+	}
+
 	/**
 	 * Read the data following the header.
 	 * 
@@ -32,8 +32,6 @@ public class LongCpInfo extends CpInfo {
 	// Constants -------------------------------------------------------------
 
 	// Fields ----------------------------------------------------------------
-	private int u4highBytes;
-	private int u4lowBytes;
 
 	// Class Methods ---------------------------------------------------------
 
@@ -53,8 +51,18 @@ public class LongCpInfo extends CpInfo {
 	 */
 	@Override
 	protected void readInfo(final DataInput din) throws IOException, ClassFileException {
-		this.u4highBytes = din.readInt();
-		this.u4lowBytes = din.readInt();
+		this.setOperand1(din.readInt());
+		this.setOperand2(din.readInt());
+	}
+
+	/**
+	 * Return the length in bytes of the 'info' data following the u1tag byte.
+	 * 
+	 * @see CpInfo#getInfoLength()
+	 */
+	@Override
+	protected int getInfoLength() {
+		return 8;
 	}
 
 	/**
@@ -65,7 +73,7 @@ public class LongCpInfo extends CpInfo {
 	 */
 	@Override
 	protected void writeInfo(final DataOutput dout) throws IOException, ClassFileException {
-		dout.writeInt(this.u4highBytes);
-		dout.writeInt(this.u4lowBytes);
+		dout.writeInt(this.getOperand1());
+		dout.writeInt(this.getOperand2());
 	}
 }
@@ -114,6 +114,46 @@ public class MemberValueInfo {
 		}
 	}
 
+	/**
+	 * Renumber the references to Constant Pool entries.
+	 * 
+	 * @param mapper
+	 * @throws ClassFileException
+	 */
+	protected void renumberCpRefs(final CpIndexMapper mapper) throws ClassFileException {
+		switch (this.u1tag) {
+		case 'B':
+		case 'C':
+		case 'D':
+		case 'F':
+		case 'I':
+		case 'J':
+		case 'S':
+		case 'Z':
+		case 's':
+			this.u2constValueIndex = mapper.mapIndex(this.u2constValueIndex);
+			break;
+		case 'e':
+			this.u2typeNameIndex = mapper.mapIndex(this.u2typeNameIndex);
+			this.u2constNameIndex = mapper.mapIndex(this.u2constNameIndex);
+			break;
+		case 'c':
+			this.u2classInfoIndex = mapper.mapIndex(this.u2classInfoIndex);
+			break;
+		case '@':
+			this.annotationValue.renumberCpRefs(mapper);
+			break;
+		case '[':
+			for (final MemberValueInfo mv : this.values) {
+				mv.renumberCpRefs(mapper);
+			}
+			break;
+		default:
+			throw new ClassFileException(
+					"Illegal tag value in annotation attribute member_value structure: " + this.u1tag);
+		}
+	}
+
 	/**
 	 * @param din
 	 * @throws IOException
@@ -72,6 +72,17 @@ public class MemberValuePairInfo {
 		this.value.markUtf8Refs(pool);
 	}
 
+	/**
+	 * Renumber the references to Constant Pool entries.
+	 * 
+	 * @param mapper
+	 * @throws ClassFileException
+	 */
+	protected void renumberCpRefs(final CpIndexMapper mapper) throws ClassFileException {
+		this.u2memberNameIndex = mapper.mapIndex(this.u2memberNameIndex);
+		this.value.renumberCpRefs(mapper);
+	}
+
 	/**
 	 * @param din
 	 * @throws IOException
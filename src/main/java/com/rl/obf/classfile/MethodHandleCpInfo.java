@@ -15,8 +15,6 @@ public class MethodHandleCpInfo extends CpInfo {
 	// Constants -------------------------------------------------------------
 
 	// Fields ----------------------------------------------------------------
-	private int u1referenceKind;
-	private int u2referenceIndex;
 
 	// Class Methods ---------------------------------------------------------
 
@@ -32,14 +30,14 @@ public class MethodHandleCpInfo extends CpInfo {
 	 * Return the type of the reference.
 	 */
 	protected int getReferenceKind() {
-		return this.u1referenceKind;
+		return this.getOperand1();
 	}
 
 	/**
 	 * Return the reference index.
 	 */
 	protected int getReferenceIndex() {
-		return this.u2referenceIndex;
+		return this.getOperand2();
 	}
 
 	/**
@@ -49,7 +47,7 @@ public class MethodHandleCpInfo extends CpInfo {
 	 * @throws ClassFileException
 	 */
 	public String getName(final ClassFile cf) throws ClassFileException {
-		final RefCpInfo refCpInfo = (RefCpInfo) cf.getCpEntry(this.u2referenceIndex);
+		final RefCpInfo refCpInfo = (RefCpInfo) cf.getCpEntry(this.getReferenceIndex());
 		return refCpInfo.getName(cf);
 	}
 
@@ -60,7 +58,7 @@ public class MethodHandleCpInfo extends CpInfo {
 	 * @throws ClassFileException
 	 */
 	public String getDescriptor(final ClassFile cf) throws ClassFileException {
-		final RefCpInfo refCpInfo = (RefCpInfo) cf.getCpEntry(this.u2referenceIndex);
+		final RefCpInfo refCpInfo = (RefCpInfo) cf.getCpEntry(this.getReferenceIndex());
 		return refCpInfo.getDescriptor(cf);
 	}
 
@@ -72,8 +70,18 @@ public class MethodHandleCpInfo extends CpInfo {
 	 */
 	@Override
 	protected void readInfo(final DataInput din) throws IOException, ClassFileException {
-		this.u1referenceKind = din.readUnsignedByte();
-		this.u2referenceIndex = din.readUnsignedShort();
+		this.setOperand1(din.readUnsignedByte());
+		this.setOperand2(din.readUnsignedShort());
+	}
+
+	/**
+	 * Return the length in bytes of the 'info' data following the u1tag byte.
+	 * 
+	 * @see CpInfo#getInfoLength()
+	 */
+	@Override
+	protected int getInfoLength() {
+		return 3;
 	}
 
 	/**
@@ -84,8 +92,8 @@ public class MethodHandleCpInfo extends CpInfo {
 	 */
 	@Override
 	protected void writeInfo(final DataOutput dout) throws IOException, ClassFileException {
-		dout.writeByte(this.u1referenceKind);
-		dout.writeShort(this.u2referenceIndex);
+		dout.writeByte(this.getOperand1());
+		dout.writeShort(this.getOperand2());
 	}
 
 	/**
@@ -95,7 +103,7 @@ public class MethodHandleCpInfo extends CpInfo {
 	 * @throws ClassFileException
 	 */
 	public String getClassName(final ClassFile cf) throws ClassFileException {
-		final RefCpInfo refCpInfo = (RefCpInfo) cf.getCpEntry(this.u2referenceIndex);
+		final RefCpInfo refCpInfo = (RefCpInfo) cf.getCpEntry(this.getReferenceIndex());
 		return refCpInfo.getClassName(cf);
 	}
 }
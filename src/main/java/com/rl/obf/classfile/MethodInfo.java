@@ -50,6 +50,25 @@ public class MethodInfo extends ClassItemInfo {
 		return mi;
 	}
 
+	/**
+	 * Create a new MethodInfo from the file format data in the DataInput stream,
+	 * reading only what is needed to build the class tree.
+	 * 
+	 * @param din
+	 * @param cf
+	 * @throws IOException
+	 * @throws ClassFileException
+	 */
+	public static MethodInfo createSkeleton(final DataInput din, final ClassFile cf)
+			throws IOException, ClassFileException {
+		if (din == null) {
+			throw new IOException("No input stream was provided.");
+		}
+		final MethodInfo mi = new MethodInfo(cf);
+		mi.readSkeleton(din);
+		return mi;
+	}
+
 	// Instance Methods ------------------------------------------------------
 	/**
 	 * Constructor
@@ -15,7 +15,6 @@ public class MethodTypeCpInfo extends CpInfo {
 	// Constants -------------------------------------------------------------
 
 	// Fields ----------------------------------------------------------------
-	private int u2descriptorIndex;
 
 	// Class Methods ---------------------------------------------------------
 
@@ -31,7 +30,7 @@ public class MethodTypeCpInfo extends CpInfo {
 	 * Return the descriptor index.
 	 */
 	protected int getDescriptorIndex() {
-		return this.u2descriptorIndex;
+		return this.getOperand1();
 	}
 
 	/**
@@ -40,28 +39,28 @@ public class MethodTypeCpInfo extends CpInfo {
 	 * @param index
 	 */
 	protected void setDescriptorIndex(final int index) {
-		this.u2descriptorIndex = index;
+		this.setOperand1(index);
 	}
 
 	/**
-	 * Check for Utf8 references to constant pool and mark them.
+	 * Read the 'info' data following the u1tag byte.
 	 * 
+	 * @throws IOException
 	 * @throws ClassFileException
 	 */
 	@Override
-	protected void markUtf8Refs(final ConstantPool pool) throws ClassFileException {
-		pool.incRefCount(this.u2descriptorIndex);
+	protected void readInfo(final DataInput din) throws IOException, ClassFileException {
+		this.setOperand1(din.readUnsignedShort());
 	}
 
 	/**
-	 * Read the 'info' data following the u1tag byte.
+	 * Return the length in bytes of the 'info' data following the u1tag byte.
 	 * 
-	 * @throws IOException
-	 * @throws ClassFileException
+	 * @see CpInfo#getInfoLength()
 	 */
 	@Override
-	protected void readInfo(final DataInput din) throws IOException, ClassFileException {
-		this.u2descriptorIndex = din.readUnsignedShort();
+	protected int getInfoLength() {
+		return 2;
 	}
 
 	/**
@@ -72,7 +71,7 @@ public class MethodTypeCpInfo extends CpInfo {
 	 */
 	@Override
 	protected void writeInfo(final DataOutput dout) throws IOException, ClassFileException {
-		dout.writeShort(this.u2descriptorIndex);
+		dout.writeShort(this.getOperand1());
 	}
 
 }
@@ -32,8 +32,6 @@ public class NameAndTypeCpInfo extends CpInfo implements Cloneable {
 	// Constants -------------------------------------------------------------
 
 	// Fields ----------------------------------------------------------------
-	private int u2nameIndex;
-	private int u2descriptorIndex;
 
 	// Class Methods ---------------------------------------------------------
 
@@ -51,9 +49,8 @@ public class NameAndTypeCpInfo extends CpInfo implements Cloneable {
 	@Override
 	public Object clone() {
 		final NameAndTypeCpInfo cloneInfo = new NameAndTypeCpInfo();
-		cloneInfo.u2nameIndex = this.u2nameIndex;
-		cloneInfo.u2descriptorIndex = this.u2descriptorIndex;
-		cloneInfo.resetRefCount();
+		cloneInfo.setOperand1(this.getOperand1());
+		cloneInfo.setOperand2(this.getOperand2());
 		return cloneInfo;
 	}
 
@@ -61,7 +58,7 @@ public class NameAndTypeCpInfo extends CpInfo implements Cloneable {
 	 * Return the name index.
 	 */
 	protected int getNameIndex() {
-		return this.u2nameIndex;
+		return this.getOperand1();
 	}
 
 	/**
@@ -70,14 +67,14 @@ public class NameAndTypeCpInfo extends CpInfo implements Cloneable {
 	 * @param index
 	 */
 	protected void setNameIndex(final int index) {
-		this.u2nameIndex = index;
+		this.setOperand1(index);
 	}
 
 	/**
 	 * Return the descriptor index.
 	 */
 	protected int getDescriptorIndex() {
-		return this.u2descriptorIndex;
+		return this.getOperand2();
 	}
 
 	/**
@@ -86,30 +83,29 @@ public class NameAndTypeCpInfo extends CpInfo implements Cloneable {
 	 * @param index
 	 */
 	protected void setDescriptorIndex(final int index) {
-		this.u2descriptorIndex = index;
+		this.setOperand2(index);
 	}
 
 	/**
-	 * Check for Utf8 references to constant pool and mark them.
+	 * Read the 'info' data following the u1tag byte.
 	 * 
+	 * @throws IOException
 	 * @throws ClassFileException
 	 */
 	@Override
-	protected void markUtf8Refs(final ConstantPool pool) throws ClassFileException {
-		pool.incRefCount(this.u2nameIndex);
-		pool.incRefCount(this.u2descriptorIndex);
+	protected void readInfo(final DataInput din) throws IOException, ClassFileException {
+		this.setOperand1(din.readUnsignedShort());
+		this.setOperand2(din.readUnsignedShort());
 	}
 
 	/**
-	 * Read the 'info' data following the u1tag byte.
+	 * Return the length in bytes of the 'info' data following the u1tag byte.
 	 * 
-	 * @throws IOException
-	 * @throws ClassFileException
+	 * @see CpInfo#getInfoLength()
 	 */
 	@Override
-	protected void readInfo(final DataInput din) throws IOException, ClassFileException {
-		this.u2nameIndex = din.readUnsignedShort();
-		this.u2descriptorIndex = din.readUnsignedShort();
+	protected int getInfoLength() {
+		return 4;
 	}
 
 	/**
@@ -120,7 +116,7 @@ public class NameAndTypeCpInfo extends CpInfo implements Cloneable {
 	 */
 	@Override
 	protected void writeInfo(final DataOutput dout) throws IOException, ClassFileException {
-		dout.writeShort(this.u2nameIndex);
-		dout.writeShort(this.u2descriptorIndex);
+		dout.writeShort(this.getOperand1());
+		dout.writeShort(this.getOperand2());
 	}
 }
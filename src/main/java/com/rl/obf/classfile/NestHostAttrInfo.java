@@ -16,15 +16,12 @@
  */
 package com.rl.obf.classfile;
 
-import java.io.DataInput;
-import java.io.DataOutput;
 import java.io.IOException;
 
 public class NestHostAttrInfo extends AttrInfo {
 	// Constants -------------------------------------------------------------
 
 	// Fields ----------------------------------------------------------------
-	private int indexHostClass;
 
 	// Class Methods ---------------------------------------------------------
 
@@ -49,27 +46,26 @@ public class NestHostAttrInfo extends AttrInfo {
 	}
 
 	/**
-	 * Read the data following the header; over-ride this in sub-classes.
+	 * Renumber the references in the 'info' data to Constant Pool entries.
 	 * 
-	 * @param din
-	 * @throws IOException
 	 * @throws ClassFileException
 	 */
 	@Override
-	protected void readInfo(final DataInput din) throws IOException, ClassFileException {
-		this.indexHostClass = din.readUnsignedShort();
+	protected void renumberCpRefsInInfo(final CpIndexMapper mapper) throws ClassFileException {
+		this.renumberInfoIndex(0, mapper);
 	}
 
 	/**
-	 * Export data following the header to a DataOutput stream; over-ride this in
-	 * sub-classes.
+	 * Return the constant pool index of the host class, read from the attribute
+	 * data, which is kept as read and written back unchanged.
 	 * 
-	 * @param dout
-	 * @throws IOException
 	 * @throws ClassFileException
 	 */
-	@Override
-	public void writeInfo(final DataOutput dout) throws IOException, ClassFileException {
-		dout.writeShort(this.indexHostClass);
+	public int getHostClassIndex() throws ClassFileException {
+		try {
+			return this.getInfoInput().readUnsignedShort();
+		} catch (final IOException e) {
+			throw new ClassFileException("Truncated NestHost attribute");
+		}
 	}
 }
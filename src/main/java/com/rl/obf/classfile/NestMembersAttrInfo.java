@@ -50,6 +50,18 @@ public class NestMembersAttrInfo extends AttrInfo {
 		return ClassConstants.ATTR_NestMembers;
 	}
 
+	/**
+	 * Renumber the references in the 'info' data to Constant Pool entries.
+	 * 
+	 * @throws ClassFileException
+	 */
+	@Override
+	protected void renumberCpRefsInInfo(final CpIndexMapper mapper) throws ClassFileException {
+		for (int i = 0; i < this.classes.size(); i++) {
+			this.classes.set(i, mapper.mapIndex(this.classes.get(i)));
+		}
+	}
+
 	/**
 	 * Read the data following the header; over-ride this in sub-classes.
 	 * 
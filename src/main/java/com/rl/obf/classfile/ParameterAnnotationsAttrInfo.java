@@ -63,6 +63,18 @@ abstract public class ParameterAnnotationsAttrInfo extends AttrInfo {
 		}
 	}
 
+	/**
+	 * Renumber the references in the 'info' data to Constant Pool entries.
+	 * 
+	 * @throws ClassFileException
+	 */
+	@Override
+	protected void renumberCpRefsInInfo(final CpIndexMapper mapper) throws ClassFileException {
+		for (final ParameterAnnotationsInfo pa : this.parameterAnnotationsTable) {
+			pa.renumberCpRefs(mapper);
+		}
+	}
+
 	/**
 	 * Read the data following the header.
 	 * 
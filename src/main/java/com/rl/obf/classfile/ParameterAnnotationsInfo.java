@@ -67,6 +67,18 @@ public class ParameterAnnotationsInfo {
 		}
 	}
 
+	/**
+	 * Renumber the references to Constant Pool entries.
+	 * 
+	 * @param mapper
+	 * @throws ClassFileException
+	 */
+	protected void renumberCpRefs(final CpIndexMapper mapper) throws ClassFileException {
+		for (final AnnotationInfo a : this.annotationTable) {
+			a.renumberCpRefs(mapper);
+		}
+	}
+
 	/**
 	 * @param din
 	 * @throws IOException
@@ -32,8 +32,6 @@ abstract public class RefCpInfo extends CpInfo {
 	// Constants -------------------------------------------------------------
 
 	// Fields ----------------------------------------------------------------
-	private int u2classIndex;
-	private int u2nameAndTypeIndex;
 
 	// Class Methods ---------------------------------------------------------
 
@@ -51,14 +49,14 @@ abstract public class RefCpInfo extends CpInfo {
 	 * Return the class index.
 	 */
 	protected int getClassIndex() {
-		return this.u2classIndex;
+		return this.getOperand1();
 	}
 
 	/**
 	 * Return the name-and-type index.
 	 */
 	protected int getNameAndTypeIndex() {
-		return this.u2nameAndTypeIndex;
+		return this.getOperand2();
 	}
 
 	/**
@@ -67,7 +65,7 @@ abstract public class RefCpInfo extends CpInfo {
 	 * @param index
 	 */
 	protected void setNameAndTypeIndex(final int index) {
-		this.u2nameAndTypeIndex = index;
+		this.setOperand2(index);
 	}
 
 	/**
@@ -77,7 +75,7 @@ abstract public class RefCpInfo extends CpInfo {
 	 * @throws ClassFileException
 	 */
 	public String getClassName(final ClassFile cf) throws ClassFileException {
-		final ClassCpInfo entry = (ClassCpInfo) cf.getCpEntry(this.u2classIndex);
+		final ClassCpInfo entry = (ClassCpInfo) cf.getCpEntry(this.getClassIndex());
 		return entry.getName(cf);
 	}
 
@@ -88,7 +86,7 @@ abstract public class RefCpInfo extends CpInfo {
 	 * @throws ClassFileException
 	 */
 	public String getName(final ClassFile cf) throws ClassFileException {
-		final NameAndTypeCpInfo ntCpInfo = (NameAndTypeCpInfo) cf.getCpEntry(this.u2nameAndTypeIndex);
+		final NameAndTypeCpInfo ntCpInfo = (NameAndTypeCpInfo) cf.getCpEntry(this.getNameAndTypeIndex());
 		return cf.getUtf8(ntCpInfo.getNameIndex());
 	}
 
@@ -99,30 +97,30 @@ abstract public class RefCpInfo extends CpInfo {
 	 * @throws ClassFileException
 	 */
 	public String getDescriptor(final ClassFile cf) throws ClassFileException {
-		final NameAndTypeCpInfo ntCpInfo = (NameAndTypeCpInfo) cf.getCpEntry(this.u2nameAndTypeIndex);
+		final NameAndTypeCpInfo ntCpInfo = (NameAndTypeCpInfo) cf.getCpEntry(this.getNameAndTypeIndex());
 		return cf.getUtf8(ntCpInfo.getDescriptorIndex());
 	}
 
 	/**
-	 * Check for N+T references to constant pool and mark them.
+	 * Read the 'info' data following the u1tag byte.
 	 * 
+	 * @throws IOException
 	 * @throws ClassFileException
 	 */
 	@Override
-	protected void markNTRefs(final ConstantPool pool) throws ClassFileException {
-		pool.incRefCount(this.u2nameAndTypeIndex);
+	protected void readInfo(final DataInput din) throws IOException, ClassFileException {
+		this.setOperand1(din.readUnsignedShort());
+		this.setOperand2(din.readUnsignedShort());
 	}
 
 	/**
-	 * Read the 'info' data following the u1tag byte.
+	 * Return the length in bytes of the 'info' data following the u1tag byte.
 	 * 
-	 * @throws IOException
-	 * @throws ClassFileException
+	 * @see CpInfo#getInfoLength()
 	 */
 	@Override
-	protected void readInfo(final DataInput din) throws IOException, ClassFileException {
-		this.u2classIndex = din.readUnsignedShort();
-		this.u2nameAndTypeIndex = din.readUnsignedShort();
+	protected int getInfoLength() {
+		return 4;
 	}
 
 	/**
@@ -133,7 +131,7 @@ abstract public class RefCpInfo extends CpInfo {
 	 */
 	@Override
 	protected void writeInfo(final DataOutput dout) throws IOException, ClassFileException {
-		dout.writeShort(this.u2classIndex);
-		dout.writeShort(this.u2nameAndTypeIndex);
+		dout.writeShort(this.getOperand1());
+		dout.writeShort(this.getOperand2());
 	}
 }
@@ -67,6 +67,16 @@ public class SignatureAttrInfo extends AttrInfo {
 		pool.incRefCount(this.u2signatureIndex);
 	}
 
+	/**
+	 * Renumber the references in the 'info' data to Constant Pool entries.
+	 * 
+	 * @throws ClassFileException
+	 */
+	@Override
+	protected void renumberCpRefsInInfo(final CpIndexMapper mapper) throws ClassFileException {
+		this.u2signatureIndex = mapper.mapIndex(this.u2signatureIndex);
+	}
+
 	/**
 	 * Read the data following the header.
 	 *
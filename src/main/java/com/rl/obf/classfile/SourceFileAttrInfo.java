@@ -67,6 +67,16 @@ public class SourceFileAttrInfo extends AttrInfo {
 		pool.incRefCount(this.u2sourceFileIndex);
 	}
 
+	/**
+	 * Renumber the references in the 'info' data to Constant Pool entries.
+	 * 
+	 * @throws ClassFileException
+	 */
+	@Override
+	protected void renumberCpRefsInInfo(final CpIndexMapper mapper) throws ClassFileException {
+		this.u2sourceFileIndex = mapper.mapIndex(this.u2sourceFileIndex);
+	}
+
 	/**
 	 * Read the data following the header.
 	 * 
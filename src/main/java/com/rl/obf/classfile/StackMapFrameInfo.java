@@ -118,6 +118,24 @@ public class StackMapFrameInfo {
 		}
 	}
 
+	/**
+	 * Renumber the references to Constant Pool entries, returning whether any
+	 * changed.
+	 * 
+	 * @param mapper
+	 * @throws ClassFileException
+	 */
+	protected boolean renumberCpRefs(final CpIndexMapper mapper) throws ClassFileException {
+		boolean changed = false;
+		for (final VerificationTypeInfo vt : this.stack) {
+			changed |= vt.renumberCpRefs(mapper);
+		}
+		for (final VerificationTypeInfo vt : this.locals) {
+			changed |= vt.renumberCpRefs(mapper);
+		}
+		return changed;
+	}
+
 	/**
 	 * Export the representation to a DataOutput stream.
 	 * 
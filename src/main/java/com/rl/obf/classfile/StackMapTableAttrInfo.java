@@ -19,14 +19,19 @@
 
 package com.rl.obf.classfile;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataInput;
-import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
- * Representation of an attribute.
+ * Representation of an attribute. The frames need no remapping, and refer only
+ * to Class entries of the constant pool, which are not reference counted; so
+ * they are kept as read, written back unchanged, and only decoded if asked for.
  *
  * @author Mark Welsh
  */
@@ -34,7 +39,7 @@ public class StackMapTableAttrInfo extends AttrInfo {
 	// Constants -------------------------------------------------------------
 
 	// Fields ----------------------------------------------------------------
-	private List<StackMapFrameInfo> entries;
+	private List<StackMapFrameInfo> entries = null;
 
 	// Class Methods ---------------------------------------------------------
 
@@ -59,45 +64,52 @@ public class StackMapTableAttrInfo extends AttrInfo {
 	}
 
 	/**
-	 * Check for Utf8 references in the 'info' data to the constant pool and mark
-	 * them.
+	 * Renumber the references in the frames to Constant Pool entries, encoding
+	 * them again only if any changed.
 	 * 
 	 * @throws ClassFileException
 	 */
 	@Override
-	protected void markUtf8RefsInInfo(final ConstantPool pool) throws ClassFileException {
-		for (final StackMapFrameInfo smf : this.entries) {
-			smf.markUtf8Refs(pool);
+	protected void renumberCpRefsInInfo(final CpIndexMapper mapper) throws ClassFileException {
+		boolean changed = false;
+		for (final StackMapFrameInfo smf : this.getEntries()) {
+			changed |= smf.renumberCpRefs(mapper);
 		}
-	}
-
-	/**
-	 * Read the data following the header.
-	 * 
-	 * @throws IOException
-	 * @throws ClassFileException
-	 */
-	@Override
-	protected void readInfo(final DataInput din) throws IOException, ClassFileException {
-		final int u2numberOfEntries = din.readUnsignedShort();
-		this.entries = new ArrayList<>(u2numberOfEntries);
-		for (int i = 0; i < u2numberOfEntries; i++) {
-			final StackMapFrameInfo smf = StackMapFrameInfo.create(din);
-			this.entries.add(smf);
+		if (changed) {
+			try {
+				final ByteArrayOutputStream bytes = new ByteArrayOutputStream(this.getAttrInfoLength());
+				final DataOutputStream dout = new DataOutputStream(bytes);
+				dout.writeShort(this.entries.size());
+				for (final StackMapFrameInfo smf : this.entries) {
+					smf.write(dout);
+				}
+				dout.flush();
+				this.setInfo(ByteBuffer.wrap(bytes.toByteArray()));
+			} catch (final IOException e) {
+				throw new ClassFileException(e);
+			}
 		}
 	}
 
 	/**
-	 * Export data following the header to a DataOutput stream.
+	 * Return the frames, decoding them on first use.
 	 * 
-	 * @throws IOException
 	 * @throws ClassFileException
 	 */
-	@Override
-	public void writeInfo(final DataOutput dout) throws IOException, ClassFileException {
-		dout.writeShort(this.entries.size());
-		for (final StackMapFrameInfo smf : this.entries) {
-			smf.write(dout);
+	public List<StackMapFrameInfo> getEntries() throws ClassFileException {
+		if (this.entries == null) {
+			try {
+				final DataInput din = this.getInfoInput();
+				final int u2numberOfEntries = din.readUnsignedShort();
+				final List<StackMapFrameInfo> frames = new ArrayList<>(u2numberOfEntries);
+				for (int i = 0; i < u2numberOfEntries; i++) {
+					frames.add(StackMapFrameInfo.create(din));
+				}
+				this.entries = Collections.unmodifiableList(frames);
+			} catch (final IOException e) {
+				throw new ClassFileException("Truncated StackMapTable attribute");
+			}
 		}
+		return this.entries;
 	}
 }
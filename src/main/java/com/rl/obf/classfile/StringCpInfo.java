@@ -32,7 +32,6 @@ public class StringCpInfo extends CpInfo {
 	// Constants -------------------------------------------------------------
 
 	// Fields ----------------------------------------------------------------
-	private int u2stringIndex;
 
 	// Class Methods ---------------------------------------------------------
 
@@ -48,7 +47,7 @@ public class StringCpInfo extends CpInfo {
 	 * Return the string index.
 	 */
 	protected int getStringIndex() {
-		return this.u2stringIndex;
+		return this.getOperand1();
 	}
 
 	/**
@@ -57,28 +56,28 @@ public class StringCpInfo extends CpInfo {
 	 * @param index
 	 */
 	protected void setStringIndex(final int index) {
-		this.u2stringIndex = index;
+		this.setOperand1(index);
 	}
 
 	/**
-	 * Check for Utf8 references to constant pool and mark them.
+	 * Read the 'info' data following the u1tag byte.
 	 * 
+	 * @throws IOException
 	 * @throws ClassFileException
 	 */
 	@Override
-	protected void markUtf8Refs(final ConstantPool pool) throws ClassFileException {
-		pool.incRefCount(this.u2stringIndex);
+	protected void readInfo(final DataInput din) throws IOException, ClassFileException {
+		this.setOperand1(din.readUnsignedShort());
 	}
 
 	/**
-	 * Read the 'info' data following the u1tag byte.
+	 * Return the length in bytes of the 'info' data following the u1tag byte.
 	 * 
-	 * @throws IOException
-	 * @throws ClassFileException
+	 * @see CpInfo#getInfoLength()
 	 */
 	@Override
-	protected void readInfo(final DataInput din) throws IOException, ClassFileException {
-		this.u2stringIndex = din.readUnsignedShort();
+	protected int getInfoLength() {
+		return 2;
 	}
 
 	/**
@@ -89,6 +88,6 @@ public class StringCpInfo extends CpInfo {
 	 */
 	@Override
 	protected void writeInfo(final DataOutput dout) throws IOException, ClassFileException {
-		dout.writeShort(this.u2stringIndex);
+		dout.writeShort(this.getOperand1());
 	}
 }
@@ -55,6 +55,17 @@ public class SyntheticAttrInfo extends AttrInfo {
 		return ClassConstants.ATTR_Synthetic;
 	}
 
+	/**
+	 * Renumber the references in the 'info' data to Constant Pool entries, of which
+	 * there are none.
+	 * 
+	 * @throws ClassFileException
+	 */
+	@Override
+	protected void renumberCpRefsInInfo(final CpIndexMapper mapper) throws ClassFileException {
+		// do nothing
+	}
+
 	/**
 	 * Read the data following the header.
 	 * 
@@ -22,22 +22,111 @@ package com.rl.obf.classfile;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 
 /**
- * Representation of a 'UTF8' entry in the ConstantPool.
+ * Representation of a 'UTF8' entry in the ConstantPool. In a pool, the entry
+ * is a view of the modified UTF-8 bytes held there, which are decoded only when
+ * the string is first needed, and written back as those bytes unless the string
+ * is changed. Until it is added to a pool, the entry holds the bytes itself.
  *
  * @author Mark Welsh
  */
 public class Utf8CpInfo extends CpInfo {
 	// Constants -------------------------------------------------------------
+	private static final byte[] EMPTY_BYTES = new byte[0];
+	private static final char REPLACEMENT_CHAR = '\uFFFD';
 
 	// Fields ----------------------------------------------------------------
 	private int u2length;
-	private byte[] bytes;
-	private String utf8string;
+	private byte[] bytes = Utf8CpInfo.EMPTY_BYTES;
+
+	/**
+	 * The decoded string, or null if not yet decoded
+	 */
+	private String utf8string = "";
 
 	// Class Methods ---------------------------------------------------------
+	/**
+	 * Decode modified UTF-8 data, replacing malformed sequences.
+	 * 
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 */
+	static String decode(final byte[] bytes, final int offset, final int length) {
+		// Names are nearly always ASCII, which needs no decoding
+		int ascii = 0;
+		while (ascii < length && bytes[offset + ascii] > 0) {
+			ascii++;
+		}
+		if (ascii == length) {
+			return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+		}
+
+		final char[] chars = new char[length];
+		for (int i = 0; i < ascii; i++) {
+			chars[i] = (char) bytes[offset + i];
+		}
+		int count = ascii;
+		int i = offset + ascii;
+		final int end = offset + length;
+		while (i < end) {
+			final int b = bytes[i] & 0xFF;
+			if (b < 0x80) {
+				chars[count++] = (char) b;
+				i++;
+			} else if ((b & 0xE0) == 0xC0 && i + 1 < end && (bytes[i + 1] & 0xC0) == 0x80) {
+				chars[count++] = (char) ((b & 0x1F) << 6 | bytes[i + 1] & 0x3F);
+				i += 2;
+			} else if ((b & 0xF0) == 0xE0 && i + 2 < end && (bytes[i + 1] & 0xC0) == 0x80
+					&& (bytes[i + 2] & 0xC0) == 0x80) {
+				chars[count++] = (char) ((b & 0x0F) << 12 | (bytes[i + 1] & 0x3F) << 6 | bytes[i + 2] & 0x3F);
+				i += 3;
+			} else {
+				chars[count++] = Utf8CpInfo.REPLACEMENT_CHAR;
+				i++;
+			}
+		}
+		return new String(chars, 0, count);
+	}
+
+	/**
+	 * Encode a string as modified UTF-8.
+	 * 
+	 * @param s
+	 */
+	static byte[] encode(final String s) {
+		final int length = s.length();
+		int utfLength = 0;
+		for (int i = 0; i < length; i++) {
+			final char c = s.charAt(i);
+			if (c >= 0x0001 && c <= 0x007F) {
+				utfLength++;
+			} else if (c <= 0x07FF) {
+				utfLength += 2;
+			} else {
+				utfLength += 3;
+			}
+		}
+
+		final byte[] bytes = new byte[utfLength];
+		int count = 0;
+		for (int i = 0; i < length; i++) {
+			final char c = s.charAt(i);
+			if (c >= 0x0001 && c <= 0x007F) {
+				bytes[count++] = (byte) c;
+			} else if (c <= 0x07FF) {
+				bytes[count++] = (byte) (0xC0 | c >> 6);
+				bytes[count++] = (byte) (0x80 | c & 0x3F);
+			} else {
+				bytes[count++] = (byte) (0xE0 | c >> 12);
+				bytes[count++] = (byte) (0x80 | c >> 6 & 0x3F);
+				bytes[count++] = (byte) (0x80 | c & 0x3F);
+			}
+		}
+		return bytes;
+	}
 
 	// Instance Methods ------------------------------------------------------
 	/**
@@ -55,7 +144,7 @@ public class Utf8CpInfo extends CpInfo {
 	public Utf8CpInfo(final String s) {
 		super(ClassConstants.CONSTANT_Utf8);
 		this.setString(s);
-		this.refCount = 1;
+		this.incRefCount();
 	}
 
 	/**
@@ -66,7 +155,7 @@ public class Utf8CpInfo extends CpInfo {
 	@Override
 	public void decRefCount() throws ClassFileException {
 		super.decRefCount();
-		if (this.refCount == 0) {
+		if (this.getPool() == null && this.getRefCount() == 0) {
 			this.clearString();
 		}
 	}
@@ -75,12 +164,11 @@ public class Utf8CpInfo extends CpInfo {
 	 * Return UTF8 data as a String.
 	 */
 	public String getString() {
+		if (this.getPool() != null) {
+			return this.getPool().getString(this.getPoolIndex());
+		}
 		if (this.utf8string == null) {
-			try {
-				this.utf8string = new String(this.bytes, "UTF8");
-			} catch (final UnsupportedEncodingException e) {
-				throw new RuntimeException(e);
-			}
+			this.utf8string = Utf8CpInfo.decode(this.bytes, 0, this.u2length);
 		}
 		return this.utf8string;
 	}
@@ -91,23 +179,20 @@ public class Utf8CpInfo extends CpInfo {
 	 * @param str
 	 */
 	public void setString(final String str) {
-		this.utf8string = str;
-		try {
-			this.bytes = str.getBytes("UTF8");
-		} catch (final UnsupportedEncodingException e) {
-			throw new RuntimeException(e);
+		if (this.getPool() != null) {
+			this.getPool().setString(this.getPoolIndex(), str);
+		} else {
+			this.utf8string = str;
+			this.bytes = Utf8CpInfo.encode(str);
+			this.u2length = this.bytes.length;
 		}
-		this.u2length = this.bytes.length;
 	}
 
 	/**
 	 * Set the UTF8 data to empty.
 	 */
 	public void clearString() {
-		this.u2length = 0;
-		this.bytes = new byte[0];
-		this.utf8string = null;
-		this.getString();
+		this.setString("");
 	}
 
 	/**
@@ -121,7 +206,20 @@ public class Utf8CpInfo extends CpInfo {
 		this.u2length = din.readUnsignedShort();
 		this.bytes = new byte[this.u2length];
 		din.readFully(this.bytes);
-		this.getString();
+		this.utf8string = null;
+	}
+
+	/**
+	 * Return the length in bytes of the 'info' data following the u1tag byte.
+	 * 
+	 * @see CpInfo#getInfoLength()
+	 */
+	@Override
+	protected int getInfoLength() {
+		if (this.getPool() != null) {
+			return this.getPool().getUtf8InfoLength(this.getPoolIndex());
+		}
+		return 2 + this.u2length;
 	}
 
 	/**
@@ -132,6 +230,10 @@ public class Utf8CpInfo extends CpInfo {
 	 */
 	@Override
 	protected void writeInfo(final DataOutput dout) throws IOException, ClassFileException {
+		if (this.getPool() != null) {
+			this.getPool().writeUtf8Info(this.getPoolIndex(), dout);
+			return;
+		}
 		dout.writeShort(this.u2length);
 		if (this.bytes.length > 0) {
 			dout.write(this.bytes);
@@ -106,6 +106,22 @@ public class VerificationTypeInfo {
 		}
 	}
 
+	/**
+	 * Renumber the references to Constant Pool entries, returning whether any
+	 * changed.
+	 * 
+	 * @param mapper
+	 * @throws ClassFileException
+	 */
+	protected boolean renumberCpRefs(final CpIndexMapper mapper) throws ClassFileException {
+		if (this.u1tag == VerificationTypeInfo.ITEM_Object) {
+			final int index = this.u2cpoolIndex;
+			this.u2cpoolIndex = mapper.mapIndex(index);
+			return this.u2cpoolIndex != index;
+		}
+		return false;
+	}
+
 	/**
 	 * Export the representation to a DataOutput stream.
 	 * 
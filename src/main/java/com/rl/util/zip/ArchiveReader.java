@@ -0,0 +1,75 @@
+/* ===========================================================================
+ * $RCSfile: ArchiveReader.java,v $
+ * ===========================================================================
+ *
+ * RetroGuard -- an obfuscation package for Java classfiles.
+ *
+ * Copyright (c) 1998-2006 Mark Welsh (markw@retrologic.com)
+ *
+ * This program can be redistributed and/or modified under the terms of the
+ * Version 2 of the GNU General Public License as published by the Free
+ * Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+
+package com.rl.util.zip;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+
+/**
+ * Interface to the entries of an input archive -- a Jar file or a directory.
+ * Entries may be read from several threads at once.
+ *
+ * @author Mark Welsh
+ */
+public interface ArchiveReader {
+	// Interface Methods -----------------------------------------------------
+	/**
+	 * Return the entries of the archive, in archive order.
+	 */
+	public Enumeration<? extends ZipEntry> entries();
+
+	/**
+	 * Open a stream of the uncompressed data of an entry.
+	 * 
+	 * @param entry
+	 * @throws IOException
+	 */
+	public InputStream getInputStream(ZipEntry entry) throws IOException;
+
+	/**
+	 * Can the compressed data of the entry be copied as it is?
+	 * 
+	 * @param entry
+	 */
+	public boolean canCopy(ZipEntry entry);
+
+	/**
+	 * Read the compressed data of an entry that can be copied.
+	 * 
+	 * @param entry
+	 * @throws IOException
+	 */
+	public byte[] readRaw(ZipEntry entry) throws IOException;
+
+	/**
+	 * Open a stream of the compressed data of an entry that can be copied.
+	 * 
+	 * @param entry
+	 * @throws IOException
+	 */
+	public InputStream openRaw(ZipEntry entry) throws IOException;
+
+	/**
+	 * Close the archive.
+	 */
+	public void close();
+}
@@ -0,0 +1,105 @@
+/* ===========================================================================
+ * $RCSfile: ArchiveWriter.java,v $
+ * ===========================================================================
+ *
+ * RetroGuard -- an obfuscation package for Java classfiles.
+ *
+ * Copyright (c) 1998-2006 Mark Welsh (markw@retrologic.com)
+ *
+ * This program can be redistributed and/or modified under the terms of the
+ * Version 2 of the GNU General Public License as published by the Free
+ * Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+
+package com.rl.util.zip;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Interface to an output archive -- a Jar file or a directory.
+ *
+ * @author Mark Welsh
+ */
+public interface ArchiveWriter {
+	// Interface Methods -----------------------------------------------------
+	/**
+	 * Does the archive hold compressed entries? If not, only uncompressed
+	 * ({@code ZipEntry.STORED}) data may be given to it.
+	 */
+	public boolean isCompressed();
+
+	/**
+	 * Set the archive comment.
+	 * 
+	 * @param comment
+	 */
+	public void setComment(String comment);
+
+	/**
+	 * Write an entry from uncompressed data.
+	 * 
+	 * @param name
+	 * @param data
+	 * @param off
+	 * @param len
+	 * @throws IOException
+	 */
+	public void putEntry(String name, byte[] data, int off, int len) throws IOException;
+
+	/**
+	 * Write an entry of unknown size from a stream of uncompressed data.
+	 * 
+	 * @param name
+	 * @param in
+	 * @throws IOException
+	 */
+	public void putEntry(String name, InputStream in) throws IOException;
+
+	/**
+	 * Write an entry whose data is already compressed by the given method.
+	 * 
+	 * @param name
+	 * @param method
+	 * @param crc
+	 *            CRC-32 of the uncompressed data
+	 * @param size
+	 *            size of the uncompressed data
+	 * @param raw
+	 *            the compressed data
+	 * @throws IOException
+	 */
+	public void putRawEntry(String name, int method, long crc, long size, byte[] raw) throws IOException;
+
+	/**
+	 * Write an entry whose data is already compressed by the given method, copying
+	 * the compressed data from a stream.
+	 * 
+	 * @param name
+	 * @param method
+	 * @param crc
+	 *            CRC-32 of the uncompressed data
+	 * @param size
+	 *            size of the uncompressed data
+	 * @param compressedSize
+	 *            size of the compressed data
+	 * @param raw
+	 *            stream of the compressed data
+	 * @throws IOException
+	 */
+	public void putRawEntry(String name, int method, long crc, long size, long compressedSize, InputStream raw)
+			throws IOException;
+
+	/**
+	 * Finish writing the archive.
+	 * 
+	 * @throws IOException
+	 */
+	public void close() throws IOException;
+}
@@ -0,0 +1,127 @@
+/* ===========================================================================
+ * $RCSfile: Compressor.java,v $
+ * ===========================================================================
+ *
+ * RetroGuard -- an obfuscation package for Java classfiles.
+ *
+ * Copyright (c) 1998-2006 Mark Welsh (markw@retrologic.com)
+ *
+ * This program can be redistributed and/or modified under the terms of the
+ * Version 2 of the GNU General Public License as published by the Free
+ * Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+
+package com.rl.util.zip;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Raw DEFLATE compression for ZIP entries, callable from any thread. Large
+ * entries can be compressed as independent blocks, each primed with the end of
+ * the block before it, whose output concatenates into a single DEFLATE stream.
+ *
+ * @author Mark Welsh
+ */
+public class Compressor {
+	// Constants -------------------------------------------------------------
+	/**
+	 * Size of the DEFLATE window, and so of the useful block dictionary
+	 */
+	public static final int DICTIONARY_SIZE = 32 * 1024;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	// Fields ----------------------------------------------------------------
+	/**
+	 * Deflaters of each level, for the current thread
+	 */
+	private static final ThreadLocal<Deflater[]> deflaters = new ThreadLocal<Deflater[]>() {
+		@Override
+		protected Deflater[] initialValue() {
+			return new Deflater[Deflater.BEST_COMPRESSION + 2];
+		}
+	};
+
+	// Class Methods ---------------------------------------------------------
+	/**
+	 * Compress data as a complete raw DEFLATE stream.
+	 *
+	 * @param data
+	 * @param off
+	 * @param len
+	 * @param level
+	 *            compression level, or {@code Deflater.DEFAULT_COMPRESSION}
+	 */
+	public static byte[] deflate(final byte[] data, final int off, final int len, final int level) {
+		return Compressor.deflateBlock(data, off, len, null, 0, 0, true, level);
+	}
+
+	/**
+	 * Compress one block of a raw DEFLATE stream. All but the last block end on a
+	 * byte boundary with a sync flush, so the compressed blocks can simply be
+	 * concatenated.
+	 *
+	 * @param data
+	 * @param off
+	 * @param len
+	 * @param dictionary
+	 *            the data preceding the block, or null for the first block
+	 * @param dictOff
+	 * @param dictLen
+	 * @param last
+	 *            is this the last block of the stream?
+	 * @param level
+	 *            compression level, or {@code Deflater.DEFAULT_COMPRESSION}
+	 */
+	public static byte[] deflateBlock(final byte[] data, final int off, final int len, final byte[] dictionary,
+			final int dictOff, final int dictLen, final boolean last, final int level) {
+		final Deflater deflater = Compressor.getDeflater(level);
+		deflater.reset();
+		if (dictionary != null && dictLen > 0) {
+			deflater.setDictionary(dictionary, dictOff, dictLen);
+		}
+		deflater.setInput(data, off, len);
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(len / 2 + 64);
+		final byte[] buffer = new byte[Compressor.BUFFER_SIZE];
+		if (last) {
+			deflater.finish();
+			while (!deflater.finished()) {
+				final int count = deflater.deflate(buffer);
+				out.write(buffer, 0, count);
+			}
+		} else {
+			int count;
+			do {
+				count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+				out.write(buffer, 0, count);
+			} while (count == buffer.length);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Return the current thread's raw deflater for a compression level.
+	 *
+	 * @param level
+	 */
+	private static Deflater getDeflater(final int level) {
+		if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+			throw new IllegalArgumentException("Invalid compression level: " + level);
+		}
+		final Deflater[] cache = Compressor.deflaters.get();
+		Deflater deflater = cache[level + 1];
+		if (deflater == null) {
+			deflater = new Deflater(level, true);
+			cache[level + 1] = deflater;
+		}
+		return deflater;
+	}
+}
@@ -0,0 +1,145 @@
+/* ===========================================================================
+ * $RCSfile: DirectoryArchiveReader.java,v $
+ * ===========================================================================
+ *
+ * RetroGuard -- an obfuscation package for Java classfiles.
+ *
+ * Copyright (c) 1998-2006 Mark Welsh (markw@retrologic.com)
+ *
+ * This program can be redistributed and/or modified under the terms of the
+ * Version 2 of the GNU General Public License as published by the Free
+ * Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+
+package com.rl.util.zip;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Input archive in an exploded directory. The files below the directory are
+ * the entries, named by their relative path with '/' separators, in name order.
+ * Their data is never compressed, so cannot be copied raw.
+ *
+ * @author Mark Welsh
+ */
+public class DirectoryArchiveReader implements ArchiveReader {
+	// Constants -------------------------------------------------------------
+
+	// Fields ----------------------------------------------------------------
+	private final Path root;
+	private final List<ZipEntry> entries = new ArrayList<>();
+
+	// Class Methods ---------------------------------------------------------
+
+	// Instance Methods ------------------------------------------------------
+	/**
+	 * Walk a directory for its files.
+	 * 
+	 * @param root
+	 * @throws IOException
+	 */
+	public DirectoryArchiveReader(final Path root) throws IOException {
+		this.root = root;
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+				if (attrs.isRegularFile()) {
+					final StringBuilder name = new StringBuilder();
+					for (final Path part : root.relativize(file)) {
+						if (name.length() > 0) {
+							name.append('/');
+						}
+						name.append(part.toString());
+					}
+					final ZipEntry entry = new ZipEntry(name.toString());
+					entry.setSize(attrs.size());
+					entry.setTime(attrs.lastModifiedTime().toMillis());
+					DirectoryArchiveReader.this.entries.add(entry);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		Collections.sort(this.entries, new Comparator<ZipEntry>() {
+			@Override
+			public int compare(final ZipEntry o1, final ZipEntry o2) {
+				return o1.getName().compareTo(o2.getName());
+			}
+		});
+	}
+
+	/**
+	 * Return the entries of the archive, in archive order.
+	 * 
+	 * @see ArchiveReader#entries
+	 */
+	@Override
+	public Enumeration<? extends ZipEntry> entries() {
+		return Collections.enumeration(this.entries);
+	}
+
+	/**
+	 * Open a stream of the uncompressed data of an entry.
+	 * 
+	 * @throws IOException
+	 * @see ArchiveReader#getInputStream
+	 */
+	@Override
+	public InputStream getInputStream(final ZipEntry entry) throws IOException {
+		return Files.newInputStream(this.root.resolve(entry.getName()));
+	}
+
+	/**
+	 * Can the compressed data of the entry be copied as it is?
+	 * 
+	 * @see ArchiveReader#canCopy
+	 */
+	@Override
+	public boolean canCopy(final ZipEntry entry) {
+		return false;
+	}
+
+	@Override
+	public byte[] readRaw(final ZipEntry entry) throws IOException {
+		throw new ZipException("Directory entries have no compressed data: " + entry.getName());
+	}
+
+	/**
+	 * Open a stream of the compressed data of an entry that can be copied.
+	 * 
+	 * @throws IOException
+	 * @see ArchiveReader#openRaw
+	 */
+	@Override
+	public InputStream openRaw(final ZipEntry entry) throws IOException {
+		throw new ZipException("Directory entries have no compressed data: " + entry.getName());
+	}
+
+	/**
+	 * Close the archive.
+	 * 
+	 * @see ArchiveReader#close
+	 */
+	@Override
+	public void close() {
+		// nothing held open
+	}
+}
@@ -0,0 +1,205 @@
+/* ===========================================================================
+ * $RCSfile: DirectoryArchiveWriter.java,v $
+ * ===========================================================================
+ *
+ * RetroGuard -- an obfuscation package for Java classfiles.
+ *
+ * Copyright (c) 1998-2006 Mark Welsh (markw@retrologic.com)
+ *
+ * This program can be redistributed and/or modified under the terms of the
+ * Version 2 of the GNU General Public License as published by the Free
+ * Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+
+package com.rl.util.zip;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Output archive in an exploded directory -- each entry is written to the file
+ * at its name below the directory. Existing files of the same names are
+ * replaced; other files are left alone.
+ *
+ * @author Mark Welsh
+ */
+public class DirectoryArchiveWriter implements ArchiveWriter {
+	// Constants -------------------------------------------------------------
+	private static final int BUFFER_SIZE = 8192;
+
+	// Fields ----------------------------------------------------------------
+	private final Path root;
+	private final byte[] buffer = new byte[DirectoryArchiveWriter.BUFFER_SIZE];
+	private final Set<String> names = new HashSet<>();
+
+	// Class Methods ---------------------------------------------------------
+
+	// Instance Methods ------------------------------------------------------
+	/**
+	 * Constructor, creating the directory if needed.
+	 * 
+	 * @param root
+	 * @throws IOException
+	 */
+	public DirectoryArchiveWriter(final Path root) throws IOException {
+		this.root = root.toAbsolutePath().normalize();
+		Files.createDirectories(this.root);
+	}
+
+	/**
+	 * Does the archive hold compressed entries?
+	 * 
+	 * @see ArchiveWriter#isCompressed
+	 */
+	@Override
+	public boolean isCompressed() {
+		return false;
+	}
+
+	/**
+	 * Set the archive comment.
+	 * 
+	 * @see ArchiveWriter#setComment
+	 */
+	@Override
+	public void setComment(final String comment) {
+		// a directory has nowhere to keep a comment
+	}
+
+	/**
+	 * Write an entry from uncompressed data.
+	 * 
+	 * @throws IOException
+	 * @see ArchiveWriter#putEntry
+	 */
+	@Override
+	public void putEntry(final String name, final byte[] data, final int off, final int len) throws IOException {
+		final OutputStream out = this.openEntry(name);
+		try {
+			out.write(data, off, len);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Write an entry from a stream of uncompressed data.
+	 * 
+	 * @throws IOException
+	 * @see ArchiveWriter#putEntry
+	 */
+	@Override
+	public void putEntry(final String name, final InputStream in) throws IOException {
+		this.copy(name, in, -1);
+	}
+
+	/**
+	 * Write an entry of stored data.
+	 * 
+	 * @see ArchiveWriter#putRawEntry
+	 */
+	@Override
+	public void putRawEntry(final String name, final int method, final long crc, final long size, final byte[] raw)
+			throws IOException {
+		DirectoryArchiveWriter.checkStored(name, method);
+		this.putEntry(name, raw, 0, raw.length);
+	}
+
+	/**
+	 * Write an entry of stored data from a stream.
+	 * 
+	 * @throws IOException
+	 * @see ArchiveWriter#putRawEntry
+	 */
+	@Override
+	public void putRawEntry(final String name, final int method, final long crc, final long size,
+			final long compressedSize, final InputStream raw) throws IOException {
+		DirectoryArchiveWriter.checkStored(name, method);
+		this.copy(name, raw, compressedSize);
+	}
+
+	/**
+	 * Finish writing the archive.
+	 * 
+	 * @see ArchiveWriter#close
+	 */
+	@Override
+	public void close() {
+		// every entry is complete once written
+	}
+
+	/**
+	 * Only uncompressed data can be written to a directory.
+	 * 
+	 * @param name
+	 * @param method
+	 * @throws ZipException
+	 */
+	private static void checkStored(final String name, final int method) throws ZipException {
+		if (method != ZipEntry.STORED) {
+			throw new ZipException("Compressed data cannot be written to a directory: " + name);
+		}
+	}
+
+	/**
+	 * Copy a stream to an entry file.
+	 * 
+	 * @param name
+	 * @param in
+	 * @param length
+	 *            the number of bytes to copy, or -1 to copy the whole stream
+	 * @throws IOException
+	 */
+	private void copy(final String name, final InputStream in, final long length) throws IOException {
+		final OutputStream out = this.openEntry(name);
+		try {
+			long remaining = length;
+			while (length == -1 || remaining > 0) {
+				final int count = in.read(this.buffer, 0,
+						length == -1 ? this.buffer.length : (int) Math.min(remaining, this.buffer.length));
+				if (count < 0) {
+					if (length == -1) {
+						break;
+					}
+					throw new EOFException("Unexpected end of entry data: " + name);
+				}
+				out.write(this.buffer, 0, count);
+				remaining -= count;
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Check an entry name and create the file for it.
+	 * 
+	 * @param name
+	 * @throws IOException
+	 */
+	private OutputStream openEntry(final String name) throws IOException {
+		if (!this.names.add(name)) {
+			throw new ZipException("duplicate entry: " + name);
+		}
+		final Path file = this.root.resolve(name).normalize();
+		if (!file.startsWith(this.root) || file.equals(this.root)) {
+			throw new ZipException("Entry name outside the output directory: " + name);
+		}
+		Files.createDirectories(file.getParent());
+		return Files.newOutputStream(file);
+	}
+}
@@ -0,0 +1,122 @@
+/* ===========================================================================
+ * $RCSfile: JarArchiveReader.java,v $
+ * ===========================================================================
+ *
+ * RetroGuard -- an obfuscation package for Java classfiles.
+ *
+ * Copyright (c) 1998-2006 Mark Welsh (markw@retrologic.com)
+ *
+ * This program can be redistributed and/or modified under the terms of the
+ * Version 2 of the GNU General Public License as published by the Free
+ * Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+
+package com.rl.util.zip;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Input archive in a Jar file, read through {@code java.util.zip.ZipFile}, with
+ * the compressed entry data located by a {@code RawZipReader}.
+ *
+ * @author Mark Welsh
+ */
+public class JarArchiveReader implements ArchiveReader {
+	// Constants -------------------------------------------------------------
+
+	// Fields ----------------------------------------------------------------
+	private final ZipFile zipFile;
+	private final RawZipReader rawReader;
+
+	// Class Methods ---------------------------------------------------------
+
+	// Instance Methods ------------------------------------------------------
+	/**
+	 * Open a Jar file.
+	 * 
+	 * @param file
+	 * @throws IOException
+	 */
+	public JarArchiveReader(final File file) throws IOException {
+		this.zipFile = new ZipFile(file);
+		try {
+			this.rawReader = new RawZipReader(file);
+		} catch (final IOException e) {
+			this.zipFile.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Return the entries of the archive, in archive order.
+	 * 
+	 * @see ArchiveReader#entries
+	 */
+	@Override
+	public Enumeration<? extends ZipEntry> entries() {
+		return this.zipFile.entries();
+	}
+
+	/**
+	 * Open a stream of the uncompressed data of an entry.
+	 * 
+	 * @throws IOException
+	 * @see ArchiveReader#getInputStream
+	 */
+	@Override
+	public InputStream getInputStream(final ZipEntry entry) throws IOException {
+		return this.zipFile.getInputStream(entry);
+	}
+
+	/**
+	 * Can the compressed data of the entry be copied as it is?
+	 * 
+	 * @see ArchiveReader#canCopy
+	 */
+	@Override
+	public boolean canCopy(final ZipEntry entry) {
+		return this.rawReader.canCopy(entry);
+	}
+
+	@Override
+	public byte[] readRaw(final ZipEntry entry) throws IOException {
+		return this.rawReader.readRaw(entry);
+	}
+
+	/**
+	 * Open a stream of the compressed data of an entry that can be copied.
+	 * 
+	 * @throws IOException
+	 * @see ArchiveReader#openRaw
+	 */
+	@Override
+	public InputStream openRaw(final ZipEntry entry) throws IOException {
+		return this.rawReader.openRaw(entry);
+	}
+
+	/**
+	 * Close the archive.
+	 * 
+	 * @see ArchiveReader#close
+	 */
+	@Override
+	public void close() {
+		try {
+			this.zipFile.close();
+		} catch (final IOException e) {
+			// ignore
+		}
+		this.rawReader.close();
+	}
+}
@@ -0,0 +1,315 @@
+/* ===========================================================================
+ * $RCSfile: RawZipReader.java,v $
+ * ===========================================================================
+ *
+ * RetroGuard -- an obfuscation package for Java classfiles.
+ *
+ * Copyright (c) 1998-2006 Mark Welsh (markw@retrologic.com)
+ *
+ * This program can be redistributed and/or modified under the terms of the
+ * Version 2 of the GNU General Public License as published by the Free
+ * Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+
+package com.rl.util.zip;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Read access to the still-compressed data of the entries in a ZIP file, for
+ * copying entries from one archive to another without inflating them. Entry
+ * metadata (method, CRC, sizes) comes from the {@code ZipEntry} read through
+ * {@code java.util.zip.ZipFile}; this class only locates the entry data. Reads
+ * are positional, so entries may be read from several threads at once.
+ *
+ * @author Mark Welsh
+ */
+public class RawZipReader {
+	// Constants -------------------------------------------------------------
+	static final int LOCAL_HEADER_SIG = 0x04034b50;
+	static final int CENTRAL_HEADER_SIG = 0x02014b50;
+	static final int END_SIG = 0x06054b50;
+	static final int ZIP64_END_SIG = 0x06064b50;
+	static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+	static final int DATA_DESCRIPTOR_SIG = 0x08074b50;
+	static final int LOCAL_HEADER_SIZE = 30;
+	static final int CENTRAL_HEADER_SIZE = 46;
+	static final int END_SIZE = 22;
+	static final int ZIP64_END_SIZE = 56;
+	static final int ZIP64_LOCATOR_SIZE = 20;
+	static final int ZIP64_EXTRA_ID = 0x0001;
+	static final int FLAG_ENCRYPTED = 0x0001;
+	static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+	static final int FLAG_UTF8 = 0x0800;
+	static final long MAX_U32 = 0xFFFFFFFFL;
+	static final int MAX_U16 = 0xFFFF;
+	private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+	// Fields ----------------------------------------------------------------
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+
+	/**
+	 * Offset of the local header for each entry name
+	 */
+	private final Map<String, Long> localHeaders = new HashMap<>();
+
+	// Class Methods ---------------------------------------------------------
+
+	// Instance Methods ------------------------------------------------------
+	/**
+	 * Open a ZIP file and read its central directory.
+	 *
+	 * @param zipFile
+	 * @throws IOException
+	 */
+	public RawZipReader(final File zipFile) throws IOException {
+		this.file = new RandomAccessFile(zipFile, "r");
+		this.channel = this.file.getChannel();
+		try {
+			this.readCentralDirectory();
+		} catch (final IOException e) {
+			this.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Can the compressed data of the entry be copied as it is?
+	 *
+	 * @param entry
+	 */
+	public boolean canCopy(final ZipEntry entry) {
+		return (entry.getMethod() == ZipEntry.STORED || entry.getMethod() == ZipEntry.DEFLATED)
+				&& entry.getCompressedSize() != -1 && entry.getCrc() != -1 && entry.getSize() != -1
+				&& this.localHeaders.containsKey(entry.getName());
+	}
+
+	/**
+	 * Return the offset of the compressed data of the entry within the file.
+	 *
+	 * @param entry
+	 * @throws IOException
+	 */
+	public long getDataOffset(final ZipEntry entry) throws IOException {
+		final Long offset = this.localHeaders.get(entry.getName());
+		if (offset == null) {
+			throw new ZipException("Entry not found: " + entry.getName());
+		}
+
+		final ByteBuffer header = this.read(offset.longValue(), RawZipReader.LOCAL_HEADER_SIZE);
+		if (header.getInt(0) != RawZipReader.LOCAL_HEADER_SIG) {
+			throw new ZipException("Invalid local header: " + entry.getName());
+		}
+		if ((header.getShort(6) & RawZipReader.FLAG_ENCRYPTED) != 0) {
+			throw new ZipException("Encrypted entry: " + entry.getName());
+		}
+		final int nameLength = header.getShort(26) & 0xFFFF;
+		final int extraLength = header.getShort(28) & 0xFFFF;
+		return offset.longValue() + RawZipReader.LOCAL_HEADER_SIZE + nameLength + extraLength;
+	}
+
+	/**
+	 * Read the compressed data of the entry.
+	 *
+	 * @param entry
+	 * @throws IOException
+	 */
+	public byte[] readRaw(final ZipEntry entry) throws IOException {
+		final long size = entry.getCompressedSize();
+		if (size > Integer.MAX_VALUE) {
+			throw new ZipException("Entry too large: " + entry.getName());
+		}
+		final ByteBuffer data = this.read(this.getDataOffset(entry), (int) size);
+		return data.array();
+	}
+
+	/**
+	 * Open a stream of the compressed data of the entry, for entries too large to
+	 * be read at once.
+	 *
+	 * @param entry
+	 * @throws IOException
+	 */
+	public InputStream openRaw(final ZipEntry entry) throws IOException {
+		return new RawEntryInputStream(this, this.getDataOffset(entry), entry.getCompressedSize());
+	}
+
+	/**
+	 * Read bytes from the file into a buffer.
+	 *
+	 * @param position
+	 * @param buffer
+	 * @throws IOException
+	 */
+	public void read(long position, final ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			final int count = this.channel.read(buffer, position);
+			if (count < 0) {
+				throw new EOFException();
+			}
+			position += count;
+		}
+	}
+
+	/**
+	 * Close the file.
+	 */
+	public void close() {
+		try {
+			this.file.close();
+		} catch (final IOException e) {
+			// ignore
+		}
+	}
+
+	/**
+	 * Read a little-endian block of the file.
+	 *
+	 * @param position
+	 * @param length
+	 * @throws IOException
+	 */
+	private ByteBuffer read(final long position, final int length) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		this.read(position, buffer);
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Locate the end of central directory record and read the central directory
+	 * entries.
+	 *
+	 * @throws IOException
+	 */
+	private void readCentralDirectory() throws IOException {
+		// The end record is followed only by the archive comment
+		final long fileSize = this.channel.size();
+		final int tailSize = (int) Math.min(fileSize, RawZipReader.END_SIZE + RawZipReader.MAX_COMMENT_SIZE);
+		final ByteBuffer tail = this.read(fileSize - tailSize, tailSize);
+		int endPos = -1;
+		for (int i = tailSize - RawZipReader.END_SIZE; i >= 0; i--) {
+			if (tail.getInt(i) == RawZipReader.END_SIG) {
+				endPos = i;
+				break;
+			}
+		}
+		if (endPos < 0) {
+			throw new ZipException("End of central directory not found");
+		}
+
+		long entryCount = tail.getShort(endPos + 10) & 0xFFFF;
+		long dirSize = tail.getInt(endPos + 12) & RawZipReader.MAX_U32;
+		long dirOffset = tail.getInt(endPos + 16) & RawZipReader.MAX_U32;
+
+		// Use the ZIP64 end record if there is one
+		final long endOffset = fileSize - tailSize + endPos;
+		if (endOffset >= RawZipReader.ZIP64_LOCATOR_SIZE) {
+			final ByteBuffer locator = this.read(endOffset - RawZipReader.ZIP64_LOCATOR_SIZE,
+					RawZipReader.ZIP64_LOCATOR_SIZE);
+			if (locator.getInt(0) == RawZipReader.ZIP64_LOCATOR_SIG) {
+				final ByteBuffer end64 = this.read(locator.getLong(8), RawZipReader.ZIP64_END_SIZE);
+				if (end64.getInt(0) != RawZipReader.ZIP64_END_SIG) {
+					throw new ZipException("Invalid ZIP64 end of central directory");
+				}
+				entryCount = end64.getLong(32);
+				dirSize = end64.getLong(40);
+				dirOffset = end64.getLong(48);
+			}
+		}
+		if (dirSize > Integer.MAX_VALUE) {
+			throw new ZipException("Central directory too large");
+		}
+
+		// Record the local header offset of each entry
+		final ByteBuffer dir = this.read(dirOffset, (int) dirSize);
+		int pos = 0;
+		for (long i = 0; i < entryCount; i++) {
+			if (dir.getInt(pos) != RawZipReader.CENTRAL_HEADER_SIG) {
+				throw new ZipException("Invalid central directory header");
+			}
+			final int nameLength = dir.getShort(pos + 28) & 0xFFFF;
+			final int extraLength = dir.getShort(pos + 30) & 0xFFFF;
+			final int commentLength = dir.getShort(pos + 32) & 0xFFFF;
+			final boolean size64 = (dir.getInt(pos + 24) & RawZipReader.MAX_U32) == RawZipReader.MAX_U32;
+			final boolean compressedSize64 = (dir.getInt(pos + 20) & RawZipReader.MAX_U32) == RawZipReader.MAX_U32;
+			long offset = dir.getInt(pos + 42) & RawZipReader.MAX_U32;
+			final byte[] nameBytes = new byte[nameLength];
+			dir.position(pos + RawZipReader.CENTRAL_HEADER_SIZE);
+			dir.get(nameBytes);
+			final String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+			// The ZIP64 extra field holds, in order, only the values too large for the
+			// header
+			if (offset == RawZipReader.MAX_U32) {
+				int extraPos = pos + RawZipReader.CENTRAL_HEADER_SIZE + nameLength;
+				final int extraEnd = extraPos + extraLength;
+				while (extraPos + 4 <= extraEnd) {
+					final int id = dir.getShort(extraPos) & 0xFFFF;
+					final int length = dir.getShort(extraPos + 2) & 0xFFFF;
+					if (id == RawZipReader.ZIP64_EXTRA_ID) {
+						final int valuePos = extraPos + 4 + (size64 ? 8 : 0) + (compressedSize64 ? 8 : 0);
+						if (valuePos + 8 <= extraPos + 4 + length) {
+							offset = dir.getLong(valuePos);
+						}
+						break;
+					}
+					extraPos += 4 + length;
+				}
+			}
+			if (!this.localHeaders.containsKey(name)) {
+				this.localHeaders.put(name, Long.valueOf(offset));
+			}
+			pos += RawZipReader.CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+		}
+	}
+}
+
+class RawEntryInputStream extends InputStream {
+	private final RawZipReader reader;
+	private long position;
+	private long remaining;
+
+	public RawEntryInputStream(final RawZipReader reader, final long position, final long length) {
+		this.reader = reader;
+		this.position = position;
+		this.remaining = length;
+	}
+
+	@Override
+	public int read() throws IOException {
+		final byte[] b = new byte[1];
+		return this.read(b, 0, 1) == 1 ? b[0] & 0xFF : -1;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len) throws IOException {
+		if (this.remaining <= 0) {
+			return -1;
+		}
+		final int count = (int) Math.min(len, this.remaining);
+		this.reader.read(this.position, ByteBuffer.wrap(b, off, count));
+		this.position += count;
+		this.remaining -= count;
+		return count;
+	}
+}
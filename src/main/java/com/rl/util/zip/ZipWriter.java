@@ -0,0 +1,572 @@
+/* ===========================================================================
+ * $RCSfile: ZipWriter.java,v $
+ * ===========================================================================
+ *
+ * RetroGuard -- an obfuscation package for Java classfiles.
+ *
+ * Copyright (c) 1998-2006 Mark Welsh (markw@retrologic.com)
+ *
+ * This program can be redistributed and/or modified under the terms of the
+ * Version 2 of the GNU General Public License as published by the Free
+ * Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+
+package com.rl.util.zip;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Writer for ZIP archives which, unlike {@code java.util.zip.ZipOutputStream},
+ * can also take entries whose data is already compressed, so that they can be
+ * copied from another archive as they are.
+ *
+ * @author Mark Welsh
+ */
+public class ZipWriter implements ArchiveWriter {
+	// Constants -------------------------------------------------------------
+	private static final int VERSION_DEFAULT = 20;
+	private static final int VERSION_ZIP64 = 45;
+	private static final int BUFFER_SIZE = 8192;
+	private static final int BLOCK_SIZE = 128 * 1024;
+	private static final int BLOCKS_PER_THREAD = 2;
+
+	// Fields ----------------------------------------------------------------
+	private final OutputStream out;
+	private final byte[] buffer = new byte[ZipWriter.BUFFER_SIZE];
+	private final List<ZipRecord> records = new ArrayList<>();
+	private final Set<String> names = new HashSet<>();
+	private byte[] comment = null;
+	private int level = Deflater.DEFAULT_COMPRESSION;
+	private boolean stored = false;
+	private ExecutorService executor = null;
+	private int threads = 1;
+	private long written = 0;
+	private boolean closed = false;
+
+	// Class Methods ---------------------------------------------------------
+	/**
+	 * Convert a Java time to MS-DOS date (high word) and time (low word).
+	 *
+	 * @param time
+	 */
+	private static int toDosTime(final long time) {
+		final Calendar cal = Calendar.getInstance();
+		cal.setTimeInMillis(time);
+		final int year = cal.get(Calendar.YEAR);
+		if (year < 1980) {
+			return 1 << 21 | 1 << 16;
+		}
+		return year - 1980 << 25 | cal.get(Calendar.MONTH) + 1 << 21 | cal.get(Calendar.DAY_OF_MONTH) << 16
+				| cal.get(Calendar.HOUR_OF_DAY) << 11 | cal.get(Calendar.MINUTE) << 5 | cal.get(Calendar.SECOND) >> 1;
+	}
+
+	/**
+	 * Allocate a little-endian header buffer.
+	 *
+	 * @param size
+	 */
+	private static ByteBuffer allocate(final int size) {
+		return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Read the next block of a stream, returning a shorter block at the end of
+	 * the stream, or null if there is no more data.
+	 *
+	 * @param in
+	 * @throws IOException
+	 */
+	private static byte[] readBlock(final InputStream in) throws IOException {
+		final byte[] block = new byte[ZipWriter.BLOCK_SIZE];
+		int length = 0;
+		while (length < block.length) {
+			final int count = in.read(block, length, block.length - length);
+			if (count < 0) {
+				break;
+			}
+			length += count;
+		}
+		if (length == 0) {
+			return null;
+		}
+		return length < block.length ? Arrays.copyOf(block, length) : block;
+	}
+
+	/**
+	 * Wait for a compressed block, rethrowing the exception its compression failed
+	 * with.
+	 *
+	 * @param future
+	 * @throws IOException
+	 */
+	private static byte[] getResult(final Future<byte[]> future) throws IOException {
+		try {
+			return future.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	// Instance Methods ------------------------------------------------------
+	/**
+	 * Constructor
+	 *
+	 * @param out
+	 */
+	public ZipWriter(final OutputStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Does the archive hold compressed entries?
+	 *
+	 * @see ArchiveWriter#isCompressed
+	 */
+	@Override
+	public boolean isCompressed() {
+		return true;
+	}
+
+	/**
+	 * Set the archive comment.
+	 *
+	 * @param comment
+	 */
+	@Override
+	public void setComment(final String comment) {
+		this.comment = comment != null ? comment.getBytes(StandardCharsets.UTF_8) : null;
+		if (this.comment != null && this.comment.length > RawZipReader.MAX_U16) {
+			throw new IllegalArgumentException("ZIP file comment too long");
+		}
+	}
+
+	/**
+	 * Set the compression level for entries compressed by the writer.
+	 *
+	 * @param level
+	 *            compression level, or {@code Deflater.DEFAULT_COMPRESSION}
+	 */
+	public void setLevel(final int level) {
+		if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+			throw new IllegalArgumentException("Invalid compression level: " + level);
+		}
+		this.level = level;
+	}
+
+	/**
+	 * Set whether entries given in memory are stored rather than compressed.
+	 *
+	 * @param stored
+	 */
+	public void setStored(final boolean stored) {
+		this.stored = stored;
+	}
+
+	/**
+	 * Set the worker pool for compressing the blocks of streamed entries, or null
+	 * to compress them on the writing thread.
+	 *
+	 * @param executor
+	 * @param threads
+	 *            number of threads in the pool
+	 */
+	public void setExecutor(final ExecutorService executor, final int threads) {
+		this.executor = executor;
+		this.threads = Math.max(threads, 1);
+	}
+
+	/**
+	 * Compress, or store, and write an entry.
+	 *
+	 * @param name
+	 * @param data
+	 * @param off
+	 * @param len
+	 * @throws IOException
+	 */
+	@Override
+	public void putEntry(final String name, final byte[] data, final int off, final int len) throws IOException {
+		final CRC32 crc = new CRC32();
+		crc.update(data, off, len);
+
+		if (this.stored) {
+			final ZipRecord record = this.beginEntry(name, ZipEntry.STORED, crc.getValue(), len, len, false);
+			this.out.write(data, off, len);
+			this.written += len;
+			this.records.add(record);
+		} else {
+			this.putRawEntry(name, ZipEntry.DEFLATED, crc.getValue(), len,
+					Compressor.deflate(data, off, len, this.level));
+		}
+	}
+
+	/**
+	 * Write an entry whose data is already compressed by the given method.
+	 *
+	 * @param name
+	 * @param method
+	 * @param crc
+	 *            CRC-32 of the uncompressed data
+	 * @param size
+	 *            size of the uncompressed data
+	 * @param raw
+	 *            the compressed data
+	 * @throws IOException
+	 */
+	@Override
+	public void putRawEntry(final String name, final int method, final long crc, final long size, final byte[] raw)
+			throws IOException {
+		final ZipRecord record = this.beginEntry(name, method, crc, raw.length, size, false);
+		this.out.write(raw);
+		this.written += raw.length;
+		this.records.add(record);
+	}
+
+	/**
+	 * Write an entry whose data is already compressed by the given method, copying
+	 * the compressed data from a stream.
+	 *
+	 * @param name
+	 * @param method
+	 * @param crc
+	 *            CRC-32 of the uncompressed data
+	 * @param size
+	 *            size of the uncompressed data
+	 * @param compressedSize
+	 *            size of the compressed data
+	 * @param raw
+	 *            stream of the compressed data
+	 * @throws IOException
+	 */
+	@Override
+	public void putRawEntry(final String name, final int method, final long crc, final long size,
+			final long compressedSize, final InputStream raw) throws IOException {
+		final ZipRecord record = this.beginEntry(name, method, crc, compressedSize, size, false);
+		long remaining = compressedSize;
+		while (remaining > 0) {
+			final int count = raw.read(this.buffer, 0, (int) Math.min(remaining, this.buffer.length));
+			if (count < 0) {
+				throw new EOFException("Unexpected end of entry data: " + name);
+			}
+			this.out.write(this.buffer, 0, count);
+			remaining -= count;
+		}
+		this.written += compressedSize;
+		this.records.add(record);
+	}
+
+	/**
+	 * Compress and write an entry of unknown size from a stream, with a data
+	 * descriptor following the data. Entries are always compressed, as a stored
+	 * entry needs its CRC before the data. The stream is compressed in blocks on
+	 * the worker pool, if there is one.
+	 *
+	 * @param name
+	 * @param in
+	 * @throws IOException
+	 */
+	@Override
+	public void putEntry(final String name, final InputStream in) throws IOException {
+		final ZipRecord record = this.beginEntry(name, ZipEntry.DEFLATED, 0, 0, 0, true);
+		final CRC32 crc = new CRC32();
+		final Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+		final int maxPending = this.executor != null ? this.threads * ZipWriter.BLOCKS_PER_THREAD : 1;
+		long size = 0;
+		long compressedSize = 0;
+		try {
+			byte[] block = ZipWriter.readBlock(in);
+			byte[] previous = null;
+			while (block != null) {
+				// The last block is the one not followed by any more data
+				final byte[] next = block.length == ZipWriter.BLOCK_SIZE ? ZipWriter.readBlock(in) : null;
+				final boolean last = next == null;
+				crc.update(block, 0, block.length);
+				size += block.length;
+				pendingBlocks.add(this.submitBlock(block, previous, last));
+
+				// Write the compressed blocks in order, keeping a bounded number in hand
+				while (pendingBlocks.size() >= maxPending || last && !pendingBlocks.isEmpty()) {
+					final byte[] compressed = ZipWriter.getResult(pendingBlocks.remove());
+					this.out.write(compressed);
+					this.written += compressed.length;
+					compressedSize += compressed.length;
+				}
+				previous = block;
+				block = next;
+			}
+		} finally {
+			for (final Future<byte[]> future : pendingBlocks) {
+				future.cancel(true);
+			}
+		}
+		record.crc = crc.getValue();
+		record.compressedSize = compressedSize;
+		record.size = size;
+
+		// Data descriptor, with ZIP64 sizes if needed
+		final boolean zip64 = record.size >= RawZipReader.MAX_U32 || record.compressedSize >= RawZipReader.MAX_U32;
+		final ByteBuffer descriptor = ZipWriter.allocate(24);
+		descriptor.putInt(RawZipReader.DATA_DESCRIPTOR_SIG);
+		descriptor.putInt((int) record.crc);
+		if (zip64) {
+			descriptor.putLong(record.compressedSize);
+			descriptor.putLong(record.size);
+		} else {
+			descriptor.putInt((int) record.compressedSize);
+			descriptor.putInt((int) record.size);
+		}
+		this.write(descriptor);
+		this.records.add(record);
+	}
+
+	/**
+	 * Write the central directory and close the underlying stream.
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		try {
+			this.writeCentralDirectory();
+			this.out.flush();
+		} finally {
+			this.out.close();
+		}
+	}
+
+	/**
+	 * Compress a block of a streamed entry, on the worker pool if there is one.
+	 *
+	 * @param block
+	 * @param previous
+	 *            the block before, to prime the compression with
+	 * @param last
+	 */
+	private Future<byte[]> submitBlock(final byte[] block, final byte[] previous, final boolean last) {
+		final int dictLen = previous != null ? Math.min(previous.length, Compressor.DICTIONARY_SIZE) : 0;
+		final int compressionLevel = this.level;
+		final Callable<byte[]> task = new Callable<byte[]>() {
+			@Override
+			public byte[] call() {
+				return Compressor.deflateBlock(block, 0, block.length, previous,
+						previous != null ? previous.length - dictLen : 0, dictLen, last, compressionLevel);
+			}
+		};
+		if (this.executor != null) {
+			return this.executor.submit(task);
+		}
+		final FutureTask<byte[]> future = new FutureTask<>(task);
+		future.run();
+		return future;
+	}
+
+	/**
+	 * Check the entry name and write the local header for an entry.
+	 *
+	 * @param name
+	 * @param method
+	 * @param crc
+	 * @param compressedSize
+	 * @param size
+	 * @param descriptor
+	 *            are the CRC and sizes given in a data descriptor after the data?
+	 * @throws IOException
+	 */
+	private ZipRecord beginEntry(final String name, final int method, final long crc, final long compressedSize,
+			final long size, final boolean descriptor) throws IOException {
+		if (!this.names.add(name)) {
+			throw new ZipException("duplicate entry: " + name);
+		}
+
+		final ZipRecord record = new ZipRecord();
+		record.name = name.getBytes(StandardCharsets.UTF_8);
+		record.method = method;
+		record.flags = RawZipReader.FLAG_UTF8 | (descriptor ? RawZipReader.FLAG_DATA_DESCRIPTOR : 0);
+		record.dosTime = ZipWriter.toDosTime(System.currentTimeMillis());
+		record.crc = crc;
+		record.compressedSize = compressedSize;
+		record.size = size;
+		record.offset = this.written;
+		if (record.name.length > RawZipReader.MAX_U16) {
+			throw new ZipException("Entry name too long: " + name);
+		}
+
+		final boolean zip64 = !descriptor && (size >= RawZipReader.MAX_U32 || compressedSize >= RawZipReader.MAX_U32);
+		final ByteBuffer header = ZipWriter.allocate(RawZipReader.LOCAL_HEADER_SIZE + record.name.length + 20);
+		header.putInt(RawZipReader.LOCAL_HEADER_SIG);
+		header.putShort((short) (zip64 ? ZipWriter.VERSION_ZIP64 : ZipWriter.VERSION_DEFAULT));
+		header.putShort((short) record.flags);
+		header.putShort((short) method);
+		header.putInt(record.dosTime);
+		header.putInt((int) crc);
+		header.putInt((int) (zip64 ? RawZipReader.MAX_U32 : compressedSize));
+		header.putInt((int) (zip64 ? RawZipReader.MAX_U32 : size));
+		header.putShort((short) record.name.length);
+		header.putShort((short) (zip64 ? 20 : 0));
+		header.put(record.name);
+		if (zip64) {
+			header.putShort((short) RawZipReader.ZIP64_EXTRA_ID);
+			header.putShort((short) 16);
+			header.putLong(size);
+			header.putLong(compressedSize);
+		}
+		this.write(header);
+		return record;
+	}
+
+	/**
+	 * Write the central directory and the end of central directory record, with
+	 * the ZIP64 forms where needed.
+	 *
+	 * @throws IOException
+	 */
+	private void writeCentralDirectory() throws IOException {
+		final long dirOffset = this.written;
+		for (final ZipRecord record : this.records) {
+			final boolean size64 = record.size >= RawZipReader.MAX_U32;
+			final boolean compressedSize64 = record.compressedSize >= RawZipReader.MAX_U32;
+			final boolean offset64 = record.offset >= RawZipReader.MAX_U32;
+			final int extraLength = (size64 ? 8 : 0) + (compressedSize64 ? 8 : 0) + (offset64 ? 8 : 0);
+			final boolean zip64 = extraLength > 0;
+
+			final ByteBuffer header = ZipWriter.allocate(
+					RawZipReader.CENTRAL_HEADER_SIZE + record.name.length + (zip64 ? 4 + extraLength : 0));
+			header.putInt(RawZipReader.CENTRAL_HEADER_SIG);
+			header.putShort((short) (zip64 ? ZipWriter.VERSION_ZIP64 : ZipWriter.VERSION_DEFAULT));
+			header.putShort((short) (zip64 ? ZipWriter.VERSION_ZIP64 : ZipWriter.VERSION_DEFAULT));
+			header.putShort((short) record.flags);
+			header.putShort((short) record.method);
+			header.putInt(record.dosTime);
+			header.putInt((int) record.crc);
+			header.putInt((int) (compressedSize64 ? RawZipReader.MAX_U32 : record.compressedSize));
+			header.putInt((int) (size64 ? RawZipReader.MAX_U32 : record.size));
+			header.putShort((short) record.name.length);
+			header.putShort((short) (zip64 ? 4 + extraLength : 0));
+			header.putShort((short) 0);
+			header.putShort((short) 0);
+			header.putShort((short) 0);
+			header.putInt(0);
+			header.putInt((int) (offset64 ? RawZipReader.MAX_U32 : record.offset));
+			header.put(record.name);
+			if (zip64) {
+				header.putShort((short) RawZipReader.ZIP64_EXTRA_ID);
+				header.putShort((short) extraLength);
+				if (size64) {
+					header.putLong(record.size);
+				}
+				if (compressedSize64) {
+					header.putLong(record.compressedSize);
+				}
+				if (offset64) {
+					header.putLong(record.offset);
+				}
+			}
+			this.write(header);
+		}
+		final long dirSize = this.written - dirOffset;
+		final int entryCount = this.records.size();
+
+		// ZIP64 end record and locator
+		final boolean zip64 = entryCount >= RawZipReader.MAX_U16 || dirSize >= RawZipReader.MAX_U32
+				|| dirOffset >= RawZipReader.MAX_U32;
+		if (zip64) {
+			final long end64Offset = this.written;
+			final ByteBuffer end64 = ZipWriter.allocate(RawZipReader.ZIP64_END_SIZE + RawZipReader.ZIP64_LOCATOR_SIZE);
+			end64.putInt(RawZipReader.ZIP64_END_SIG);
+			end64.putLong(RawZipReader.ZIP64_END_SIZE - 12);
+			end64.putShort((short) ZipWriter.VERSION_ZIP64);
+			end64.putShort((short) ZipWriter.VERSION_ZIP64);
+			end64.putInt(0);
+			end64.putInt(0);
+			end64.putLong(entryCount);
+			end64.putLong(entryCount);
+			end64.putLong(dirSize);
+			end64.putLong(dirOffset);
+			end64.putInt(RawZipReader.ZIP64_LOCATOR_SIG);
+			end64.putInt(0);
+			end64.putLong(end64Offset);
+			end64.putInt(1);
+			this.write(end64);
+		}
+
+		final int commentLength = this.comment != null ? this.comment.length : 0;
+		final ByteBuffer end = ZipWriter.allocate(RawZipReader.END_SIZE + commentLength);
+		end.putInt(RawZipReader.END_SIG);
+		end.putShort((short) 0);
+		end.putShort((short) 0);
+		end.putShort((short) (zip64 ? RawZipReader.MAX_U16 : entryCount));
+		end.putShort((short) (zip64 ? RawZipReader.MAX_U16 : entryCount));
+		end.putInt((int) (zip64 ? RawZipReader.MAX_U32 : dirSize));
+		end.putInt((int) (zip64 ? RawZipReader.MAX_U32 : dirOffset));
+		end.putShort((short) commentLength);
+		if (commentLength > 0) {
+			end.put(this.comment);
+		}
+		this.write(end);
+	}
+
+	/**
+	 * Write the used part of a header buffer.
+	 *
+	 * @param header
+	 * @throws IOException
+	 */
+	private void write(final ByteBuffer header) throws IOException {
+		this.out.write(header.array(), 0, header.position());
+		this.written += header.position();
+	}
+}
+
+class ZipRecord {
+	public byte[] name;
+	public int method;
+	public int flags;
+	public int dosTime;
+	public long crc;
+	public long compressedSize;
+	public long size;
+	public long offset;
+}
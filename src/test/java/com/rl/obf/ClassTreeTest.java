@@ -0,0 +1,168 @@
+/* ===========================================================================
+ * $RCSfile: ClassTreeTest.java,v $
+ * ===========================================================================
+ *
+ * RetroGuard -- an obfuscation package for Java classfiles.
+ *
+ * Copyright (c) 1998-2006 Mark Welsh (markw@retrologic.com)
+ *
+ * This program can be redistributed and/or modified under the terms of the
+ * Version 2 of the GNU General Public License as published by the Free
+ * Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+
+package com.rl.obf;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.rl.obf.classfile.ClassConstants;
+import com.rl.obf.classfile.ClassFile;
+import com.rl.obf.classfile.ClassFileException;
+
+/**
+ * Tests of wildcard queries on the class tree.
+ *
+ * @author Mark Welsh
+ */
+public class ClassTreeTest {
+	// Class Methods ---------------------------------------------------------
+	/**
+	 * Return the bytes of a minimal class file with one field and one method,
+	 * neither with any attributes.
+	 *
+	 * @param className
+	 * @param fieldName
+	 * @param methodName
+	 * @throws IOException
+	 */
+	private static byte[] createClass(final String className, final String fieldName, final String methodName)
+			throws IOException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		final DataOutputStream dout = new DataOutputStream(baos);
+		dout.writeInt(0xCAFEBABE);
+		dout.writeShort(0);
+		dout.writeShort(52);
+
+		// #1 this class, #3 super-class, #5 to #8 member names and descriptors
+		dout.writeShort(9);
+		dout.writeByte(ClassConstants.CONSTANT_Class);
+		dout.writeShort(2);
+		dout.writeByte(ClassConstants.CONSTANT_Utf8);
+		dout.writeUTF(className);
+		dout.writeByte(ClassConstants.CONSTANT_Class);
+		dout.writeShort(4);
+		dout.writeByte(ClassConstants.CONSTANT_Utf8);
+		dout.writeUTF("java/lang/Object");
+		dout.writeByte(ClassConstants.CONSTANT_Utf8);
+		dout.writeUTF(fieldName);
+		dout.writeByte(ClassConstants.CONSTANT_Utf8);
+		dout.writeUTF("I");
+		dout.writeByte(ClassConstants.CONSTANT_Utf8);
+		dout.writeUTF(methodName);
+		dout.writeByte(ClassConstants.CONSTANT_Utf8);
+		dout.writeUTF("()V");
+
+		dout.writeShort(ClassConstants.ACC_PUBLIC | ClassConstants.ACC_ABSTRACT);
+		dout.writeShort(1);
+		dout.writeShort(3);
+		dout.writeShort(0);
+
+		dout.writeShort(1);
+		dout.writeShort(ClassConstants.ACC_PUBLIC);
+		dout.writeShort(5);
+		dout.writeShort(6);
+		dout.writeShort(0);
+
+		dout.writeShort(1);
+		dout.writeShort(ClassConstants.ACC_PUBLIC | ClassConstants.ACC_ABSTRACT);
+		dout.writeShort(7);
+		dout.writeShort(8);
+		dout.writeShort(0);
+
+		dout.writeShort(0);
+		dout.flush();
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Return a class tree holding class com/foo/Bar alongside class
+	 * com/foo/Bar/Baz, in a package of the same name as the first class.
+	 *
+	 * @throws IOException
+	 * @throws ClassFileException
+	 */
+	private static ClassTree createTree() throws IOException, ClassFileException {
+		final ClassTree classTree = new ClassTree();
+		final byte[] bar = ClassTreeTest.createClass("com/foo/Bar", "barField", "barMethod");
+		final byte[] baz = ClassTreeTest.createClass("com/foo/Bar/Baz", "bazField", "bazMethod");
+		classTree.addClassFile(ClassFile.create(bar, 0, bar.length));
+		classTree.addClassFile(ClassFile.create(baz, 0, baz.length));
+		return classTree;
+	}
+
+	/**
+	 * Return the sorted full names of the tree items.
+	 *
+	 * @param items
+	 */
+	private static List<String> getNames(final List<? extends TreeItem> items) {
+		final List<String> names = new ArrayList<>();
+		for (final TreeItem item : items) {
+			names.add(item.getFullInName());
+		}
+		Collections.sort(names);
+		return names;
+	}
+
+	// Instance Methods ------------------------------------------------------
+	/**
+	 * Members of a class are found by wildcard even when a package shares the name
+	 * of the class.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testMemberWildcardWithPackageOfClassName() throws Exception {
+		final ClassTree classTree = ClassTreeTest.createTree();
+		assertEquals(Collections.singletonList("com/foo/Bar/barMethod"),
+				ClassTreeTest.getNames(classTree.getMdList("com/foo/Bar/*", "*")));
+		assertEquals(Collections.singletonList("com/foo/Bar/barField"),
+				ClassTreeTest.getNames(classTree.getFdList("com/foo/Bar/*", "*")));
+		assertEquals(Collections.singletonList("com/foo/Bar/barMethod"),
+				ClassTreeTest.getNames(classTree.getMdList("!com/foo/Bar/bar*", "*")));
+		assertEquals(Collections.singletonList("com/foo/Bar/Baz/bazMethod"),
+				ClassTreeTest.getNames(classTree.getMdList("com/foo/Bar/Baz/*", "*")));
+		assertEquals(Arrays.asList("com/foo/Bar/Baz/bazField", "com/foo/Bar/barField"),
+				ClassTreeTest.getNames(classTree.getFdList("com/foo/**", "*")));
+	}
+
+	/**
+	 * Classes are found by wildcard in a package that shares the name of a class.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testClassWildcardWithPackageOfClassName() throws Exception {
+		final ClassTree classTree = ClassTreeTest.createTree();
+		assertEquals(Collections.singletonList("com/foo/Bar/Baz"),
+				ClassTreeTest.getNames(classTree.getClList("com/foo/Bar/*")));
+		assertEquals(Arrays.asList("com/foo/Bar", "com/foo/Bar/Baz"),
+				ClassTreeTest.getNames(classTree.getClList("com/foo/**")));
+	}
+}
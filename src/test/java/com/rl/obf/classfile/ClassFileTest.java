@@ -0,0 +1,699 @@
+/* ===========================================================================
+ * $RCSfile: ClassFileTest.java,v $
+ * ===========================================================================
+ *
+ * RetroGuard -- an obfuscation package for Java classfiles.
+ *
+ * Copyright (c) 1998-2006 Mark Welsh (markw@retrologic.com)
+ *
+ * This program can be redistributed and/or modified under the terms of the
+ * Version 2 of the GNU General Public License as published by the Free
+ * Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+
+package com.rl.obf.classfile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests of Constant Pool compaction, which renumbers the references to the
+ * entries kept from the bytecode, the exception table and the attributes.
+ *
+ * @author Mark Welsh
+ */
+public class ClassFileTest {
+	// Constants -------------------------------------------------------------
+	private static final String CLASS_NAME = "test/Compact";
+
+	// Fields ----------------------------------------------------------------
+	/**
+	 * Constant Pool of the class being built, and its entry count
+	 */
+	private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+	private final DataOutputStream pool = new DataOutputStream(this.poolBytes);
+	private int poolCount = 1;
+
+	/**
+	 * Code of the method being built, and the offset and size of each Constant
+	 * Pool index in it
+	 */
+	private final ByteArrayOutputStream codeBytes = new ByteArrayOutputStream();
+	private final DataOutputStream code = new DataOutputStream(this.codeBytes);
+	private final List<int[]> codeOperands = new ArrayList<>();
+
+	// Class Methods ---------------------------------------------------------
+	/**
+	 * Describe a Constant Pool entry of a parsed class by its contents, which are
+	 * the same wherever the entry is in the pool.
+	 *
+	 * @param parsed
+	 * @param index
+	 */
+	private static String describe(final ParsedClass parsed, final int index) {
+		if (index == 0) {
+			return "none";
+		}
+		final int a = parsed.operands1[index];
+		final int b = parsed.operands2[index];
+		switch (parsed.tags[index]) {
+		case ClassConstants.CONSTANT_Utf8:
+			return parsed.strings[index];
+		case ClassConstants.CONSTANT_Integer:
+			return "Integer " + a;
+		case ClassConstants.CONSTANT_Float:
+			return "Float " + Float.intBitsToFloat(a);
+		case ClassConstants.CONSTANT_Long:
+			return "Long " + ((long) a << 32 | b & 0xFFFFFFFFL);
+		case ClassConstants.CONSTANT_Double:
+			return "Double " + Double.longBitsToDouble((long) a << 32 | b & 0xFFFFFFFFL);
+		case ClassConstants.CONSTANT_Class:
+			return "Class " + ClassFileTest.describe(parsed, a);
+		case ClassConstants.CONSTANT_String:
+			return "String " + ClassFileTest.describe(parsed, a);
+		case ClassConstants.CONSTANT_MethodType:
+			return "MethodType " + ClassFileTest.describe(parsed, a);
+		case ClassConstants.CONSTANT_Fieldref:
+		case ClassConstants.CONSTANT_Methodref:
+		case ClassConstants.CONSTANT_InterfaceMethodref:
+			return "Ref " + parsed.tags[index] + " " + ClassFileTest.describe(parsed, a) + " "
+					+ ClassFileTest.describe(parsed, b);
+		case ClassConstants.CONSTANT_NameAndType:
+			return ClassFileTest.describe(parsed, a) + ":" + ClassFileTest.describe(parsed, b);
+		case ClassConstants.CONSTANT_MethodHandle:
+			return "MethodHandle " + a + " " + ClassFileTest.describe(parsed, b);
+		case ClassConstants.CONSTANT_InvokeDynamic:
+			return "InvokeDynamic " + a + " " + ClassFileTest.describe(parsed, b);
+		default:
+			throw new AssertionError("Reference to unusable entry " + index);
+		}
+	}
+
+	/**
+	 * Read the constant pool, header, first method's code and class attributes of
+	 * class file data, independently of the ClassFile being tested.
+	 *
+	 * @param bytes
+	 * @throws IOException
+	 */
+	private static ParsedClass parse(final byte[] bytes) throws IOException {
+		final DataInputStream din = new DataInputStream(new ByteArrayInputStream(bytes));
+		final ParsedClass parsed = new ParsedClass();
+		assertEquals(ClassConstants.MAGIC, din.readInt());
+		din.readUnsignedShort();
+		din.readUnsignedShort();
+		final int count = din.readUnsignedShort();
+		parsed.tags = new int[count];
+		parsed.operands1 = new int[count];
+		parsed.operands2 = new int[count];
+		parsed.strings = new String[count];
+		for (int i = 1; i < count; i++) {
+			parsed.tags[i] = din.readUnsignedByte();
+			switch (parsed.tags[i]) {
+			case ClassConstants.CONSTANT_Utf8:
+				parsed.strings[i] = din.readUTF();
+				break;
+			case ClassConstants.CONSTANT_Class:
+			case ClassConstants.CONSTANT_String:
+			case ClassConstants.CONSTANT_MethodType:
+				parsed.operands1[i] = din.readUnsignedShort();
+				break;
+			case ClassConstants.CONSTANT_MethodHandle:
+				parsed.operands1[i] = din.readUnsignedByte();
+				parsed.operands2[i] = din.readUnsignedShort();
+				break;
+			case ClassConstants.CONSTANT_Integer:
+			case ClassConstants.CONSTANT_Float:
+				parsed.operands1[i] = din.readInt();
+				break;
+			case ClassConstants.CONSTANT_Long:
+			case ClassConstants.CONSTANT_Double:
+				parsed.operands1[i] = din.readInt();
+				parsed.operands2[i] = din.readInt();
+				i++;
+				break;
+			default:
+				parsed.operands1[i] = din.readUnsignedShort();
+				parsed.operands2[i] = din.readUnsignedShort();
+				break;
+			}
+		}
+		din.readUnsignedShort();
+		parsed.thisClass = din.readUnsignedShort();
+		parsed.superClass = din.readUnsignedShort();
+		assertEquals(0, din.readUnsignedShort());
+		assertEquals(0, din.readUnsignedShort());
+
+		// The one method, with its code
+		assertEquals(1, din.readUnsignedShort());
+		din.readUnsignedShort();
+		parsed.methodName = din.readUnsignedShort();
+		parsed.methodDescriptor = din.readUnsignedShort();
+		assertEquals(1, din.readUnsignedShort());
+		parsed.attributeNames.add(din.readUnsignedShort());
+		din.readInt();
+		din.readUnsignedShort();
+		din.readUnsignedShort();
+		parsed.code = new byte[din.readInt()];
+		din.readFully(parsed.code);
+		parsed.catchTypes = new int[din.readUnsignedShort()];
+		for (int i = 0; i < parsed.catchTypes.length; i++) {
+			din.readUnsignedShort();
+			din.readUnsignedShort();
+			din.readUnsignedShort();
+			parsed.catchTypes[i] = din.readUnsignedShort();
+		}
+		assertEquals(0, din.readUnsignedShort());
+
+		// The class attributes, with the bootstrap methods
+		final int attributeCount = din.readUnsignedShort();
+		for (int i = 0; i < attributeCount; i++) {
+			final int name = din.readUnsignedShort();
+			parsed.attributeNames.add(name);
+			final byte[] info = new byte[din.readInt()];
+			din.readFully(info);
+			if ("BootstrapMethods".equals(parsed.strings[name])) {
+				final DataInputStream bin = new DataInputStream(new ByteArrayInputStream(info));
+				final int bootstrapCount = bin.readUnsignedShort();
+				for (int j = 0; j < bootstrapCount; j++) {
+					parsed.bootstrapRefs.add(bin.readUnsignedShort());
+					final int argCount = bin.readUnsignedShort();
+					for (int k = 0; k < argCount; k++) {
+						parsed.bootstrapRefs.add(bin.readUnsignedShort());
+					}
+				}
+			}
+		}
+		assertEquals(-1, din.read());
+		return parsed;
+	}
+
+	// Instance Methods ------------------------------------------------------
+	/**
+	 * Append a Constant Pool entry header and return the index of the entry.
+	 *
+	 * @param tag
+	 * @param slots
+	 * @throws IOException
+	 */
+	private int add(final int tag, final int slots) throws IOException {
+		this.pool.writeByte(tag);
+		final int index = this.poolCount;
+		this.poolCount += slots;
+		return index;
+	}
+
+	/**
+	 * Append a Utf8 entry.
+	 *
+	 * @param s
+	 * @throws IOException
+	 */
+	private int utf8(final String s) throws IOException {
+		final int index = this.add(ClassConstants.CONSTANT_Utf8, 1);
+		this.pool.writeUTF(s);
+		return index;
+	}
+
+	/**
+	 * Append a Class entry and its name.
+	 *
+	 * @param name
+	 * @throws IOException
+	 */
+	private int classRef(final String name) throws IOException {
+		final int nameIndex = this.utf8(name);
+		final int index = this.add(ClassConstants.CONSTANT_Class, 1);
+		this.pool.writeShort(nameIndex);
+		return index;
+	}
+
+	/**
+	 * Append a String entry and its value.
+	 *
+	 * @param s
+	 * @throws IOException
+	 */
+	private int string(final String s) throws IOException {
+		final int stringIndex = this.utf8(s);
+		final int index = this.add(ClassConstants.CONSTANT_String, 1);
+		this.pool.writeShort(stringIndex);
+		return index;
+	}
+
+	/**
+	 * Append an Integer entry.
+	 *
+	 * @param value
+	 * @throws IOException
+	 */
+	private int integer(final int value) throws IOException {
+		final int index = this.add(ClassConstants.CONSTANT_Integer, 1);
+		this.pool.writeInt(value);
+		return index;
+	}
+
+	/**
+	 * Append a Long entry.
+	 *
+	 * @param value
+	 * @throws IOException
+	 */
+	private int longValue(final long value) throws IOException {
+		final int index = this.add(ClassConstants.CONSTANT_Long, 2);
+		this.pool.writeLong(value);
+		return index;
+	}
+
+	/**
+	 * Append a Double entry.
+	 *
+	 * @param value
+	 * @throws IOException
+	 */
+	private int doubleValue(final double value) throws IOException {
+		final int index = this.add(ClassConstants.CONSTANT_Double, 2);
+		this.pool.writeDouble(value);
+		return index;
+	}
+
+	/**
+	 * Append a NameAndType entry and its name and descriptor.
+	 *
+	 * @param name
+	 * @param descriptor
+	 * @throws IOException
+	 */
+	private int nameAndType(final String name, final String descriptor) throws IOException {
+		final int nameIndex = this.utf8(name);
+		final int descriptorIndex = this.utf8(descriptor);
+		final int index = this.add(ClassConstants.CONSTANT_NameAndType, 1);
+		this.pool.writeShort(nameIndex);
+		this.pool.writeShort(descriptorIndex);
+		return index;
+	}
+
+	/**
+	 * Append a Fieldref, Methodref or InterfaceMethodref entry, and the entries it
+	 * refers to.
+	 *
+	 * @param tag
+	 * @param className
+	 * @param name
+	 * @param descriptor
+	 * @throws IOException
+	 */
+	private int ref(final int tag, final String className, final String name, final String descriptor)
+			throws IOException {
+		final int classIndex = this.classRef(className);
+		final int ntIndex = this.nameAndType(name, descriptor);
+		final int index = this.add(tag, 1);
+		this.pool.writeShort(classIndex);
+		this.pool.writeShort(ntIndex);
+		return index;
+	}
+
+	/**
+	 * Append a MethodHandle entry.
+	 *
+	 * @param kind
+	 * @param refIndex
+	 * @throws IOException
+	 */
+	private int methodHandle(final int kind, final int refIndex) throws IOException {
+		final int index = this.add(ClassConstants.CONSTANT_MethodHandle, 1);
+		this.pool.writeByte(kind);
+		this.pool.writeShort(refIndex);
+		return index;
+	}
+
+	/**
+	 * Append a MethodType entry and its descriptor.
+	 *
+	 * @param descriptor
+	 * @throws IOException
+	 */
+	private int methodType(final String descriptor) throws IOException {
+		final int descriptorIndex = this.utf8(descriptor);
+		final int index = this.add(ClassConstants.CONSTANT_MethodType, 1);
+		this.pool.writeShort(descriptorIndex);
+		return index;
+	}
+
+	/**
+	 * Append an InvokeDynamic entry and its NameAndType.
+	 *
+	 * @param bootstrapIndex
+	 * @param name
+	 * @param descriptor
+	 * @throws IOException
+	 */
+	private int invokeDynamic(final int bootstrapIndex, final String name, final String descriptor)
+			throws IOException {
+		final int ntIndex = this.nameAndType(name, descriptor);
+		final int index = this.add(ClassConstants.CONSTANT_InvokeDynamic, 1);
+		this.pool.writeShort(bootstrapIndex);
+		this.pool.writeShort(ntIndex);
+		return index;
+	}
+
+	/**
+	 * Append an instruction with a Constant Pool index operand, and any further
+	 * operand bytes.
+	 *
+	 * @param opcode
+	 * @param index
+	 * @param size
+	 *            size of the index, 1 or 2 bytes
+	 * @param extra
+	 * @throws IOException
+	 */
+	private void cpInstruction(final int opcode, final int index, final int size, final int... extra)
+			throws IOException {
+		this.code.writeByte(opcode);
+		this.codeOperands.add(new int[] { this.code.size(), size });
+		if (size == 1) {
+			assertTrue(index <= 0xFF);
+			this.code.writeByte(index);
+		} else {
+			this.code.writeShort(index);
+		}
+		for (final int b : extra) {
+			this.code.writeByte(b);
+		}
+	}
+
+	/**
+	 * Return the bytes of a class with one method whose code refers to the
+	 * Constant Pool in each way it can, with unused entries throughout the pool.
+	 *
+	 * @param unused
+	 *            should there be unused entries?
+	 * @param unknownAttribute
+	 *            should the class have an attribute unknown to the ClassFile?
+	 * @throws IOException
+	 */
+	private byte[] createClass(final boolean unused, final boolean unknownAttribute) throws IOException {
+		if (unused) {
+			this.utf8("unused/First");
+			this.longValue(0x123456789L);
+			this.nameAndType("unusedName", "I");
+			this.ref(ClassConstants.CONSTANT_Fieldref, "unused/Owner", "unusedField", "J");
+		}
+		final int thisClass = this.classRef(ClassFileTest.CLASS_NAME);
+		final int superClass = this.classRef("java/lang/Object");
+		if (unused) {
+			this.doubleValue(1.5);
+			this.string("unused string");
+			this.methodType("(Lunused/Type;)V");
+		}
+
+		// With unused entries, keep the string for ldc at the last index a single
+		// byte can hold, moving down when the entries before it are removed
+		final int stringUtf8 = this.utf8("hello");
+		while (unused && this.poolCount < 0xFF) {
+			this.utf8("unused/Padding" + this.poolCount);
+		}
+		final int string = this.add(ClassConstants.CONSTANT_String, 1);
+		this.pool.writeShort(stringUtf8);
+		assertTrue(!unused || string == 0xFF);
+
+		final int integer = this.integer(42);
+		if (unused) {
+			this.integer(-1);
+		}
+		final int longValue = this.longValue(-7L);
+		final int field = this.ref(ClassConstants.CONSTANT_Fieldref, ClassFileTest.CLASS_NAME, "count", "I");
+		final int method = this.ref(ClassConstants.CONSTANT_Methodref, "java/lang/Object", "hashCode", "()I");
+		final int interfaceMethod = this.ref(ClassConstants.CONSTANT_InterfaceMethodref, "java/lang/Runnable", "run",
+				"()V");
+		final int stringClass = this.classRef("java/lang/String");
+		if (unused) {
+			this.classRef("unused/Class");
+		}
+		final int arrayClass = this.classRef("[[I");
+		final int exceptionClass = this.classRef("java/lang/Exception");
+		final int bootstrapMethod = this.methodHandle(6, this.ref(ClassConstants.CONSTANT_Methodref,
+				"java/lang/invoke/LambdaMetafactory", "metafactory", "()Ljava/lang/invoke/CallSite;"));
+		final int bootstrapArg = this.methodType("()V");
+		final int invokeDynamic = this.invokeDynamic(0, "run", "()Ljava/lang/Runnable;");
+		final int methodName = this.utf8("run");
+		final int methodDescriptor = this.utf8("()V");
+		final int codeName = this.utf8("Code");
+		final int bootstrapName = this.utf8("BootstrapMethods");
+		final int unknownName = unknownAttribute ? this.utf8("Unknown") : 0;
+		if (unused) {
+			this.utf8("unused/Last");
+		}
+
+		// Each kind of instruction referring to the pool, with a switch before some to
+		// check the operands are found after its padding
+		this.cpInstruction(0x12, string, 1); // ldc
+		this.code.writeByte(0x57); // pop
+		this.code.writeByte(0x03); // iconst_0
+		this.code.writeByte(0xAA); // tableswitch
+		while (this.code.size() % 4 != 0) {
+			this.code.writeByte(0);
+		}
+		this.code.writeInt(0);
+		this.code.writeInt(0);
+		this.code.writeInt(0);
+		this.code.writeInt(0);
+		this.cpInstruction(0x13, integer, 2); // ldc_w
+		this.cpInstruction(0x14, longValue, 2); // ldc2_w
+		this.cpInstruction(0xB2, field, 2); // getstatic
+		this.cpInstruction(0xB3, field, 2); // putstatic
+		this.cpInstruction(0xB4, field, 2); // getfield
+		this.cpInstruction(0xB5, field, 2); // putfield
+		this.cpInstruction(0xB6, method, 2); // invokevirtual
+		this.cpInstruction(0xB7, method, 2); // invokespecial
+		this.cpInstruction(0xB8, method, 2); // invokestatic
+		this.cpInstruction(0xB9, interfaceMethod, 2, 1, 0); // invokeinterface
+		this.cpInstruction(0xBA, invokeDynamic, 2, 0, 0); // invokedynamic
+		this.cpInstruction(0xBB, stringClass, 2); // new
+		this.cpInstruction(0xBD, stringClass, 2); // anewarray
+		this.cpInstruction(0xC0, stringClass, 2); // checkcast
+		this.cpInstruction(0xC1, stringClass, 2); // instanceof
+		this.cpInstruction(0xC5, arrayClass, 2, 2); // multianewarray
+		this.code.writeByte(0xB1); // return
+		final byte[] codeData = this.codeBytes.toByteArray();
+
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		final DataOutputStream dout = new DataOutputStream(baos);
+		dout.writeInt(ClassConstants.MAGIC);
+		dout.writeShort(0);
+		dout.writeShort(52);
+		dout.writeShort(this.poolCount);
+		this.pool.flush();
+		this.poolBytes.writeTo(dout);
+		dout.writeShort(ClassConstants.ACC_PUBLIC);
+		dout.writeShort(thisClass);
+		dout.writeShort(superClass);
+		dout.writeShort(0);
+		dout.writeShort(0);
+
+		dout.writeShort(1);
+		dout.writeShort(ClassConstants.ACC_PUBLIC | ClassConstants.ACC_STATIC);
+		dout.writeShort(methodName);
+		dout.writeShort(methodDescriptor);
+		dout.writeShort(1);
+		dout.writeShort(codeName);
+		dout.writeInt(12 + codeData.length + 2 * 8);
+		dout.writeShort(4);
+		dout.writeShort(1);
+		dout.writeInt(codeData.length);
+		dout.write(codeData);
+		dout.writeShort(2);
+		dout.writeShort(0);
+		dout.writeShort(2);
+		dout.writeShort(codeData.length - 1);
+		dout.writeShort(exceptionClass);
+		dout.writeShort(0);
+		dout.writeShort(codeData.length);
+		dout.writeShort(codeData.length - 1);
+		dout.writeShort(0);
+		dout.writeShort(0);
+
+		dout.writeShort(unknownAttribute ? 2 : 1);
+		dout.writeShort(bootstrapName);
+		dout.writeInt(8);
+		dout.writeShort(1);
+		dout.writeShort(bootstrapMethod);
+		dout.writeShort(1);
+		dout.writeShort(bootstrapArg);
+		if (unknownAttribute) {
+			// Data which may hold Constant Pool indices, as far as anyone knows
+			dout.writeShort(unknownName);
+			dout.writeInt(2);
+			dout.writeShort(string);
+		}
+		dout.flush();
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Compact the Constant Pool of class file data, and return the class file
+	 * data written afterwards.
+	 *
+	 * @param bytes
+	 * @param expectRemoved
+	 *            should entries be removed?
+	 * @throws Exception
+	 */
+	private static byte[] compact(final byte[] bytes, final boolean expectRemoved) throws Exception {
+		final ClassFile cf = ClassFile.create(bytes, 0, bytes.length);
+		assertEquals(expectRemoved, cf.compactConstantPool());
+		return cf.toByteArray();
+	}
+
+	/**
+	 * The unused entries are removed, and every reference to the rest, from the
+	 * code, the exception table, the attributes and the class and method headers,
+	 * still finds the same entry.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testCompactKeepsReferences() throws Exception {
+		final byte[] bytes = this.createClass(true, false);
+		final ParsedClass before = ClassFileTest.parse(bytes);
+		final ParsedClass after = ClassFileTest.parse(ClassFileTest.compact(bytes, true));
+
+		// Only the entries in use are kept
+		assertTrue(after.tags.length < before.tags.length);
+		for (int i = 1; i < after.tags.length; i++) {
+			if (after.tags[i] == ClassConstants.CONSTANT_Utf8) {
+				assertFalse(after.strings[i], after.strings[i].startsWith("unused"));
+			}
+		}
+
+		// The class and method headers
+		assertEquals(ClassFileTest.describe(before, before.thisClass),
+				ClassFileTest.describe(after, after.thisClass));
+		assertEquals(ClassFileTest.describe(before, before.superClass),
+				ClassFileTest.describe(after, after.superClass));
+		assertEquals("run", ClassFileTest.describe(after, after.methodName));
+		assertEquals("()V", ClassFileTest.describe(after, after.methodDescriptor));
+
+		// The code, with only its Constant Pool operands changed
+		assertEquals(before.code.length, after.code.length);
+		final byte[] beforeCode = before.code.clone();
+		final byte[] afterCode = after.code.clone();
+		for (final int[] operand : this.codeOperands) {
+			final int offset = operand[0];
+			final int oldIndex = operand[1] == 1 ? beforeCode[offset] & 0xFF
+					: (beforeCode[offset] & 0xFF) << 8 | beforeCode[offset + 1] & 0xFF;
+			final int newIndex = operand[1] == 1 ? afterCode[offset] & 0xFF
+					: (afterCode[offset] & 0xFF) << 8 | afterCode[offset + 1] & 0xFF;
+			assertEquals(ClassFileTest.describe(before, oldIndex), ClassFileTest.describe(after, newIndex));
+			assertTrue(newIndex < oldIndex);
+			for (int i = 0; i < operand[1]; i++) {
+				beforeCode[offset + i] = 0;
+				afterCode[offset + i] = 0;
+			}
+		}
+		assertArrayEquals(beforeCode, afterCode);
+
+		// The ldc operand still fits in its single byte
+		assertEquals(0x12, after.code[0] & 0xFF);
+		assertEquals("String hello", ClassFileTest.describe(after, after.code[1] & 0xFF));
+
+		// The exception table, whose catch-all entry stays zero
+		assertEquals(2, after.catchTypes.length);
+		assertEquals("Class java/lang/Exception", ClassFileTest.describe(after, after.catchTypes[0]));
+		assertEquals(0, after.catchTypes[1]);
+
+		// The attribute names and the bootstrap methods
+		assertEquals(before.attributeNames.size(), after.attributeNames.size());
+		for (int i = 0; i < before.attributeNames.size(); i++) {
+			assertEquals(ClassFileTest.describe(before, before.attributeNames.get(i)),
+					ClassFileTest.describe(after, after.attributeNames.get(i)));
+		}
+		assertEquals(before.bootstrapRefs.size(), after.bootstrapRefs.size());
+		for (int i = 0; i < before.bootstrapRefs.size(); i++) {
+			assertEquals(ClassFileTest.describe(before, before.bootstrapRefs.get(i)),
+					ClassFileTest.describe(after, after.bootstrapRefs.get(i)));
+		}
+	}
+
+	/**
+	 * A class whose entries are all in use is left as it is.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testCompactWithoutUnusedEntries() throws Exception {
+		final byte[] bytes = this.createClass(false, false);
+		assertArrayEquals(bytes, ClassFileTest.compact(bytes, false));
+	}
+
+	/**
+	 * A class with an attribute whose references cannot be renumbered is left as
+	 * it is, however many entries are unused.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testCompactWithUnknownAttribute() throws Exception {
+		final byte[] bytes = this.createClass(true, true);
+		assertArrayEquals(bytes, ClassFileTest.compact(bytes, false));
+	}
+
+	/**
+	 * A compacted class reads back and writes out unchanged, with nothing more to
+	 * remove.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testCompactedRoundTrip() throws Exception {
+		final byte[] bytes = this.createClass(true, false);
+		final ClassFile original = ClassFile.create(bytes, 0, bytes.length);
+		assertArrayEquals(bytes, original.toByteArray());
+
+		final byte[] compacted = ClassFileTest.compact(bytes, true);
+		final ClassFile cf = ClassFile.create(compacted, 0, compacted.length);
+		assertEquals(ClassFileTest.CLASS_NAME, cf.getName());
+		assertEquals("java/lang/Object", cf.getSuper());
+		assertEquals(compacted.length, cf.getLength());
+		assertArrayEquals(compacted, cf.toByteArray());
+		assertArrayEquals(compacted, ClassFileTest.compact(compacted, false));
+	}
+
+	/**
+	 * Class file data read by the test, with the Constant Pool entries as their
+	 * tags and operands.
+	 */
+	private static class ParsedClass {
+		public int[] tags;
+		public int[] operands1;
+		public int[] operands2;
+		public String[] strings;
+		public int thisClass;
+		public int superClass;
+		public int methodName;
+		public int methodDescriptor;
+		public byte[] code;
+		public int[] catchTypes;
+		public final List<Integer> attributeNames = new ArrayList<>();
+		public final List<Integer> bootstrapRefs = new ArrayList<>();
+	}
+}
@@ -0,0 +1,191 @@
+/* ===========================================================================
+ * $RCSfile: Utf8CpInfoTest.java,v $
+ * ===========================================================================
+ *
+ * RetroGuard -- an obfuscation package for Java classfiles.
+ *
+ * Copyright (c) 1998-2006 Mark Welsh (markw@retrologic.com)
+ *
+ * This program can be redistributed and/or modified under the terms of the
+ * Version 2 of the GNU General Public License as published by the Free
+ * Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+
+package com.rl.obf.classfile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests of the modified UTF-8 codec of the Utf8 constant pool entries.
+ *
+ * @author Mark Welsh
+ */
+public class Utf8CpInfoTest {
+	// Class Methods ---------------------------------------------------------
+	/**
+	 * Return the modified UTF-8 bytes of a string as written by
+	 * DataOutput.writeUTF, without the length.
+	 *
+	 * @param s
+	 * @throws IOException
+	 */
+	private static byte[] writeUTF(final String s) throws IOException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		final DataOutputStream dout = new DataOutputStream(baos);
+		dout.writeUTF(s);
+		dout.flush();
+		final byte[] bytes = baos.toByteArray();
+		return Arrays.copyOfRange(bytes, 2, bytes.length);
+	}
+
+	/**
+	 * Decode all of an array.
+	 *
+	 * @param bytes
+	 */
+	private static String decode(final int... bytes) {
+		final byte[] data = new byte[bytes.length];
+		for (int i = 0; i < bytes.length; i++) {
+			data[i] = (byte) bytes[i];
+		}
+		return Utf8CpInfo.decode(data, 0, data.length);
+	}
+
+	/**
+	 * Check a string encodes as writeUTF does, and decodes back to itself.
+	 *
+	 * @param s
+	 * @throws IOException
+	 */
+	private static void assertRoundTrip(final String s) throws IOException {
+		final byte[] bytes = Utf8CpInfo.encode(s);
+		assertArrayEquals(Utf8CpInfoTest.writeUTF(s), bytes);
+		assertEquals(s, Utf8CpInfo.decode(bytes, 0, bytes.length));
+	}
+
+	// Instance Methods ------------------------------------------------------
+	/**
+	 * ASCII names are encoded a byte a character, and decoded from part of an
+	 * array.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testAscii() throws Exception {
+		assertArrayEquals(new byte[] { 'j', 'a', 'v', 'a', '/', 'l', 'a', 'n', 'g' }, Utf8CpInfo.encode("java/lang"));
+		final byte[] bytes = "xxLjava/lang/Object;xx".getBytes("US-ASCII");
+		assertEquals("Ljava/lang/Object;", Utf8CpInfo.decode(bytes, 2, bytes.length - 4));
+		assertEquals("", Utf8CpInfo.decode(bytes, 3, 0));
+		assertEquals(0, Utf8CpInfo.encode("").length);
+		Utf8CpInfoTest.assertRoundTrip("\u0001 ~\u007F");
+	}
+
+	/**
+	 * NUL is encoded as the two bytes C0 80, not as a zero byte.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testNul() throws Exception {
+		assertArrayEquals(new byte[] { (byte) 0xC0, (byte) 0x80 }, Utf8CpInfo.encode("\u0000"));
+		assertEquals("a\u0000b", Utf8CpInfoTest.decode('a', 0xC0, 0x80, 'b'));
+		Utf8CpInfoTest.assertRoundTrip("\u0000\u0000x\u0000");
+	}
+
+	/**
+	 * Characters from U+0080 to U+07FF take two bytes, and the rest of the Basic
+	 * Multilingual Plane three.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testMultiByte() throws Exception {
+		assertArrayEquals(new byte[] { (byte) 0xC3, (byte) 0xA9 }, Utf8CpInfo.encode("\u00E9"));
+		assertArrayEquals(new byte[] { (byte) 0xDF, (byte) 0xBF }, Utf8CpInfo.encode("\u07FF"));
+		assertArrayEquals(new byte[] { (byte) 0xE0, (byte) 0xA0, (byte) 0x80 }, Utf8CpInfo.encode("\u0800"));
+		assertArrayEquals(new byte[] { (byte) 0xEF, (byte) 0xBF, (byte) 0xBF }, Utf8CpInfo.encode("\uFFFF"));
+		assertEquals("\u00E9t\u00E9", Utf8CpInfoTest.decode(0xC3, 0xA9, 't', 0xC3, 0xA9));
+		assertEquals("\u20AC", Utf8CpInfoTest.decode(0xE2, 0x82, 0xAC));
+		Utf8CpInfoTest.assertRoundTrip("caf\u00E9/\u00DFtra\u00DFe/\u4E2D\u6587/\u20AC\u0080\u07FF\u0800\uFFFF");
+	}
+
+	/**
+	 * Characters outside the Basic Multilingual Plane are encoded as their two
+	 * surrogates, each as three bytes.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSurrogatePair() throws Exception {
+		// U+1F600 is the surrogate pair D83D DE00
+		final String s = new String(Character.toChars(0x1F600));
+		assertArrayEquals(new byte[] { (byte) 0xED, (byte) 0xA0, (byte) 0xBD, (byte) 0xED, (byte) 0xB8,
+				(byte) 0x80 }, Utf8CpInfo.encode(s));
+		assertEquals(s, Utf8CpInfoTest.decode(0xED, 0xA0, 0xBD, 0xED, 0xB8, 0x80));
+		Utf8CpInfoTest.assertRoundTrip("a" + s + "b");
+
+		// Unpaired surrogates are kept as they are
+		Utf8CpInfoTest.assertRoundTrip("\uD83D");
+		Utf8CpInfoTest.assertRoundTrip("\uDE00x\uD83D");
+	}
+
+	/**
+	 * Truncated and malformed sequences decode to U+FFFD, one for each byte that
+	 * does not start a complete sequence.
+	 */
+	@Test
+	public void testMalformed() {
+		// Continuation byte without a lead byte
+		assertEquals("a\uFFFDb", Utf8CpInfoTest.decode('a', 0x80, 'b'));
+
+		// Sequences truncated by the end of the data
+		assertEquals("a\uFFFD", Utf8CpInfoTest.decode('a', 0xC3));
+		assertEquals("\uFFFD\uFFFD", Utf8CpInfoTest.decode(0xE2, 0x82));
+
+		// Sequences broken by a byte that is not a continuation
+		assertEquals("\uFFFDA", Utf8CpInfoTest.decode(0xC3, 'A'));
+		assertEquals("\uFFFD\uFFFDA", Utf8CpInfoTest.decode(0xE2, 0x82, 'A'));
+
+		// Four byte standard UTF-8 is not modified UTF-8
+		assertEquals("\uFFFD\uFFFD\uFFFD\uFFFD", Utf8CpInfoTest.decode(0xF0, 0x9F, 0x98, 0x80));
+
+		// Malformed data is not read beyond the length given
+		final byte[] bytes = { 'x', (byte) 0xE2, (byte) 0x82, (byte) 0xAC };
+		assertEquals("x\uFFFD\uFFFD", Utf8CpInfo.decode(bytes, 0, 3));
+	}
+
+	/**
+	 * Every string survives encoding then decoding, including every character
+	 * alone and next to its neighbours.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testRoundTrip() throws Exception {
+		final StringBuilder sb = new StringBuilder();
+		for (int c = Character.MIN_VALUE; c <= Character.MAX_VALUE; c++) {
+			Utf8CpInfoTest.assertRoundTrip(String.valueOf((char) c));
+			sb.append((char) c);
+			if (sb.length() == 4096 || c == Character.MAX_VALUE) {
+				Utf8CpInfoTest.assertRoundTrip(sb.toString());
+				sb.setLength(0);
+			}
+		}
+		Utf8CpInfoTest.assertRoundTrip("");
+		Utf8CpInfoTest.assertRoundTrip("com/example/Outer$Inner$1");
+	}
+}
@@ -0,0 +1,235 @@
+/* ===========================================================================
+ * $RCSfile: CompressorTest.java,v $
+ * ===========================================================================
+ *
+ * RetroGuard -- an obfuscation package for Java classfiles.
+ *
+ * Copyright (c) 1998-2006 Mark Welsh (markw@retrologic.com)
+ *
+ * This program can be redistributed and/or modified under the terms of the
+ * Version 2 of the GNU General Public License as published by the Free
+ * Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+
+package com.rl.util.zip;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.junit.Test;
+
+/**
+ * Tests that DEFLATE blocks compressed apart join into a single stream.
+ *
+ * @author Mark Welsh
+ */
+public class CompressorTest {
+	// Constants -------------------------------------------------------------
+	/**
+	 * Block size used for streamed entries
+	 */
+	private static final int BLOCK_SIZE = 128 * 1024;
+
+	// Class Methods ---------------------------------------------------------
+	/**
+	 * Return compressible data, made of words repeated at distances both within
+	 * and beyond a block, mixed with some random bytes.
+	 *
+	 * @param length
+	 */
+	private static byte[] createData(final int length) {
+		final Random random = new Random(length);
+		final String[] words = new String[64];
+		for (int i = 0; i < words.length; i++) {
+			words[i] = "com/example/Name" + Integer.toString(random.nextInt(), 36) + ";";
+		}
+		final byte[] data = new byte[length];
+		int pos = 0;
+		while (pos < length) {
+			if (random.nextInt(8) == 0) {
+				data[pos++] = (byte) random.nextInt();
+			} else {
+				final String word = words[random.nextInt(words.length)];
+				for (int i = 0; i < word.length() && pos < length; i++) {
+					data[pos++] = (byte) word.charAt(i);
+				}
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * Compress data as consecutive blocks of the given lengths, each primed with
+	 * the end of the block before as the Zip writer does, and return the
+	 * concatenated output.
+	 *
+	 * @param data
+	 * @param blockLengths
+	 *            lengths of the blocks, which must add up to the data length
+	 * @param level
+	 */
+	private static byte[] deflateBlocks(final byte[] data, final int[] blockLengths, final int level) {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int off = 0;
+		int previousOff = 0;
+		int previousLen = 0;
+		for (int i = 0; i < blockLengths.length; i++) {
+			final int len = blockLengths[i];
+			final int dictLen = Math.min(previousLen, Compressor.DICTIONARY_SIZE);
+			final byte[] compressed = Compressor.deflateBlock(data, off, len, i > 0 ? data : null,
+					previousOff + previousLen - dictLen, dictLen, i == blockLengths.length - 1, level);
+			out.write(compressed, 0, compressed.length);
+			previousOff = off;
+			previousLen = len;
+			off += len;
+		}
+		assertEquals(data.length, off);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Return the lengths of blocks of the streamed block size covering the
+	 * length.
+	 *
+	 * @param length
+	 */
+	private static int[] splitBlocks(final int length) {
+		final int[] blockLengths = new int[(length + CompressorTest.BLOCK_SIZE - 1) / CompressorTest.BLOCK_SIZE];
+		for (int i = 0; i < blockLengths.length; i++) {
+			blockLengths[i] = Math.min(CompressorTest.BLOCK_SIZE, length - i * CompressorTest.BLOCK_SIZE);
+		}
+		return blockLengths;
+	}
+
+	/**
+	 * Inflate a complete raw DEFLATE stream, checking it ends exactly at the end
+	 * of the data.
+	 *
+	 * @param compressed
+	 * @throws DataFormatException
+	 */
+	private static byte[] inflate(final byte[] compressed) throws DataFormatException {
+		final Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(compressed);
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[8192];
+			while (!inflater.finished()) {
+				final int count = inflater.inflate(buffer);
+				if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				out.write(buffer, 0, count);
+			}
+			assertTrue("stream is incomplete", inflater.finished());
+			assertEquals("bytes after the end of the stream", 0, inflater.getRemaining());
+			return out.toByteArray();
+		} finally {
+			inflater.end();
+		}
+	}
+
+	// Instance Methods ------------------------------------------------------
+	/**
+	 * Blocks of data larger than one block join into a stream that inflates back
+	 * to the data, at each compression level.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testBlocksInflateToInput() throws Exception {
+		final byte[] data = CompressorTest.createData(3 * CompressorTest.BLOCK_SIZE + 12345);
+		final int[] blockLengths = CompressorTest.splitBlocks(data.length);
+		assertEquals(4, blockLengths.length);
+		for (int level = Deflater.DEFAULT_COMPRESSION; level <= Deflater.BEST_COMPRESSION; level++) {
+			assertArrayEquals(data, CompressorTest.inflate(CompressorTest.deflateBlocks(data, blockLengths, level)));
+		}
+	}
+
+	/**
+	 * An empty last block ends the stream, as when the data fills its last block
+	 * exactly.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testEmptyLastBlock() throws Exception {
+		final byte[] data = CompressorTest.createData(2 * CompressorTest.BLOCK_SIZE);
+		final int[] blockLengths = { CompressorTest.BLOCK_SIZE, CompressorTest.BLOCK_SIZE, 0 };
+		assertArrayEquals(data, CompressorTest.inflate(
+				CompressorTest.deflateBlocks(data, blockLengths, Deflater.DEFAULT_COMPRESSION)));
+		assertArrayEquals(new byte[0], CompressorTest.inflate(
+				CompressorTest.deflateBlocks(new byte[0], new int[] { 0 }, Deflater.DEFAULT_COMPRESSION)));
+	}
+
+	/**
+	 * A block shorter than the dictionary primes the next block with all of
+	 * itself, and is itself primed with the end of a full block.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testBlockShorterThanDictionary() throws Exception {
+		final int shortLength = Compressor.DICTIONARY_SIZE / 4;
+		final byte[] data = CompressorTest.createData(2 * CompressorTest.BLOCK_SIZE + shortLength + 1000);
+		final int[] blockLengths = { CompressorTest.BLOCK_SIZE, shortLength, CompressorTest.BLOCK_SIZE, 1000 };
+		assertArrayEquals(data, CompressorTest.inflate(
+				CompressorTest.deflateBlocks(data, blockLengths, Deflater.DEFAULT_COMPRESSION)));
+
+		// Tiny first blocks, and a block one byte short of the dictionary
+		final int[] shortBlocks = { 1, 7, shortLength, Compressor.DICTIONARY_SIZE - 1,
+				data.length - 8 - shortLength - (Compressor.DICTIONARY_SIZE - 1) };
+		assertArrayEquals(data,
+				CompressorTest.inflate(CompressorTest.deflateBlocks(data, shortBlocks, Deflater.BEST_SPEED)));
+	}
+
+	/**
+	 * Priming a block with the one before lets it refer back across the block
+	 * boundary.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testDictionaryPrimesBlock() throws Exception {
+		final byte[] half = CompressorTest.createData(Compressor.DICTIONARY_SIZE / 2);
+		final byte[] data = Arrays.copyOf(half, 2 * half.length);
+		System.arraycopy(half, 0, data, half.length, half.length);
+
+		final byte[] primed = Compressor.deflateBlock(data, half.length, half.length, data, 0, half.length, true,
+				Deflater.DEFAULT_COMPRESSION);
+		final byte[] unprimed = Compressor.deflateBlock(data, half.length, half.length, null, 0, 0, true,
+				Deflater.DEFAULT_COMPRESSION);
+		assertTrue("primed block is not smaller", primed.length * 10 < unprimed.length);
+		final int[] blockLengths = { half.length, half.length };
+		assertArrayEquals(data, CompressorTest.inflate(
+				CompressorTest.deflateBlocks(data, blockLengths, Deflater.DEFAULT_COMPRESSION)));
+	}
+
+	/**
+	 * A whole stream compressed in one call inflates back to the data.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testDeflate() throws Exception {
+		final byte[] data = CompressorTest.createData(CompressorTest.BLOCK_SIZE + 1);
+		assertArrayEquals(data,
+				CompressorTest.inflate(Compressor.deflate(data, 0, data.length, Deflater.DEFAULT_COMPRESSION)));
+		assertArrayEquals(Arrays.copyOfRange(data, 10, 20),
+				CompressorTest.inflate(Compressor.deflate(data, 10, 10, Deflater.NO_COMPRESSION)));
+	}
+}